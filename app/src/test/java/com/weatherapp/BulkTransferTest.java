@@ -0,0 +1,109 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkTransferTest {
+    @TempDir
+    Path dir;
+
+    private FileManager fileManager(String name) {
+        return new FileManager(dir.resolve(name), dir.resolve(name + ".journal"), 1000);
+    }
+
+    @Test
+    void validatorRejectsNonFiniteTemperatures() {
+        for (String temperature : Arrays.asList("NaN", "Infinity", "-Infinity", "1e999")) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> EntryValidator.validate("10-03-2024", temperature, "50", "Clear", "Oslo"), temperature);
+        }
+        assertEquals(-1.5, EntryValidator.validate("10-03-2024", "-1.5", "50", "Clear", "Oslo").getTemperature());
+    }
+
+    @Test
+    void nonFiniteTemperaturesAreCountedAsRejected() throws IOException {
+        for (BulkFormat format : BulkFormat.values()) {
+            Path source = dir.resolve("rows." + format.name().toLowerCase());
+            List<String> lines = format == BulkFormat.CSV
+                    ? Arrays.asList("10-03-2024,4.5,70,Rain", "11-03-2024,NaN,70,Rain", "12-03-2024,Infinity,70,Rain")
+                    : Arrays.asList("{\"date\":\"10-03-2024\",\"temperature\":4.5,\"humidity\":70,\"condition\":\"Rain\"}",
+                    "{\"date\":\"11-03-2024\",\"temperature\":\"NaN\",\"humidity\":70,\"condition\":\"Rain\"}",
+                    "{\"date\":\"12-03-2024\",\"temperature\":\"-Infinity\",\"humidity\":70,\"condition\":\"Rain\"}");
+            Files.write(source, lines, StandardCharsets.UTF_8);
+            FileManager fileManager = fileManager("import-" + format);
+            try {
+                BulkImporter.Status status = new BulkImporter(fileManager, 100).importFile(source, format, null);
+                assertEquals(1, status.getImported(), format.name());
+                assertEquals(2, status.getRejected(), format.name());
+                assertEquals(2, status.getErrors().size(), format.name());
+            } finally {
+                fileManager.close();
+            }
+        }
+    }
+
+    @Test
+    void csvExportOfALocationWithACommaImportsBack() throws IOException {
+        LocalDate day = LocalDate.of(2024, 3, 10);
+        WeatherStore rows = new WeatherStore();
+        rows.add((int) day.toEpochDay(), 18.5, 40, "Partly cloudy, breezy", "Portland, OR");
+        rows.add((int) day.plusDays(1).toEpochDay(), 20.0, 35, "Clear", "Salem|OR");
+        FileManager source = fileManager("source");
+        Path file = dir.resolve("export.csv");
+        try {
+            source.importRows(rows);
+            source.finishImport();
+            assertEquals(2, new BulkExporter(source).export(file, BulkFormat.CSV, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                    null, null));
+        } finally {
+            source.close();
+        }
+
+        FileManager target = fileManager("target");
+        try {
+            BulkImporter.Status status = new BulkImporter(target, 100).importFile(file, BulkFormat.CSV, null);
+            assertEquals(2, status.getImported());
+            assertEquals(0, status.getRejected());
+            WeatherStore imported = target.loadStore();
+            assertEquals(2, imported.size());
+            assertEquals("Portland  OR", imported.getLocation(0));
+            assertEquals("Partly cloudy, breezy", imported.getCondition(0));
+            assertEquals(18.5, imported.getTemperature(0));
+            assertEquals("Salem OR", imported.getLocation(1));
+            assertEquals("Clear", imported.getCondition(1));
+        } finally {
+            target.close();
+        }
+    }
+
+    @Test
+    void readFileChecksLinesLikeAnImportWithoutWritingThem() throws IOException {
+        Path source = dir.resolve("typed.csv");
+        Files.write(source, Arrays.asList(CsvLoader.FIELDS_HEADER,
+                "10-03-2024,4.5,70,Oslo,Rain",
+                "11-03-2024,4.5,170,Oslo,Rain",
+                "31-02-2024,4.5,70,Oslo,Rain",
+                "12-03-2024,Infinity,70,Oslo,Rain",
+                "13-03-2024,-2,65,Oslo,Snow, light"), StandardCharsets.UTF_8);
+        List<WeatherEntry> rows = new ArrayList<>();
+        BulkImporter.Status status = BulkImporter.readFile(source, BulkFormat.CSV, rows);
+        assertEquals(2, status.getImported());
+        assertEquals(3, status.getRejected());
+        assertEquals("Line 3: Humidity must be between 0 and 100.", status.getErrors().get(0));
+        assertEquals(2, rows.size());
+        assertEquals("Snow, light", rows.get(1).getCondition());
+        assertEquals("Oslo", rows.get(1).getLocation());
+    }
+}
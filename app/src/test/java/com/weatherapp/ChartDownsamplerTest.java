@@ -0,0 +1,86 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.IntToDoubleFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartDownsamplerTest {
+    // Deterministic but irregular, so extremes fall anywhere in a bucket
+    private static double value(int row) {
+        return Math.sin(row * 0.37) * 20 + ((row * 7919) % 13) - (row % 17 == 0 ? 40 : 0);
+    }
+
+    @Test
+    void emptySeries() {
+        assertEquals(0, ChartDownsampler.minMax(0, ChartDownsamplerTest::value, 100).length);
+        assertEquals(0, ChartDownsampler.minMax(new WeatherStore(), 100).length);
+    }
+
+    @Test
+    void shortSeriesAreKeptWhole() {
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5}, ChartDownsampler.minMax(6, ChartDownsamplerTest::value, 3));
+        assertArrayEquals(new int[]{0, 1, 2}, ChartDownsampler.minMax(3, ChartDownsamplerTest::value, 0));
+    }
+
+    @Test
+    void everyBucketKeepsItsMinAndMaxInOrder() {
+        int size = 10_007;
+        int buckets = 300;
+        IntToDoubleFunction values = ChartDownsamplerTest::value;
+        int[] rows = ChartDownsampler.minMax(size, values, buckets);
+        assertTrue(rows.length <= 2 * buckets);
+        for (int i = 1; i < rows.length; i++) {
+            assertTrue(rows[i - 1] < rows[i], "rows out of order at " + i);
+        }
+
+        int next = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int from = (int) ((long) bucket * size / buckets);
+            int to = (int) ((long) (bucket + 1) * size / buckets);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int row = from; row < to; row++) {
+                min = Math.min(min, values.applyAsDouble(row));
+                max = Math.max(max, values.applyAsDouble(row));
+            }
+            // The bucket's kept rows, one or two, are the next ones and lie inside it
+            double keptMin = Double.POSITIVE_INFINITY;
+            double keptMax = Double.NEGATIVE_INFINITY;
+            int kept = 0;
+            while (next < rows.length && rows[next] < to) {
+                assertTrue(rows[next] >= from, "row " + rows[next] + " outside bucket " + bucket);
+                keptMin = Math.min(keptMin, values.applyAsDouble(rows[next]));
+                keptMax = Math.max(keptMax, values.applyAsDouble(rows[next]));
+                next++;
+                kept++;
+            }
+            assertTrue(kept == 1 || kept == 2, "bucket " + bucket + " kept " + kept + " rows");
+            assertEquals(min, keptMin, "min of bucket " + bucket);
+            assertEquals(max, keptMax, "max of bucket " + bucket);
+        }
+        assertEquals(rows.length, next);
+    }
+
+    @Test
+    void flatBucketsKeepOneRow() {
+        int[] rows = ChartDownsampler.minMax(1000, row -> 5.0, 10);
+        assertEquals(10, rows.length);
+        for (int bucket = 0; bucket < 10; bucket++) {
+            assertEquals(bucket * 100, rows[bucket]);
+        }
+    }
+
+    @Test
+    void viewsDownsampleByTemperature() {
+        WeatherStore store = new WeatherStore();
+        for (int i = 0; i < 100; i++) {
+            store.add(19_000 + i, i == 37 ? -30 : i == 62 ? 45 : 10, 50, "Clear");
+        }
+        // Flat buckets keep their first row as the extreme the dip or peak is paired with
+        assertArrayEquals(new int[]{0, 37, 50, 62}, ChartDownsampler.minMax(store, 2));
+    }
+}
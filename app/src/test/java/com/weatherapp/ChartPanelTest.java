@@ -0,0 +1,61 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChartPanelTest {
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 200;
+    // Plot edges, as ChartPanel lays them out
+    private static final int TOP = 25;
+    private static final int BOTTOM = HEIGHT - 25 - 25;
+
+    private static WeatherStore temperatures(double... values) {
+        WeatherStore rows = new WeatherStore();
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < values.length; i++) {
+            rows.add((int) day.plusDays(i).toEpochDay(), values[i], 50, "Clear", "Oslo");
+        }
+        return rows;
+    }
+
+    private static ChartPanel.Geometry bars(double... values) {
+        return ChartPanel.project(temperatures(values), null, "Bar Chart", WIDTH, HEIGHT);
+    }
+
+    @Test
+    void negativeBarsHangFromTheTopEdge() {
+        ChartPanel.Geometry geo = bars(-10, -5, -20);
+        assertEquals(3, geo.count);
+        // Within a pixel, as coordinates are truncated
+        assertEquals(TOP, geo.barBase, 1);
+        for (int i = 0; i < geo.count; i++) {
+            assertTrue(geo.yPoints[i] >= TOP - 1 && geo.yPoints[i] <= BOTTOM, "bar " + i + " ends outside the plot");
+            assertTrue(geo.yPoints[i] >= geo.barBase, "bar " + i + " points up");
+        }
+        // The coldest reading is the longest bar
+        assertEquals(BOTTOM, geo.yPoints[2], 1);
+    }
+
+    @Test
+    void mixedBarsGrowFromZero() {
+        ChartPanel.Geometry geo = bars(-10, 10);
+        int zero = (TOP + BOTTOM) / 2;
+        assertEquals(zero, geo.barBase, 1);
+        assertTrue(geo.yPoints[0] > geo.barBase);
+        assertTrue(geo.yPoints[1] < geo.barBase);
+    }
+
+    @Test
+    void allZeroBarsStayOnTheBaseline() {
+        ChartPanel.Geometry geo = bars(0, 0, 0);
+        for (int i = 0; i < geo.count; i++) {
+            assertEquals(BOTTOM, geo.yPoints[i]);
+        }
+        assertEquals(BOTTOM, geo.barBase);
+    }
+}
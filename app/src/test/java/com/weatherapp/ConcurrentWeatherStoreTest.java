@@ -0,0 +1,141 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentWeatherStoreTest {
+    @TempDir
+    Path dir;
+
+    private static final LocalDate MONTH_START = LocalDate.of(2024, 3, 1);
+    private static final int FIRST_DAY = (int) MONTH_START.toEpochDay();
+    private static final int LAST_DAY = (int) MONTH_START.plusMonths(1).minusDays(1).toEpochDay();
+    private static final int READERS = 4;
+    private static final int WRITES = 2000;
+
+    private static WeatherEntry entry(int i, String city) {
+        return new WeatherEntry(MONTH_START.plusDays(i % 31), i % 40 - 10, i % 101, "Clear", city);
+    }
+
+    // The city's rows counted by scanning every row of the snapshot's month
+    private static int scan(ConcurrentWeatherStore.Snapshot snapshot, String city) {
+        WeatherView rows = snapshot.range(FIRST_DAY, LAST_DAY, null);
+        int count = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.getLocation(row).equals(city)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    void cityQueriesAgreeWithAScanOfTheSameSnapshot() {
+        ConcurrentWeatherStore store = new ConcurrentWeatherStore();
+        store.add(entry(0, "Oslo"));
+        store.add(entry(1, "Lisbon"));
+        ConcurrentWeatherStore.Snapshot snapshot = store.snapshot();
+        assertEquals(1, snapshot.range(FIRST_DAY, LAST_DAY, "Oslo").size());
+        assertEquals(0, snapshot.range(FIRST_DAY, LAST_DAY, "Bergen").size());
+
+        store.add(entry(2, "Oslo"));
+        assertEquals(2, store.snapshot().range(FIRST_DAY, LAST_DAY, "Oslo").size());
+        // The earlier snapshot doesn't change
+        assertEquals(1, snapshot.range(FIRST_DAY, LAST_DAY, "Oslo").size());
+    }
+
+    @Test
+    void readersQueryingACityWhileAWriterAddsToItsMonth() throws Exception {
+        ConcurrentWeatherStore store = new ConcurrentWeatherStore();
+        store.add(entry(0, "Lisbon"));
+        ExecutorService readers = Executors.newFixedThreadPool(READERS);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < READERS; i++) {
+                String city = i % 2 == 0 ? "Oslo" : "Lisbon";
+                results.add(readers.submit(() -> {
+                    int queries = 0;
+                    do {
+                        // Each write publishes a month store no thread has queried yet
+                        ConcurrentWeatherStore.Snapshot snapshot = store.snapshot();
+                        WeatherView rows = snapshot.range(FIRST_DAY, LAST_DAY, city);
+                        int previousDay = Integer.MIN_VALUE;
+                        for (int row = 0; row < rows.size(); row++) {
+                            assertEquals(city, rows.getLocation(row));
+                            assertTrue(rows.getEpochDay(row) >= previousDay, "rows out of order");
+                            previousDay = rows.getEpochDay(row);
+                        }
+                        assertEquals(scan(snapshot, city), rows.size(), "version " + snapshot.getVersion());
+                        queries++;
+                    } while (writing.get());
+                    return queries;
+                }));
+            }
+            for (int i = 1; i <= WRITES; i++) {
+                store.add(entry(i, i % 3 == 0 ? "Lisbon" : "Oslo"));
+            }
+            writing.set(false);
+            for (Future<Integer> result : results) {
+                assertTrue(result.get(10, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            writing.set(false);
+            readers.shutdownNow();
+        }
+        assertEquals(WRITES - WRITES / 3, store.snapshot().range(FIRST_DAY, LAST_DAY, "Oslo").size());
+        assertEquals(1 + WRITES / 3, store.snapshot().range(FIRST_DAY, LAST_DAY, "Lisbon").size());
+    }
+
+    // Rollups kept by a FileManager against ones built from the rows themselves
+    private static void assertRollupsMatch(WeatherView rows, RollupIndex rollups) {
+        Rollup expected = RollupIndex.of(rows).summarize(FIRST_DAY - 100, LAST_DAY);
+        Rollup actual = rollups.summarize(FIRST_DAY - 100, LAST_DAY);
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getSum(), actual.getSum(), 1e-9);
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+    }
+
+    @Test
+    void replaceJournalsOnlyTheDeletesThatMatched() {
+        FileManager fileManager = new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+        ConcurrentWeatherStore store = new ConcurrentWeatherStore(fileManager);
+        store.addAll(Arrays.asList(entry(0, "Oslo"), entry(1, "Oslo"), entry(2, "Lisbon")));
+
+        List<WeatherEntry> removed = Arrays.asList(
+                entry(1, "Oslo"),
+                // Same day and condition as a row, but no row has this temperature
+                new WeatherEntry(MONTH_START, 35.5, 0, "Clear", "Oslo"),
+                // A month with no rows at all
+                new WeatherEntry(MONTH_START.minusMonths(2), 1.0, 50, "Clear", "Oslo"));
+        assertEquals(1, store.replace(removed, Collections.singletonList(entry(3, "Bergen"))));
+        assertEquals(3, store.snapshot().size());
+        assertRollupsMatch(store.snapshot().toStore(), fileManager.getRollups());
+        fileManager.close();
+
+        FileManager reopened = new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+        try {
+            WeatherStore rows = reopened.loadStore();
+            assertEquals(3, rows.size());
+            assertRollupsMatch(rows, reopened.getRollups());
+        } finally {
+            reopened.close();
+        }
+    }
+}
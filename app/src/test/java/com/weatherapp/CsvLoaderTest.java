@@ -0,0 +1,126 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvLoaderTest {
+    @TempDir
+    Path dir;
+
+    private LoadResult load(String text) throws IOException {
+        Path path = dir.resolve("weather.csv");
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+        return CsvLoader.load(path);
+    }
+
+    @Test
+    void nonFiniteAndNonDecimalTemperaturesAreSkipped() throws IOException {
+        LoadResult result = load("01-03-2024,NaN,50,Clear\n"
+                + "02-03-2024,Infinity,50,Clear\n"
+                + "03-03-2024,-Infinity,50,Clear\n"
+                + "04-03-2024,1e999,50,Clear\n"
+                + "05-03-2024,0x1p3,50,Clear\n"
+                + "06-03-2024,12.5d,50,Clear\n"
+                + "07-03-2024,1.25e1,50,Clear\n"
+                + "08-03-2024,12.3456789012345678,50,Clear\n");
+        assertEquals(6, result.getSkippedLines());
+        WeatherStore store = result.getStore();
+        assertEquals(2, store.size());
+        assertEquals(12.5, store.getTemperature(0));
+        assertEquals(12.3456789012345678, store.getTemperature(1));
+    }
+
+    @Test
+    void lineSplitAcrossMappedChunksIsParsedOnce() throws IOException {
+        // Chunks are at least 1 MiB; 2.5 MiB of 27-byte lines puts a line
+        // across each of the first two chunk targets
+        int lineLength = "01-01-2000,0012.5,50,Clear\n".length();
+        int rows = (5 << 20) / 2 / lineLength;
+        assertTrue((1 << 20) % lineLength != 0);
+        StringBuilder text = new StringBuilder(rows * lineLength);
+        double sum = 0;
+        for (int i = 0; i < rows; i++) {
+            // Days within 1970-2243, temperatures -50.0 to 49.9 zero-padded to one width
+            double temperature = (i % 1000 - 500) / 10.0;
+            text.append(WeatherDates.format(i % 100_000)).append(',')
+                    .append(String.format(Locale.ROOT, "%06.1f", temperature)).append(",50,Clear\n");
+            sum += temperature;
+        }
+        Path path = dir.resolve("large.csv");
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals((long) rows * lineLength, Files.size(path));
+
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            LoadResult result = CsvLoader.load(path, pool);
+            assertEquals(0, result.getSkippedLines());
+            WeatherStore store = result.getStore();
+            assertEquals(rows, store.size());
+            double loaded = 0;
+            for (int row = 0; row < store.size(); row++) {
+                loaded += store.getTemperature(row);
+            }
+            assertEquals(sum, loaded, 1e-6);
+            assertEquals(1, store.conditionCount());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void crlfLineEndingsAndAMissingFinalNewline() throws IOException {
+        LoadResult result = load(CsvLoader.FIELDS_HEADER + "\r\n"
+                + "01-03-2024,4.5,50,Oslo,Clear\r\n"
+                + "\r\n"
+                + "02-03-2024,5.5,60,Bergen,Light rain");
+        assertEquals(0, result.getSkippedLines());
+        WeatherStore store = result.getStore();
+        assertEquals(2, store.size());
+        assertEquals("Clear", store.getCondition(0));
+        assertEquals("Oslo", store.getLocation(0));
+        assertEquals("Light rain", store.getCondition(1));
+        assertEquals(5.5, store.getTemperature(1));
+    }
+
+    @Test
+    void countsMalformedRows() throws IOException {
+        LoadResult result = load("#seq=7\n"
+                + "01-03-2024,4.5,50,Clear\n"
+                // Too few fields
+                + "02-03-2024,4.5,50\n"
+                // Bad dates
+                + "31-02-2024,4.5,50,Clear\n"
+                + "2024-03-03,4.5,50,Clear\n"
+                // Bad numbers
+                + "04-03-2024,warm,50,Clear\n"
+                + "05-03-2024,4.5,101,Clear\n"
+                + "06-03-2024,4.5,-1,Clear\n"
+                // Blank lines and comments are not rows
+                + "\n"
+                + "# a comment\n"
+                + "07-03-2024,-3,80,Snow, heavy\n");
+        assertEquals(6, result.getSkippedLines());
+        assertEquals(7, result.getSeq());
+        WeatherStore store = result.getStore();
+        assertEquals(2, store.size());
+        assertEquals("Snow, heavy", store.getCondition(1));
+    }
+
+    @Test
+    void emptyAndMissingFilesLoadNothing() throws IOException {
+        assertEquals(0, load("").getStore().size());
+        LoadResult missing = CsvLoader.load(dir.resolve("missing.csv"));
+        assertEquals(0, missing.getStore().size());
+        assertEquals(0, missing.getSkippedLines());
+    }
+}
@@ -0,0 +1,183 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistributionTest {
+    private static final double[] PERCENTS = {1, 5, 25, 50, 75, 95, 99, 100};
+
+    // Nearest-rank percentile of the values
+    private static double exactPercentile(List<Double> values, double percent) {
+        double[] sorted = values.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+        int rank = (int) Math.max(1, Math.ceil(percent / 100 * sorted.length));
+        return sorted[rank - 1];
+    }
+
+    private static double exactMean(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).sum() / values.size();
+    }
+
+    // Two-pass sample variance
+    private static double exactVariance(List<Double> values) {
+        double mean = exactMean(values);
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        return squares / (values.size() - 1);
+    }
+
+    private static void assertMatches(List<Double> values, Distribution distribution, double binWidth) {
+        assertEquals(values.size(), distribution.getCount());
+        assertEquals(exactMean(values), distribution.getMean(), 1e-9);
+        assertEquals(exactVariance(values), distribution.getVariance(), 1e-6 * Math.max(1, exactVariance(values)));
+        for (double percent : PERCENTS) {
+            double exact = exactPercentile(values, percent);
+            double estimate = distribution.getPercentile(percent);
+            assertTrue(Math.abs(estimate - exact) <= binWidth / 2 + 1e-9,
+                    "p" + percent + " is " + estimate + ", exactly " + exact);
+        }
+    }
+
+    @Test
+    void emptyHasNoValues() {
+        Distribution distribution = Distribution.temperatures();
+        assertTrue(Double.isNaN(distribution.getMean()));
+        assertTrue(Double.isNaN(distribution.getVariance()));
+        assertTrue(Double.isNaN(distribution.getPercentile(50)));
+    }
+
+    @Test
+    void percentilesOfAKnownSet() {
+        Distribution distribution = Distribution.humidities();
+        for (int humidity = 1; humidity <= 100; humidity++) {
+            distribution.add(humidity);
+        }
+        // Whole-percent humidities sit on the bin centres, so these are exact
+        assertEquals(5, distribution.getPercentile(5));
+        assertEquals(50, distribution.getPercentile(50));
+        assertEquals(95, distribution.getPercentile(95));
+        assertEquals(100, distribution.getPercentile(100));
+        assertEquals(50.5, distribution.getMean(), 1e-12);
+    }
+
+    @Test
+    void randomTemperaturesWithinHalfABin() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 200; trial++) {
+            List<Double> values = new ArrayList<>();
+            Distribution distribution = Distribution.temperatures();
+            int n = 2 + random.nextInt(500);
+            double centre = random.nextDouble() * 60 - 30;
+            for (int i = 0; i < n; i++) {
+                double value = Math.round((centre + random.nextGaussian() * 8) * 10) / 10.0;
+                values.add(value);
+                distribution.add(value);
+            }
+            assertMatches(values, distribution, Distribution.TEMPERATURE_BIN);
+        }
+    }
+
+    @Test
+    void removalsAndMergesMatchTheRemainingValues() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 100; trial++) {
+            List<Double> values = new ArrayList<>();
+            Distribution left = Distribution.temperatures();
+            Distribution right = Distribution.temperatures();
+            for (int i = 0; i < 300; i++) {
+                double value = Math.round((random.nextDouble() * 80 - 40) * 10) / 10.0;
+                values.add(value);
+                (i % 2 == 0 ? left : right).add(value);
+            }
+            left.merge(right);
+            for (int i = 0; i < 100; i++) {
+                left.remove(values.remove(random.nextInt(values.size())));
+            }
+            assertMatches(values, left, Distribution.TEMPERATURE_BIN);
+        }
+    }
+
+    @Test
+    void valuesBeyondTheRangeCountInTheEdgeBins() {
+        Distribution distribution = Distribution.temperatures();
+        distribution.add(-1000);
+        distribution.add(20);
+        distribution.add(1000);
+        assertEquals(-200, distribution.getPercentile(1));
+        assertEquals(20, distribution.getPercentile(50));
+        assertEquals(200, distribution.getPercentile(100));
+        // The moments still see the real values
+        assertEquals(20 / 3.0, distribution.getMean(), 1e-9);
+    }
+
+    @Test
+    void mergingDifferentBinWidthsFails() {
+        assertThrows(IllegalArgumentException.class, () -> Distribution.temperatures().merge(Distribution.humidities()));
+    }
+
+    @Test
+    void writeAndReadBack() throws IOException {
+        Distribution distribution = Distribution.temperatures();
+        for (double value : Arrays.asList(-7.5, 3.0, 3.5, 18.0, 18.0, 31.5)) {
+            distribution.add(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        distribution.writeTo(new DataOutputStream(bytes));
+        Distribution copy = Distribution.temperatures();
+        copy.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(distribution.getCount(), copy.getCount());
+        assertEquals(distribution.getMean(), copy.getMean());
+        assertEquals(distribution.getVariance(), copy.getVariance());
+        for (double percent : PERCENTS) {
+            assertEquals(distribution.getPercentile(percent), copy.getPercentile(percent));
+        }
+    }
+
+    @Test
+    void rollupSummariesMatchTheRowsInRange() {
+        Random random = new Random(11);
+        WeatherStore store = new WeatherStore();
+        int firstDay = 19000;
+        for (int i = 0; i < 2000; i++) {
+            store.add(new WeatherEntry(LocalDate.ofEpochDay(firstDay + random.nextInt(400)),
+                    Math.round((random.nextGaussian() * 10 + 5) * 10) / 10.0, random.nextInt(101), "Clear", "Oslo"));
+        }
+        RollupIndex index = RollupIndex.of(store);
+        for (int trial = 0; trial < 50; trial++) {
+            int start = firstDay + random.nextInt(400);
+            int end = start + random.nextInt(firstDay + 400 - start);
+            WeatherSummary expected = StatisticsAccumulator.of(store.range(start, end));
+            Rollup summary = index.summarize(start, end);
+            assertEquals(expected.getCount(), summary.getCount());
+            if (expected.getCount() == 0) {
+                continue;
+            }
+            assertEquals(expected.getAverage(), summary.getAverage(), 1e-9);
+            assertEquals(expected.getMin(), summary.getMin());
+            assertEquals(expected.getMax(), summary.getMax());
+            for (double percent : PERCENTS) {
+                assertEquals(expected.getTemperatures().getPercentile(percent), summary.getTemperatures().getPercentile(percent));
+                assertEquals(expected.getHumidities().getPercentile(percent), summary.getHumidities().getPercentile(percent));
+            }
+            if (expected.getCount() > 1) {
+                assertEquals(expected.getTemperatures().getVariance(), summary.getTemperatures().getVariance(), 1e-6);
+            }
+        }
+    }
+}
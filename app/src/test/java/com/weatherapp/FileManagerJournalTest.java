@@ -0,0 +1,103 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FileManagerJournalTest {
+    @TempDir
+    Path dir;
+
+    private FileManager open() {
+        // High enough that nothing is compacted, so every row comes from the journal
+        return new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+    }
+
+    private static WeatherEntry entry(String date, double temperature, String location) {
+        return new WeatherEntry(LocalDate.parse(date), temperature, 50, "Clear", location);
+    }
+
+    @Test
+    void nonAsciiLocationsReplay() {
+        FileManager fileManager = open();
+        fileManager.appendEntries(Arrays.asList(
+                entry("2024-03-01", 4.5, "Zürich"),
+                entry("2024-03-02", 28.0, "São Paulo"),
+                entry("2024-03-03", 12.0, "Oslo")));
+        fileManager.close();
+
+        FileManager reopened = open();
+        List<WeatherEntry> entries = reopened.loadEntries();
+        reopened.close();
+        assertEquals(3, entries.size());
+        assertEquals("Zürich", entries.get(0).getLocation());
+        assertEquals("São Paulo", entries.get(1).getLocation());
+        assertEquals("Oslo", entries.get(2).getLocation());
+    }
+
+    @Test
+    void commaDecimalLocaleWritesRecordsThatParse() {
+        Locale saved = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            FileManager fileManager = open();
+            fileManager.appendEntry(entry("2024-03-01", 21.5, "Berlin"));
+            fileManager.close();
+
+            FileManager reopened = open();
+            List<WeatherEntry> entries = reopened.loadEntries();
+            reopened.close();
+            assertEquals(1, entries.size());
+            assertEquals(21.5, entries.get(0).getTemperature());
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    @Test
+    void recordTornInsideACharacterIsCutOff() throws IOException {
+        FileManager fileManager = open();
+        fileManager.appendEntries(Arrays.asList(entry("2024-03-01", 4.5, "Zürich"), entry("2024-03-02", 5.5, "Zürich")));
+        fileManager.close();
+        // The start of a third record, ending on the first byte of "ü"
+        byte[] torn = "3|A@Z".getBytes(StandardCharsets.UTF_8);
+        byte[] tail = Arrays.copyOf(torn, torn.length + 1);
+        tail[torn.length] = "ü".getBytes(StandardCharsets.UTF_8)[0];
+        Files.write(dir.resolve("journal"), tail, StandardOpenOption.APPEND);
+
+        FileManager reopened = open();
+        assertEquals(2, reopened.loadEntries().size());
+        reopened.appendEntry(entry("2024-03-03", 6.5, "Zürich"));
+        reopened.close();
+
+        FileManager again = open();
+        List<WeatherEntry> entries = again.loadEntries();
+        again.close();
+        assertEquals(3, entries.size());
+        assertEquals(6.5, entries.get(2).getTemperature());
+    }
+
+    @Test
+    void onlyOneFileManagerMayOpenTheLog() {
+        FileManager first = open();
+        first.appendEntry(entry("2024-03-01", 4.5, "Oslo"));
+        FileManager second = open();
+        assertThrows(IllegalStateException.class, second::getPartitions);
+        first.close();
+
+        assertEquals(1, second.loadEntries().size());
+        second.close();
+    }
+}
@@ -0,0 +1,109 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class GeocodeCacheTest {
+    private static final Duration DAY = Duration.ofDays(1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void evictsTheLeastRecentlyUsedCity() {
+        GeocodeCache cache = new GeocodeCache(null, 2, DAY);
+        cache.put("Oslo", 59.9, 10.7);
+        cache.put("Lisbon", 38.7, -9.1);
+        // Oslo is now more recently used than Lisbon
+        assertNotNull(cache.get("oslo"));
+        cache.put("Bergen", 60.4, 5.3);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("Oslo"));
+        assertNull(cache.get("Lisbon"));
+        assertNotNull(cache.get("Bergen"));
+    }
+
+    @Test
+    void expiredEntriesAreMisses() throws InterruptedException {
+        GeocodeCache cache = new GeocodeCache(null, 16, Duration.ofMillis(20));
+        cache.put("Oslo", 59.9, 10.7);
+        Thread.sleep(50);
+        assertNull(cache.get("Oslo"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void expiredLinesAreNotLoaded() throws IOException {
+        Path path = dir.resolve("geocode.csv");
+        long old = System.currentTimeMillis() - DAY.toMillis() * 2;
+        Files.write(path, Arrays.asList(
+                "59.9,10.7," + old + ",oslo",
+                "38.7,-9.1," + System.currentTimeMillis() + ",lisbon"));
+        GeocodeCache cache = new GeocodeCache(path, 16, DAY);
+        assertNull(cache.get("Oslo"));
+        assertNotNull(cache.get("Lisbon"));
+    }
+
+    @Test
+    void entriesSurviveANewInstance() {
+        Path path = dir.resolve("geocode.csv");
+        GeocodeCache cache = new GeocodeCache(path, 16, DAY);
+        cache.put("Zürich", 47.4, 8.5);
+        cache.put("Washington, D.C.", 38.9, -77.0);
+
+        GeocodeCache reopened = new GeocodeCache(path, 16, DAY);
+        assertEquals(47.4, reopened.get("zürich").getLatitude());
+        assertEquals(-77.0, reopened.get("Washington, D.C.").getLongitude());
+    }
+
+    @Test
+    void compactingKeepsTheLiveEntriesAndNoTempFiles() throws IOException {
+        Path path = dir.resolve("geocode.csv");
+        GeocodeCache cache = new GeocodeCache(path, 2, DAY);
+        // The fifth put finds twice as many lines on disk as the cache holds, and compacts
+        for (int i = 0; i < 5; i++) {
+            cache.put("City " + i, i, i);
+        }
+        assertEquals(2, Files.readAllLines(path).size());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count());
+        }
+
+        GeocodeCache reopened = new GeocodeCache(path, 2, DAY);
+        assertEquals(2, reopened.size());
+        assertNotNull(reopened.get("City 3"));
+        assertNotNull(reopened.get("City 4"));
+    }
+
+    @Test
+    void cachedCitiesAreNotGeocodedAgain() throws Exception {
+        Path path = dir.resolve("geocode.csv");
+        try (StubWeatherApi api = new StubWeatherApi()) {
+            WeatherApiClient client = api.client(Duration.ofSeconds(5), new GeocodeCache(path, 16, DAY));
+            client.fetchWeatherAsync("Oslo").get(5, TimeUnit.SECONDS);
+            client.fetchWeatherAsync(" oslo ").get(5, TimeUnit.SECONDS);
+            assertEquals(1, api.getGeocodeRequests());
+            assertEquals(2, api.getForecastRequests());
+
+            // A client started later reads the city from the file
+            WeatherApiClient restarted = api.client(Duration.ofSeconds(5), new GeocodeCache(path, 16, DAY));
+            WeatherEntry entry = restarted.fetchWeatherAsync("Oslo").get(5, TimeUnit.SECONDS);
+            assertEquals(StubWeatherApi.temperatureOf("Oslo"), entry.getTemperature(), 1e-9);
+            assertEquals(1, api.getGeocodeRequests());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IngestionServiceTest {
+    private static final List<String> CITIES = Arrays.asList("Oslo", "Lima");
+    // Short enough that the first poll comes within 100 ms and the next within a second or so
+    private static final Duration INTERVAL = Duration.ofSeconds(1);
+
+    @TempDir
+    Path dir;
+    private StubWeatherApi api;
+
+    @BeforeEach
+    void startApi() throws Exception {
+        api = new StubWeatherApi();
+    }
+
+    @AfterEach
+    void stopApi() {
+        api.close();
+    }
+
+    private FileManager fileManager() {
+        return new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+    }
+
+    private int rowsOnDisk() {
+        FileManager fileManager = fileManager();
+        try {
+            return fileManager.loadStore().size();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private static void awaitAtLeast(IntSupplier value, int target) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (value.getAsInt() < target) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Still " + value.getAsInt() + ", expected " + target);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void restartOnTheSameDayDoesNotIngestAgain() throws Exception {
+        IngestionService first = new IngestionService(api.client(Duration.ofSeconds(5)), fileManager(), CITIES, INTERVAL, 2);
+        // Polls run one at a time, so once the next one has started the first has queued its readings
+        first.start();
+        awaitAtLeast(api::getForecastRequests, 2);
+        first.shutdown();
+        assertEquals(2, rowsOnDisk());
+
+        IngestionService second = new IngestionService(api.client(Duration.ofSeconds(5)), fileManager(), CITIES, INTERVAL, 2);
+        second.start();
+        awaitAtLeast(api::getForecastRequests, 4);
+        second.shutdown();
+        assertEquals(2, rowsOnDisk());
+    }
+
+    @Test
+    void aFailedWriteIsRetriedOnTheNextPoll() throws Exception {
+        AtomicInteger writes = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        FileManager failOnce = new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000) {
+            @Override
+            public void appendEntries(List<WeatherEntry> entries) {
+                if (writes.getAndIncrement() == 0) {
+                    throw new IllegalStateException("Disk full");
+                }
+                super.appendEntries(entries);
+                written.addAndGet(entries.size());
+            }
+        };
+        Metrics.Counter errors = Metrics.counter("ingest.write.errors");
+        long before = errors.get();
+        IngestionService service = new IngestionService(api.client(Duration.ofSeconds(5)), failOnce, CITIES, INTERVAL, 2);
+        service.start();
+        awaitAtLeast(written::get, 2);
+        service.shutdown();
+        assertEquals(1, errors.get() - before);
+        assertEquals(2, rowsOnDisk());
+    }
+}
@@ -0,0 +1,116 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatisticsAccumulatorTest {
+    private static final double EPSILON = 1e-9;
+
+    private static StatisticsAccumulator of(double... temperatures) {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        for (double temperature : temperatures) {
+            statistics.add(temperature, 50, "Clear");
+        }
+        return statistics;
+    }
+
+    @Test
+    void emptyHasNoValues() {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        assertTrue(statistics.isEmpty());
+        assertTrue(Double.isNaN(statistics.getAverage()));
+        assertTrue(Double.isNaN(statistics.getMin()));
+        assertTrue(Double.isNaN(statistics.getMax()));
+        assertNull(statistics.getMostCommonCondition());
+    }
+
+    @Test
+    void negativeOnlyReadings() {
+        StatisticsAccumulator statistics = of(-12.5, -3.0, -7.5);
+        assertEquals(-12.5, statistics.getMin());
+        // Used to come out as Double.MIN_VALUE, the smallest positive double
+        assertEquals(-3.0, statistics.getMax());
+        assertEquals(-23.0 / 3, statistics.getAverage(), EPSILON);
+    }
+
+    @Test
+    void mixedSignReadings() {
+        StatisticsAccumulator statistics = of(-5.0, 0.0, 12.5, -0.5);
+        assertEquals(-5.0, statistics.getMin());
+        assertEquals(12.5, statistics.getMax());
+        assertEquals(7.0 / 4, statistics.getAverage(), EPSILON);
+        assertEquals(4, statistics.getCount());
+    }
+
+    @Test
+    void removingTheExtremesMovesMinAndMax() {
+        StatisticsAccumulator statistics = of(-8.0, -2.0, 4.0, 9.0);
+        statistics.remove(-8.0, 50, "Clear");
+        statistics.remove(9.0, 50, "Clear");
+        assertEquals(-2.0, statistics.getMin());
+        assertEquals(4.0, statistics.getMax());
+        assertEquals(1.0, statistics.getAverage(), EPSILON);
+
+        statistics.remove(-2.0, 50, "Clear");
+        statistics.remove(4.0, 50, "Clear");
+        assertTrue(statistics.isEmpty());
+        assertTrue(Double.isNaN(statistics.getMax()));
+    }
+
+    @Test
+    void duplicateTemperaturesAreCountedSeparately() {
+        StatisticsAccumulator statistics = of(-4.0, -4.0, -1.0);
+        statistics.remove(-4.0, 50, "Clear");
+        assertEquals(-4.0, statistics.getMin());
+        assertEquals(2, statistics.getCount());
+    }
+
+    @Test
+    void removingAnUnknownTemperatureFails() {
+        StatisticsAccumulator statistics = of(1.0);
+        assertThrows(IllegalArgumentException.class, () -> statistics.remove(2.0, 50, "Clear"));
+        assertEquals(1, statistics.getCount());
+    }
+
+    @Test
+    void mergeMatchesOneAccumulatorOfEverything() {
+        StatisticsAccumulator cold = of(-15.0, -9.5);
+        StatisticsAccumulator warm = of(3.0, 21.5, 8.0);
+        cold.merge(warm);
+        StatisticsAccumulator all = of(-15.0, -9.5, 3.0, 21.5, 8.0);
+        assertEquals(all.getCount(), cold.getCount());
+        assertEquals(all.getAverage(), cold.getAverage(), EPSILON);
+        assertEquals(-15.0, cold.getMin());
+        assertEquals(21.5, cold.getMax());
+        assertEquals(all.getTemperatures().getStandardDeviation(), cold.getTemperatures().getStandardDeviation(), EPSILON);
+    }
+
+    @Test
+    void mostCommonCondition() {
+        StatisticsAccumulator statistics = new StatisticsAccumulator();
+        statistics.add(new WeatherEntry(LocalDate.of(2024, 1, 1), -1, 80, "Snow", "Oslo"));
+        statistics.add(new WeatherEntry(LocalDate.of(2024, 1, 2), -3, 85, "Snow", "Oslo"));
+        statistics.add(new WeatherEntry(LocalDate.of(2024, 1, 3), 2, 60, "Clear", "Oslo"));
+        assertEquals("Snow", statistics.getMostCommonCondition());
+        statistics.remove(new WeatherEntry(LocalDate.of(2024, 1, 1), -1, 80, "Snow", "Oslo"));
+        statistics.remove(new WeatherEntry(LocalDate.of(2024, 1, 2), -3, 85, "Snow", "Oslo"));
+        assertEquals("Clear", statistics.getMostCommonCondition());
+    }
+
+    @Test
+    void rollupsAgreeOnNegativeOnlyReadings() {
+        RollupIndex index = new RollupIndex();
+        int day = (int) LocalDate.of(2024, 1, 10).toEpochDay();
+        index.add(day, -12.5, 50, "Snow");
+        index.add(day + 1, -3.0, 50, "Snow");
+        Rollup summary = index.summarize(day, day + 1);
+        assertEquals(-12.5, summary.getMin());
+        assertEquals(-3.0, summary.getMax());
+    }
+}
@@ -0,0 +1,127 @@
+package com.weatherapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local stand-in for the geocoding and forecast endpoints. Every city
+// geocodes to coordinates derived from its name except "Nowhere", which is
+// not found. Responses can be delayed to simulate a slow network, and the
+// server counts requests and how many were in progress at once.
+final class StubWeatherApi implements AutoCloseable {
+    static final String UNKNOWN_CITY = "Nowhere";
+
+    private final HttpServer server;
+    private volatile long latencyMillis;
+    private final AtomicInteger geocodeRequests = new AtomicInteger();
+    private final AtomicInteger forecastRequests = new AtomicInteger();
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final AtomicInteger maxInProgress = new AtomicInteger();
+
+    StubWeatherApi() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/geocode", this::geocode);
+        server.createContext("/forecast", this::forecast);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "stub-weather-api");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+    }
+
+    WeatherApiClient client(Duration timeout) {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new WeatherApiClient(base + "/geocode", base + "/forecast", timeout);
+    }
+
+    WeatherApiClient client(Duration timeout, GeocodeCache geocodeCache) {
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        return new WeatherApiClient(base + "/geocode", base + "/forecast", timeout, geocodeCache);
+    }
+
+    void setLatency(Duration latency) {
+        latencyMillis = latency.toMillis();
+    }
+
+    int getGeocodeRequests() {
+        return geocodeRequests.get();
+    }
+
+    int getForecastRequests() {
+        return forecastRequests.get();
+    }
+
+    int getMaxInProgress() {
+        return maxInProgress.get();
+    }
+
+    // Temperature the forecast reports for a city's coordinates
+    static double temperatureOf(String city) {
+        return latitudeOf(city) / 10;
+    }
+
+    private static double latitudeOf(String city) {
+        return Math.floorMod(city.hashCode(), 900) / 10.0;
+    }
+
+    private void geocode(HttpExchange exchange) throws IOException {
+        geocodeRequests.incrementAndGet();
+        String city = URLDecoder.decode(exchange.getRequestURI().getRawQuery().substring("name=".length()), StandardCharsets.UTF_8);
+        String body = city.equals(UNKNOWN_CITY) ? "{}"
+                : "{\"results\":[{\"latitude\":" + latitudeOf(city) + ",\"longitude\":" + latitudeOf(city) + "}]}";
+        respond(exchange, body);
+    }
+
+    // latitude=a,b,...&longitude=...; one object for one location, an array for several
+    private void forecast(HttpExchange exchange) throws IOException {
+        forecastRequests.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        String latitudes = query.substring("latitude=".length(), query.indexOf('&'));
+        String[] values = latitudes.split(",");
+        StringBuilder body = new StringBuilder(values.length > 1 ? "[" : "");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            double temperature = Double.parseDouble(values[i]) / 10;
+            body.append("{\"current_weather\":{\"temperature\":").append(temperature).append(",\"weathercode\":0}}");
+        }
+        respond(exchange, body.append(values.length > 1 ? "]" : "").toString());
+    }
+
+    private void respond(HttpExchange exchange, String body) throws IOException {
+        int now = inProgress.incrementAndGet();
+        maxInProgress.accumulateAndGet(now, Math::max);
+        try {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // The client gave up on the request
+        } finally {
+            inProgress.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,161 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherApiClientTest {
+    private static final Duration SLOW = Duration.ofSeconds(3);
+
+    private StubWeatherApi api;
+
+    @BeforeEach
+    void startApi() throws Exception {
+        api = new StubWeatherApi();
+    }
+
+    @AfterEach
+    void stopApi() {
+        api.close();
+    }
+
+    // Polls the condition for up to a second
+    static void awaitTrue(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError(message);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void fetchesOneCity() throws Exception {
+        WeatherEntry entry = api.client(Duration.ofSeconds(5)).fetchWeatherAsync("Oslo").get(5, TimeUnit.SECONDS);
+        assertEquals("Oslo", entry.getLocation());
+        assertEquals(StubWeatherApi.temperatureOf("Oslo"), entry.getTemperature(), 1e-9);
+        assertEquals("Clear sky", entry.getCondition());
+    }
+
+    @Test
+    void unknownCityFails() {
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> api.client(Duration.ofSeconds(5)).fetchWeatherAsync(StubWeatherApi.UNKNOWN_CITY).get(5, TimeUnit.SECONDS));
+        assertEquals("City not found", error.getCause().getMessage());
+    }
+
+    @Test
+    void returnsBeforeTheResponseArrives() {
+        api.setLatency(Duration.ofMillis(500));
+        long start = System.nanoTime();
+        CompletableFuture<WeatherEntry> fetch = api.client(Duration.ofSeconds(5)).fetchWeatherAsync("Oslo");
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(250), "fetchWeatherAsync blocked the caller");
+        assertFalse(fetch.isDone());
+        fetch.cancel(true);
+    }
+
+    @Test
+    void timesOutWhenTheServerIsSlow() {
+        api.setLatency(SLOW);
+        long start = System.nanoTime();
+        CompletableFuture<WeatherEntry> fetch = api.client(Duration.ofMillis(300)).fetchWeatherAsync("Oslo");
+        ExecutionException error = assertThrows(ExecutionException.class, () -> fetch.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof TimeoutException || error.getCause() instanceof HttpTimeoutException,
+                "Unexpected " + error.getCause());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2000), "Timed out too late");
+    }
+
+    @Test
+    void cancelAbortsTheRequestInFlight() throws Exception {
+        api.setLatency(SLOW);
+        Metrics.Counter errors = Metrics.counter("api.geocode.errors");
+        long before = errors.get();
+        CompletableFuture<WeatherEntry> fetch = api.client(Duration.ofSeconds(10)).fetchWeatherAsync("Oslo");
+        awaitTrue(() -> api.getGeocodeRequests() == 1, "The geocode request never arrived");
+
+        assertTrue(fetch.cancel(true));
+        assertThrows(CancellationException.class, () -> fetch.get(1, TimeUnit.SECONDS));
+        // A request that ran to the end would only complete, successfully, after SLOW
+        awaitTrue(() -> errors.get() > before, "The geocode request was not aborted");
+        assertEquals(0, api.getForecastRequests());
+    }
+
+    @Test
+    void citiesAreSeparatedBySemicolons() {
+        assertEquals(Arrays.asList("Portland, OR", "Salem"), WeatherApiClient.parseCities(" Portland, OR; Salem ;; "));
+    }
+
+    @Test
+    void batchFetchesEveryCityWithBoundedConcurrency() throws Exception {
+        api.setLatency(Duration.ofMillis(100));
+        List<String> cities = Arrays.asList("Oslo", "Lima", "Cairo", "Perth", "oslo ", "Quito", "Hanoi");
+        WeatherApiClient.BatchResult result = api.client(Duration.ofSeconds(5)).fetchWeatherBatchAsync(cities, 2)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(Arrays.asList("Oslo", "Lima", "Cairo", "Perth", "Quito", "Hanoi"), List.copyOf(result.getEntries().keySet()));
+        for (WeatherEntry entry : result.getEntries().values()) {
+            assertEquals(StubWeatherApi.temperatureOf(entry.getLocation()), entry.getTemperature(), 1e-9);
+        }
+        assertTrue(result.getFailures().isEmpty());
+        // One lookup per distinct city, then a single forecast request for all of them
+        assertEquals(6, api.getGeocodeRequests());
+        assertEquals(1, api.getForecastRequests());
+        assertTrue(api.getMaxInProgress() <= 2, "Up to " + api.getMaxInProgress() + " requests ran at once");
+    }
+
+    @Test
+    void batchReportsFailedCitiesAlongsideTheRest() throws Exception {
+        WeatherApiClient.BatchResult result = api.client(Duration.ofSeconds(5))
+                .fetchWeatherBatchAsync(Arrays.asList("Oslo", StubWeatherApi.UNKNOWN_CITY, "Lima"), 4).get(10, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("Oslo", "Lima"), List.copyOf(result.getEntries().keySet()));
+        assertEquals("City not found", result.getFailures().get(StubWeatherApi.UNKNOWN_CITY).getMessage());
+    }
+
+    @Test
+    void batchCancelAbortsEveryRequestInFlight() throws Exception {
+        api.setLatency(SLOW);
+        Metrics.Counter errors = Metrics.counter("api.geocode.errors");
+        long before = errors.get();
+        CompletableFuture<WeatherApiClient.BatchResult> batch = api.client(Duration.ofSeconds(10))
+                .fetchWeatherBatchAsync(Arrays.asList("Oslo", "Lima", "Cairo", "Perth"), 3);
+        awaitTrue(() -> api.getGeocodeRequests() == 3, "The geocode requests never arrived");
+
+        assertTrue(batch.cancel(true));
+        awaitTrue(() -> errors.get() - before >= 3, "Only " + (errors.get() - before) + " of 3 lookups were aborted");
+        // Nothing new starts after the cancel
+        Thread.sleep(100);
+        assertEquals(3, api.getGeocodeRequests());
+        assertEquals(0, api.getForecastRequests());
+    }
+
+    @Test
+    void batchStepsTimeOut() throws Exception {
+        api.setLatency(SLOW);
+        long start = System.nanoTime();
+        WeatherApiClient.BatchResult result = api.client(Duration.ofMillis(300))
+                .fetchWeatherBatchAsync(Arrays.asList("Oslo", "Lima"), 2).get(10, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2000), "Timed out too late");
+        assertTrue(result.getEntries().isEmpty());
+        assertEquals(2, result.getFailures().size());
+        for (Throwable failure : result.getFailures().values()) {
+            assertTrue(failure instanceof TimeoutException || failure instanceof HttpTimeoutException, "Unexpected " + failure);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherBinaryFormatTest {
+    private static final String[] CONDITIONS = {"Clear", "Rain", "Snow, heavy"};
+    private static final String[] LOCATIONS = {"Oslo", "Zürich", "São Paulo"};
+
+    @TempDir
+    Path dir;
+
+    // Spans more than one block, so the per-block checksums and offsets are exercised
+    private static WeatherStore rows(int count, LocalDate first) {
+        WeatherStore store = new WeatherStore(count);
+        int firstDay = (int) first.toEpochDay();
+        for (int i = 0; i < count; i++) {
+            store.add(firstDay + i / 3000, (i % 900 - 300) / 10.0, i % 101, CONDITIONS[i % 3], LOCATIONS[i % 7 % 3]);
+        }
+        return store;
+    }
+
+    private static void assertSameRows(WeatherView expected, WeatherView actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochDay(row), actual.getEpochDay(row), "day of row " + row);
+            assertEquals(expected.getTemperature(row), actual.getTemperature(row), "temperature of row " + row);
+            assertEquals(expected.getHumidity(row), actual.getHumidity(row), "humidity of row " + row);
+            assertEquals(expected.getCondition(row), actual.getCondition(row), "condition of row " + row);
+            assertEquals(expected.getLocation(row), actual.getLocation(row), "location of row " + row);
+        }
+    }
+
+    private static byte[] write(WeatherView rows, long seq) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WeatherBinaryFormat.write(out, rows, seq);
+        return out.toByteArray();
+    }
+
+    // A version 1 file: no location dictionary, rows without a location column
+    private static byte[] writeVersion1(WeatherView rows, long seq) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(26);
+        header.putInt(WeatherBinaryFormat.MAGIC).putShort((short) 1).putLong(seq).putInt(rows.size())
+                .putInt(rows.size()).putInt(rows.conditionCount());
+        out.write(header.array());
+        crc.update(header.array());
+        for (int code = 0; code < rows.conditionCount(); code++) {
+            byte[] name = rows.conditionName(code).getBytes(StandardCharsets.UTF_8);
+            byte[] length = {(byte) (name.length >>> 8), (byte) name.length};
+            out.write(length);
+            out.write(name);
+            crc.update(length);
+            crc.update(name);
+        }
+        out.writeInt((int) crc.getValue());
+        ByteBuffer block = ByteBuffer.allocate(rows.size() * 15);
+        for (int row = 0; row < rows.size(); row++) {
+            block.putInt(rows.getEpochDay(row));
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            block.putDouble(rows.getTemperature(row));
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            block.put((byte) rows.getHumidity(row));
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            block.putShort((short) rows.getConditionCode(row));
+        }
+        crc.reset();
+        crc.update(block.array());
+        out.write(block.array());
+        out.writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void roundTripsEveryColumn() throws IOException {
+        WeatherStore rows = rows(WeatherBinaryFormat.BLOCK_ROWS * 2 + 123, LocalDate.of(2023, 1, 1));
+        LoadResult result = WeatherBinaryFormat.read(new ByteArrayInputStream(write(rows, 42)));
+        assertEquals(42, result.getSeq());
+        assertEquals(0, result.getSkippedLines());
+        assertSameRows(rows, result.getStore());
+    }
+
+    @Test
+    void roundTripsAnEmptyStore() throws IOException {
+        LoadResult result = WeatherBinaryFormat.read(new ByteArrayInputStream(write(new WeatherStore(), 3)));
+        assertEquals(3, result.getSeq());
+        assertTrue(result.getStore().isEmpty());
+    }
+
+    @Test
+    void readsVersion1WithTheEmptyLocation() throws IOException {
+        WeatherStore rows = new WeatherStore();
+        int day = (int) LocalDate.of(2024, 3, 1).toEpochDay();
+        rows.add(day, 4.5, 70, "Rain");
+        rows.add(day + 1, -2.25, 90, "Snow, heavy");
+        LoadResult result = WeatherBinaryFormat.read(new ByteArrayInputStream(writeVersion1(rows, 9)));
+        assertEquals(9, result.getSeq());
+        assertSameRows(rows, result.getStore());
+        assertEquals("", result.getStore().getLocation(1));
+    }
+
+    @Test
+    void version1BaseFileMigratesToVersion2Partitions() throws IOException {
+        WeatherStore rows = new WeatherStore();
+        int march = (int) LocalDate.of(2024, 3, 30).toEpochDay();
+        rows.add(march, 4.5, 70, "Rain");
+        rows.add(march + 3, 6.0, 60, "Clear");
+        Path legacy = dir.resolve("weather_data.wdb");
+        Files.write(legacy, writeVersion1(rows, 5));
+
+        FileManager fileManager = new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000, legacy);
+        try {
+            assertSameRows(rows, fileManager.loadStore());
+            assertEquals(2, fileManager.getPartitions().size());
+        } finally {
+            fileManager.close();
+        }
+        Path april = dir.resolve("data").resolve("2024-04.wdb");
+        byte[] partition = Files.readAllBytes(april);
+        assertEquals(WeatherBinaryFormat.VERSION, ByteBuffer.wrap(partition, 4, 2).getShort());
+        assertEquals(1, WeatherBinaryFormat.read(april).getStore().size());
+    }
+
+    @Test
+    void damagedBlocksAndHeadersAreRejected() throws IOException {
+        byte[] bytes = write(rows(100, LocalDate.of(2024, 3, 1)), 1);
+        byte[] damagedBlock = bytes.clone();
+        damagedBlock[bytes.length - 10] ^= 1;
+        IOException block = assertThrows(IOException.class,
+                () -> WeatherBinaryFormat.read(new ByteArrayInputStream(damagedBlock)));
+        assertTrue(block.getMessage().contains("block checksum"), block.getMessage());
+
+        byte[] damagedHeader = bytes.clone();
+        // The first byte of the first condition name
+        damagedHeader[28] ^= 1;
+        IOException header = assertThrows(IOException.class,
+                () -> WeatherBinaryFormat.read(new ByteArrayInputStream(damagedHeader)));
+        assertTrue(header.getMessage().contains("header checksum"), header.getMessage());
+
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> WeatherBinaryFormat.read(new ByteArrayInputStream(truncated)));
+    }
+
+    @Test
+    void partitionFailingItsChecksumIsMovedAside() throws IOException {
+        WeatherStore rows = new WeatherStore();
+        rows.add((int) LocalDate.of(2024, 2, 10).toEpochDay(), 1.0, 80, "Snow", "Oslo");
+        rows.add((int) LocalDate.of(2024, 3, 10).toEpochDay(), 4.5, 70, "Rain", "Oslo");
+        FileManager fileManager = new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+        fileManager.saveStore(rows);
+        fileManager.close();
+
+        Path march = dir.resolve("data").resolve("2024-03.wdb");
+        byte[] bytes = Files.readAllBytes(march);
+        bytes[bytes.length - 10] ^= 1;
+        Files.write(march, bytes);
+
+        FileManager reopened = new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+        try {
+            WeatherStore loaded = reopened.loadStore();
+            // February is intact; March is kept aside for inspection instead of being read
+            assertEquals(1, loaded.size());
+            assertEquals(1.0, loaded.getTemperature(0));
+        } finally {
+            reopened.close();
+        }
+        assertFalse(Files.exists(march));
+        assertTrue(Files.exists(dir.resolve("data").resolve("2024-03.wdb.corrupt")));
+    }
+}
@@ -0,0 +1,62 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class WeatherCriteriaTest {
+    private static final int DAY = 19800;
+
+    private static WeatherStore store(double... temperatures) {
+        WeatherStore store = new WeatherStore();
+        for (int i = 0; i < temperatures.length; i++) {
+            store.add(DAY + i, temperatures[i], 50, i % 2 == 0 ? "Clear" : "Rain", "Oslo");
+        }
+        return store;
+    }
+
+    @Test
+    void dateRangeAndConditionAreCombined() {
+        WeatherStore store = store(10, 11, 12, 13, 14, 15);
+        assertArrayEquals(new int[]{1, 2, 3, 4}, new WeatherCriteria(DAY + 1, DAY + 4, null, 0).matchingRows(store));
+        assertArrayEquals(new int[]{2, 4}, new WeatherCriteria(DAY + 1, DAY + 4, " clear ", 0).matchingRows(store));
+        assertArrayEquals(new int[]{}, new WeatherCriteria(DAY + 1, DAY + 4, "Snow", 0).matchingRows(store));
+    }
+
+    @Test
+    void aSingleSpikeIsAnOutlierAgainstTheOtherRows() {
+        // Counted in its own mean and deviation, the spike is only 2.8σ out of
+        // ten rows, and would pass a 3σ test
+        WeatherStore store = store(10, 10, 10, 10, 10, 10, 10, 10, 10, 40);
+        assertArrayEquals(new int[]{9}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 3).matchingRows(store));
+    }
+
+    @Test
+    void rowsWithinTheLimitAreKept() {
+        WeatherStore store = store(9, 11, 10, 12, 8, 10, 11, 9);
+        assertArrayEquals(new int[]{}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 3).matchingRows(store));
+    }
+
+    @Test
+    void outliersAreMeasuredAgainstRowsThatPassTheOtherTests() {
+        // 25 is an outlier among the clear days, but not against the spread of the rainy ones
+        WeatherStore store = store(10, -20, 10.5, 40, 9.5, 0, 10, 30, 25);
+        assertArrayEquals(new int[]{8}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, "Clear", 3).matchingRows(store));
+        assertArrayEquals(new int[]{}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 3).matchingRows(store));
+    }
+
+    @Test
+    void smallGroupsHaveNoOutliers() {
+        assertArrayEquals(new int[]{}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 1).matchingRows(store(10)));
+        assertArrayEquals(new int[]{}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 1).matchingRows(store(10, 40)));
+        // With two other rows the same, any other temperature is out
+        assertArrayEquals(new int[]{2}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 3).matchingRows(store(10, 10, 11)));
+    }
+
+    @Test
+    void rowsOfARangeViewAreStoreRows() {
+        WeatherStore store = store(1, 2, 3, 10, 10, 10, 10, 10, 10, 10, 10, 10, 40);
+        WeatherView view = store.range(DAY + 3, DAY + 12);
+        assertArrayEquals(new int[]{12}, new WeatherCriteria(Integer.MIN_VALUE, Integer.MAX_VALUE, null, 3).matchingRows(view));
+    }
+}
@@ -0,0 +1,76 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WeatherDatesTest {
+    private static int epochDay(int year, int month, int day) {
+        return (int) LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    @Test
+    void parsesValidDates() {
+        assertEquals(epochDay(2024, 3, 10), WeatherDates.parseEpochDay("10-03-2024"));
+        assertEquals(epochDay(1970, 1, 1), WeatherDates.parseEpochDay("01-01-1970"));
+        assertEquals(epochDay(1969, 12, 31), WeatherDates.parseEpochDay("31-12-1969"));
+        assertEquals(epochDay(9999, 12, 31), WeatherDates.parseEpochDay("31-12-9999"));
+        assertEquals(epochDay(0, 1, 1), WeatherDates.parseEpochDay("01-01-0000"));
+        // One-digit day and month, as older files have them
+        assertEquals(epochDay(2024, 3, 5), WeatherDates.parseEpochDay("5-3-2024"));
+    }
+
+    @Test
+    void parsesASliceOfLongerText() {
+        String line = "x,07-11-2023,4.5";
+        assertEquals(epochDay(2023, 11, 7), WeatherDates.parseEpochDay(line, 2, 12));
+    }
+
+    @Test
+    void leapDays() {
+        assertEquals(epochDay(2024, 2, 29), WeatherDates.parseEpochDay("29-02-2024"));
+        assertEquals(epochDay(2000, 2, 29), WeatherDates.parseEpochDay("29-02-2000"));
+        // Centuries are only leap years when divisible by 400
+        assertThrows(DateTimeException.class, () -> WeatherDates.parseEpochDay("29-02-1900"));
+        assertThrows(DateTimeException.class, () -> WeatherDates.parseEpochDay("29-02-2023"));
+        assertThrows(DateTimeException.class, () -> WeatherDates.parseEpochDay("30-02-2024"));
+    }
+
+    @Test
+    void rejectsOutOfRangeFields() {
+        for (String text : Arrays.asList("00-03-2024", "32-01-2024", "31-04-2024", "10-00-2024", "10-13-2024")) {
+            assertThrows(DateTimeException.class, () -> WeatherDates.parseEpochDay(text), text);
+        }
+    }
+
+    @Test
+    void rejectsShortAndMissingFields() {
+        for (String text : Arrays.asList("", "10", "10-03", "10-03-", "10-03-24", "10-03-202", "-03-2024", "10--2024",
+                "100-03-2024", "10-003-2024")) {
+            assertThrows(DateTimeException.class, () -> WeatherDates.parseEpochDay(text), text);
+        }
+    }
+
+    @Test
+    void rejectsTrailingGarbageAndOtherSeparators() {
+        for (String text : Arrays.asList("10-03-20245", "10-03-2024 ", "10-03-2024x", " 10-03-2024", "10/03/2024",
+                "10-03-2O24", "+1-03-2024", "2024-03-10")) {
+            assertThrows(DateTimeException.class, () -> WeatherDates.parseEpochDay(text), text);
+        }
+    }
+
+    @Test
+    void roundTripsWithFormat() {
+        // Every day over four centuries, so every leap rule comes up
+        for (int day = epochDay(1800, 1, 1); day <= epochDay(2200, 12, 31); day++) {
+            String text = WeatherDates.format(day);
+            assertEquals(LocalDate.ofEpochDay(day).format(WeatherDates.FORMAT), text);
+            assertEquals(day, WeatherDates.parseEpochDay(text), text);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WeatherHistoryTest {
+    private static final YearMonth NEWEST = YearMonth.of(2024, 6);
+    private static final int RECENT_PARTITIONS = 3;
+
+    @TempDir
+    Path dir;
+
+    private FileManager fileManager() {
+        return new FileManager(dir.resolve("data"), dir.resolve("journal"), 1000);
+    }
+
+    // One reading on the 10th of each of the six months up to NEWEST
+    private void writeSixMonths() {
+        List<WeatherEntry> entries = new ArrayList<>();
+        for (int i = 5; i >= 0; i--) {
+            entries.add(new WeatherEntry(NEWEST.minusMonths(i).atDay(10), 10 + i, 50, "Clear", "Oslo"));
+        }
+        FileManager fileManager = fileManager();
+        fileManager.saveEntries(entries);
+        fileManager.close();
+    }
+
+    private static int count(WeatherView rows, WeatherEntry entry) {
+        int matches = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            if (rows.getEpochDay(row) == entry.getDate().toEpochDay() && FileManager.sameRow(rows, row, entry)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Test
+    void addingToAMonthNotLoadedAddsTheRowOnce() {
+        writeSixMonths();
+        FileManager fileManager = fileManager();
+        WeatherHistory history = new WeatherHistory(fileManager, RECENT_PARTITIONS);
+        assertEquals(NEWEST.minusMonths(2), history.getLoadedFrom());
+        assertEquals(3, history.getStore().size());
+
+        // Five months back, so adding it pages in two older months as well
+        WeatherEntry old = new WeatherEntry(NEWEST.minusMonths(4).atDay(20), -3.5, 70, "Snow", "Oslo");
+        history.add(Arrays.asList(old));
+
+        WeatherStore store = history.getStore();
+        assertEquals(1, count(store, old));
+        assertEquals(6, store.size());
+        assertEquals(store.size(), history.getStatistics().getCount());
+        assertEquals(-3.5, history.getStatistics().getMin());
+        Rollup month = fileManager.getRollups().summarize((int) NEWEST.minusMonths(4).atDay(1).toEpochDay(),
+                (int) NEWEST.minusMonths(4).atEndOfMonth().toEpochDay());
+        assertEquals(2, month.getCount());
+        fileManager.close();
+
+        FileManager reopened = fileManager();
+        assertEquals(1, count(reopened.loadStore(), old));
+        assertEquals(7, reopened.loadStore().size());
+        reopened.close();
+    }
+
+    @Test
+    void addingToLoadedMonthsReturnsTheirRows() {
+        writeSixMonths();
+        FileManager fileManager = fileManager();
+        WeatherHistory history = new WeatherHistory(fileManager, RECENT_PARTITIONS);
+        WeatherEntry first = new WeatherEntry(NEWEST.atDay(1), 20, 50, "Clear", "Lima");
+        WeatherEntry last = new WeatherEntry(NEWEST.atDay(30), 21, 50, "Clear", "Lima");
+        int[] rows = history.add(Arrays.asList(last, first));
+
+        WeatherStore store = history.getStore();
+        assertEquals(5, store.size());
+        // The later entry went in first, at the end; the earlier one then went
+        // in before the 10th, moving it along
+        assertEquals(3, rows[0]);
+        assertEquals(2, rows[1]);
+        assertEquals(NEWEST.atDay(1).toEpochDay(), store.getEpochDay(2));
+        assertEquals(NEWEST.atDay(30).toEpochDay(), store.getEpochDay(4));
+        fileManager.close();
+    }
+}
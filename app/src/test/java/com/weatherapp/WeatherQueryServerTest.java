@@ -0,0 +1,99 @@
+package com.weatherapp;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class WeatherQueryServerTest {
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 10);
+
+    private ConcurrentWeatherStore store;
+    private WeatherQueryServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void start() throws IOException {
+        store = new ConcurrentWeatherStore();
+        store.add(new WeatherEntry(DAY, 4.5, 70, "Rain", "Oslo"));
+        store.add(new WeatherEntry(DAY.plusDays(1), 6.0, 60, "Clear", "Oslo"));
+        store.add(new WeatherEntry(DAY, 12.0, 55, "Clear", "Lisbon"));
+        server = new WeatherQueryServer(store, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String pathAndQuery, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + pathAndQuery));
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void rangeReturnsTheCitysRows() throws Exception {
+        HttpResponse<String> response = get("/api/range?from=01-03-2024&to=31-03-2024&city=Oslo", null);
+        assertEquals(200, response.statusCode());
+        JSONArray rows = new JSONArray(response.body());
+        assertEquals(2, rows.length());
+        assertEquals("10-03-2024", rows.getJSONObject(0).getString("date"));
+        assertEquals(4.5, rows.getJSONObject(0).getDouble("temperature"));
+    }
+
+    @Test
+    void statsCoverEveryCityOrOne() throws Exception {
+        assertEquals(3, new JSONObject(get("/api/stats", null).body()).getLong("count"));
+        assertEquals(1, new JSONObject(get("/api/stats?city=Lisbon", null).body()).getLong("count"));
+    }
+
+    @Test
+    void repeatedQueryIsNotModifiedUntilTheStoreChanges() throws Exception {
+        String path = "/api/stats?city=Oslo";
+        String etag = get(path, null).headers().firstValue("ETag").orElseThrow();
+        assertEquals(etag, get(path, null).headers().firstValue("ETag").orElseThrow());
+        assertEquals(304, get(path, etag).statusCode());
+
+        store.add(new WeatherEntry(DAY.plusDays(2), 8.0, 50, "Clear", "Oslo"));
+        HttpResponse<String> changed = get(path, etag);
+        assertEquals(200, changed.statusCode());
+        assertNotEquals(etag, changed.headers().firstValue("ETag").orElseThrow());
+        assertEquals(3, new JSONObject(changed.body()).getLong("count"));
+    }
+
+    @Test
+    void differentQueriesHaveDifferentTags() throws Exception {
+        String oslo = get("/api/stats?city=Oslo", null).headers().firstValue("ETag").orElseThrow();
+        String lisbon = get("/api/stats?city=Lisbon", null).headers().firstValue("ETag").orElseThrow();
+        String range = get("/api/range?city=Oslo", null).headers().firstValue("ETag").orElseThrow();
+        assertNotEquals(oslo, lisbon);
+        assertNotEquals(oslo, range);
+        assertEquals(200, get("/api/stats?city=Lisbon", oslo).statusCode());
+    }
+
+    @Test
+    void aNewServerDoesNotMatchAnOldTag() throws Exception {
+        String etag = get("/api/stats", null).headers().firstValue("ETag").orElseThrow();
+        server.stop();
+        server = new WeatherQueryServer(store, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+        assertEquals(200, get("/api/stats", etag).statusCode());
+    }
+}
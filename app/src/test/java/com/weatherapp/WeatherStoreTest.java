@@ -0,0 +1,109 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeatherStoreTest {
+    private static final int MARCH_1 = (int) LocalDate.of(2024, 3, 1).toEpochDay();
+
+    // Three rows on the 1st, one on the 2nd, none on the 3rd, two on the 4th, three on the 5th
+    private static WeatherStore store() {
+        WeatherStore store = new WeatherStore();
+        int[] offsets = {4, 0, 1, 3, 0, 4, 0, 3, 4};
+        for (int i = 0; i < offsets.length; i++) {
+            store.add(MARCH_1 + offsets[i], i, 50, "Clear", i % 2 == 0 ? "Oslo" : "Bergen");
+        }
+        return store;
+    }
+
+    private static void assertDays(WeatherView rows, int... offsets) {
+        assertEquals(offsets.length, rows.size());
+        for (int i = 0; i < offsets.length; i++) {
+            assertEquals(MARCH_1 + offsets[i], rows.getEpochDay(i), "row " + i);
+        }
+    }
+
+    @Test
+    void rangesOfAnEmptyStoreAreEmpty() {
+        WeatherStore store = new WeatherStore();
+        assertTrue(store.range(Integer.MIN_VALUE, Integer.MAX_VALUE).isEmpty());
+        assertTrue(store.range(MARCH_1, MARCH_1 + 10, "Oslo").isEmpty());
+        assertTrue(store.onDay(MARCH_1).isEmpty());
+        assertTrue(store.lastDays(7).isEmpty());
+        assertEquals(0, store.lowerBound(MARCH_1));
+        assertEquals(0, store.upperBound(MARCH_1));
+    }
+
+    @Test
+    void rangesIncludeEveryRowOfTheirEdgeDays() {
+        WeatherStore store = store();
+        assertDays(store.range(MARCH_1, MARCH_1 + 4), 0, 0, 0, 1, 3, 3, 4, 4, 4);
+        assertDays(store.range(MARCH_1, MARCH_1), 0, 0, 0);
+        assertDays(store.range(MARCH_1 + 3, MARCH_1 + 4), 3, 3, 4, 4, 4);
+        assertDays(store.range(MARCH_1 + 1, MARCH_1 + 3), 1, 3, 3);
+        // Ends on days without rows
+        assertDays(store.range(MARCH_1 + 2, MARCH_1 + 3), 3, 3);
+        assertDays(store.range(MARCH_1 + 2, MARCH_1 + 2));
+    }
+
+    @Test
+    void rangesBeforeOrAfterTheDataAreEmpty() {
+        WeatherStore store = store();
+        assertTrue(store.range(MARCH_1 - 10, MARCH_1 - 1).isEmpty());
+        assertTrue(store.range(MARCH_1 + 5, MARCH_1 + 10).isEmpty());
+        assertTrue(store.range(Integer.MIN_VALUE, MARCH_1 - 1).isEmpty());
+        assertTrue(store.range(MARCH_1 + 5, Integer.MAX_VALUE).isEmpty());
+        assertTrue(store.range(MARCH_1 + 5, MARCH_1 + 10, "Oslo").isEmpty());
+        // Reversed bounds
+        assertTrue(store.range(MARCH_1 + 4, MARCH_1).isEmpty());
+        assertTrue(store.range(MARCH_1 + 4, MARCH_1, "Oslo").isEmpty());
+        // Unbounded on one side reaches the data
+        assertEquals(9, store.range(Integer.MIN_VALUE, MARCH_1 + 4).size());
+        assertEquals(9, store.range(MARCH_1, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void onDayReturnsEveryRowOfTheDay() {
+        WeatherStore store = store();
+        assertDays(store.onDay(MARCH_1), 0, 0, 0);
+        assertDays(store.onDay(MARCH_1 + 4), 4, 4, 4);
+        assertTrue(store.onDay(MARCH_1 + 2).isEmpty());
+        assertTrue(store.onDay(MARCH_1 - 1).isEmpty());
+        assertTrue(store.onDay(MARCH_1 + 5).isEmpty());
+    }
+
+    @Test
+    void locationRangesKeepDayOrderAndEdges() {
+        WeatherStore store = store();
+        WeatherView oslo = store.range(MARCH_1, MARCH_1 + 4, "Oslo");
+        assertDays(oslo, 0, 0, 1, 4, 4);
+        for (int row = 0; row < oslo.size(); row++) {
+            assertEquals("Oslo", oslo.getLocation(row));
+        }
+        assertDays(store.range(MARCH_1 + 3, MARCH_1 + 4, "Bergen"), 3, 3, 4);
+        assertTrue(store.range(MARCH_1, MARCH_1 + 4, "Lima").isEmpty());
+    }
+
+    @Test
+    void lastDaysCountsTodayAsTheFirstDay() {
+        int today = (int) LocalDate.now().toEpochDay();
+        WeatherStore store = new WeatherStore();
+        store.add(today - 7, 1, 50, "Clear");
+        store.add(today - 6, 2, 50, "Clear");
+        store.add(today - 6, 3, 50, "Clear");
+        store.add(today, 4, 50, "Clear");
+        store.add(today, 5, 50, "Clear");
+        store.add(today + 1, 6, 50, "Clear");
+
+        WeatherSlice week = store.lastDays(7);
+        assertEquals(4, week.size());
+        assertEquals(today - 6, week.getEpochDay(0));
+        assertEquals(today, week.getEpochDay(3));
+        assertEquals(2, store.lastDays(1).size());
+        assertTrue(store.lastDays(0).isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package com.weatherapp;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class WeatherTableModelTest {
+    private static WeatherStore store(int days) {
+        WeatherStore store = new WeatherStore();
+        LocalDate first = LocalDate.of(2024, 1, 1);
+        for (int i = 0; i < days; i++) {
+            // Two readings a day, so every date and temperature shows up more than once
+            store.add(new WeatherEntry(first.plusDays(i), -5 + (i % 20) * 0.5, 40 + i % 50, "Clear", "Oslo"));
+            store.add(new WeatherEntry(first.plusDays(i), -5 + (i % 20) * 0.5, 60, "Rain", "Lima"));
+        }
+        return store;
+    }
+
+    @Test
+    void cellsHoldTheRowsValues() {
+        WeatherTableModel model = new WeatherTableModel(store(3));
+        assertEquals(6, model.getRowCount());
+        assertEquals("01-01-2024", model.getValueAt(0, 0));
+        assertEquals(-5.0, model.getValueAt(0, 2));
+        assertEquals(40, model.getValueAt(0, 3));
+        assertEquals("03-01-2024", model.getValueAt(5, 0));
+        assertEquals(-4.0, model.getValueAt(5, 2));
+    }
+
+    @Test
+    void noFormattingOrBoxingAfterWarmUp() {
+        WeatherStore store = store(365);
+        WeatherTableModel model = new WeatherTableModel(store);
+        Object[][] warm = new Object[store.size()][];
+        for (int row = 0; row < store.size(); row++) {
+            warm[row] = new Object[]{model.getValueAt(row, 0), model.getValueAt(row, 2)};
+        }
+        // A repaint hands back the very objects of the first one, so nothing was formatted or boxed again
+        for (int row = 0; row < store.size(); row++) {
+            assertSame(warm[row][0], model.getValueAt(row, 0));
+            assertSame(warm[row][1], model.getValueAt(row, 2));
+        }
+        // Rows of the same day and temperature share them too
+        assertSame(model.getValueAt(0, 0), model.getValueAt(1, 0));
+        assertSame(model.getValueAt(0, 2), model.getValueAt(1, 2));
+        assertSame(model.getValueAt(0, 2), model.getValueAt(40, 2));
+    }
+
+    @Test
+    void temperaturesOffTheTenthsAreNotCached() {
+        WeatherStore store = new WeatherStore();
+        store.add(new WeatherEntry(LocalDate.of(2024, 1, 1), 21.25, 50, "Clear", "Oslo"));
+        WeatherTableModel model = new WeatherTableModel(store);
+        assertEquals(21.25, model.getValueAt(0, 2));
+        assertNotSame(model.getValueAt(0, 2), model.getValueAt(0, 2));
+    }
+
+    @Test
+    void switchingViewsReportsRowChangesNotAWholeReload() {
+        WeatherStore store = store(10);
+        WeatherTableModel model = new WeatherTableModel(store);
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        model.setView(store.range(store.getEpochDay(0), store.getEpochDay(0) + 2));
+        assertEquals(2, events.size());
+        assertEvent(events.get(0), TableModelEvent.DELETE, 6, 19);
+        assertEvent(events.get(1), TableModelEvent.UPDATE, 0, 5);
+
+        events.clear();
+        model.setView(store);
+        assertEvent(events.get(0), TableModelEvent.INSERT, 6, 19);
+        assertEvent(events.get(1), TableModelEvent.UPDATE, 0, 5);
+    }
+
+    private static void assertEvent(TableModelEvent event, int type, int firstRow, int lastRow) {
+        assertEquals(type, event.getType());
+        assertEquals(firstRow, event.getFirstRow());
+        assertEquals(lastRow, event.getLastRow());
+    }
+}
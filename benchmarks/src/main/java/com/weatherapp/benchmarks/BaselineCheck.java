@@ -0,0 +1,100 @@
+package com.weatherapp.benchmarks;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Compares a JMH JSON result file against a stored baseline and exits with
+// status 1 if any benchmark got worse by more than the tolerance. Only
+// benchmarks present in both files are compared, secondary metrics such as
+// FootprintBenchmark's bytes per million rows included. Throughput scores
+// are better higher, every other mode's (time per operation, or a count from
+// a single shot) better lower.
+//
+// Usage: BaselineCheck <baseline.json> <results.json> [--tolerance=0.25]
+public final class BaselineCheck {
+    private static final double DEFAULT_TOLERANCE = 0.25;
+
+    private BaselineCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCheck <baseline.json> <results.json> [--tolerance=<fraction>]");
+            System.exit(2);
+        }
+        double tolerance = DEFAULT_TOLERANCE;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].startsWith("--tolerance=")) {
+                tolerance = Double.parseDouble(args[i].substring("--tolerance=".length()));
+            }
+        }
+        Map<String, JSONObject> baseline = read(args[0]);
+        Map<String, JSONObject> results = read(args[1]);
+        int regressions = 0;
+        for (Map.Entry<String, JSONObject> result : results.entrySet()) {
+            JSONObject before = baseline.get(result.getKey());
+            JSONObject after = result.getValue();
+            if (before == null) {
+                System.out.printf("%-90s %12s -> %12.3f %s (new)%n", result.getKey(), "", after.getDouble("score"),
+                        after.getString("scoreUnit"));
+                continue;
+            }
+            if (!before.getString("scoreUnit").equals(after.getString("scoreUnit"))) {
+                System.out.printf("%-90s units differ, skipped%n", result.getKey());
+                continue;
+            }
+            double change = after.getDouble("score") / before.getDouble("score") - 1;
+            if (after.optBoolean("higherIsBetter")) {
+                // Report a drop in throughput as a positive slowdown
+                change = before.getDouble("score") / after.getDouble("score") - 1;
+            }
+            boolean regressed = change > tolerance;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %12.3f -> %12.3f %s %+7.1f%%%s%n", result.getKey(), before.getDouble("score"),
+                    after.getDouble("score"), after.getString("scoreUnit"), change * 100, regressed ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " metric(s) worse than the baseline by more than " + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    // Primary and secondary metrics keyed by benchmark name and parameters,
+    // secondary ones with ":<metric>" after the name as JMH prints them
+    private static Map<String, JSONObject> read(String path) throws IOException {
+        JSONArray runs = new JSONArray(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+        Map<String, JSONObject> metrics = new TreeMap<>();
+        for (int i = 0; i < runs.length(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            StringBuilder params = new StringBuilder();
+            JSONObject values = run.optJSONObject("params");
+            if (values != null) {
+                for (String name : new TreeMap<>(values.toMap()).keySet()) {
+                    params.append(' ').append(name).append('=').append(values.get(name));
+                }
+            }
+            boolean higherIsBetter = "thrpt".equals(run.getString("mode"));
+            JSONObject metric = run.getJSONObject("primaryMetric");
+            metric.put("higherIsBetter", higherIsBetter);
+            metrics.put(run.getString("benchmark") + params, metric);
+            JSONObject secondary = run.optJSONObject("secondaryMetrics");
+            if (secondary != null) {
+                for (String name : secondary.keySet()) {
+                    metric = secondary.getJSONObject(name);
+                    metric.put("higherIsBetter", higherIsBetter);
+                    metrics.put(run.getString("benchmark") + ":" + name + params, metric);
+                }
+            }
+        }
+        return metrics;
+    }
+}
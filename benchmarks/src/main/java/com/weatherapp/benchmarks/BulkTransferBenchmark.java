@@ -0,0 +1,124 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.BulkExporter;
+import com.weatherapp.BulkFormat;
+import com.weatherapp.BulkImporter;
+import com.weatherapp.FileManager;
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Bulk import of a whole CSV or NDJSON file into an empty log, and streaming
+// export of the whole log, in files per second. The "rows" secondary metric
+// of each is the same run in rows per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class BulkTransferBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private Path sourceDir;
+    private Path csv;
+    private Path ndjson;
+    private Path importDir;
+    private Path exportDir;
+
+    // Rows moved, reported per second next to the primary score
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        WeatherStore store = Datasets.store(rows);
+        sourceDir = Datasets.writeLog(store);
+        csv = sourceDir.resolve("rows.csv");
+        ndjson = sourceDir.resolve("rows.ndjson");
+        FileManager fileManager = Datasets.fileManager(sourceDir);
+        BulkExporter exporter = new BulkExporter(fileManager);
+        exporter.export(csv, BulkFormat.CSV, Integer.MIN_VALUE, Integer.MAX_VALUE, null, null);
+        exporter.export(ndjson, BulkFormat.NDJSON, Integer.MIN_VALUE, Integer.MAX_VALUE, null, null);
+        fileManager.close();
+        exportDir = Files.createTempDirectory("weather-bench");
+    }
+
+    // Every import starts from an empty log
+    @Setup(Level.Invocation)
+    public void clearImport() throws IOException {
+        Datasets.delete(importDir);
+        importDir = Files.createTempDirectory("weather-bench");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Datasets.delete(sourceDir);
+        Datasets.delete(importDir);
+        Datasets.delete(exportDir);
+    }
+
+    @Benchmark
+    public long importCsv(Rows counter) throws IOException {
+        return importFile(csv, BulkFormat.CSV, counter);
+    }
+
+    @Benchmark
+    public long importNdjson(Rows counter) throws IOException {
+        return importFile(ndjson, BulkFormat.NDJSON, counter);
+    }
+
+    @Benchmark
+    public long exportCsv(Rows counter) throws IOException {
+        return exportFile(BulkFormat.CSV, counter);
+    }
+
+    @Benchmark
+    public long exportNdjson(Rows counter) throws IOException {
+        return exportFile(BulkFormat.NDJSON, counter);
+    }
+
+    private long importFile(Path source, BulkFormat format, Rows counter) throws IOException {
+        FileManager fileManager = Datasets.fileManager(importDir);
+        try {
+            long imported = new BulkImporter(fileManager).importFile(source, format, null).getImported();
+            counter.rows += imported;
+            return imported;
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    private long exportFile(BulkFormat format, Rows counter) throws IOException {
+        FileManager fileManager = Datasets.fileManager(sourceDir);
+        try {
+            long exported = new BulkExporter(fileManager).export(exportDir.resolve("export"), format,
+                    Integer.MIN_VALUE, Integer.MAX_VALUE, null, null);
+            counter.rows += exported;
+            return exported;
+        } finally {
+            fileManager.close();
+        }
+    }
+}
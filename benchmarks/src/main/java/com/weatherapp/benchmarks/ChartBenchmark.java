@@ -0,0 +1,88 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.ChartPanel;
+import com.weatherapp.Rollup;
+import com.weatherapp.RollupIndex;
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ChartPanel painting into an offscreen image the size of the window's chart.
+// A repaint draws the geometry already built; new data is downsampled and
+// projected first, which the app does on a worker thread before handing it
+// to the panel.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class ChartBenchmark {
+    private static final int WIDTH = 860;
+    private static final int HEIGHT = 300;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"Line Chart", "Bar Chart", "Scatter Plot", "Pie Chart (Conditions)"})
+    public String chartType;
+
+    private WeatherStore store;
+    private List<Rollup> monthly;
+    private ChartPanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = Datasets.store(rows);
+        monthly = RollupIndex.of(store).series(Integer.MIN_VALUE, Integer.MAX_VALUE, RollupIndex.Granularity.MONTH);
+        panel = new ChartPanel();
+        panel.setChartType(chartType);
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setSeries(store, null, ChartPanel.project(store, null, chartType, WIDTH, HEIGHT));
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage repaint() {
+        panel.paint(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintNewData() {
+        panel.setSeries(store, null, ChartPanel.project(store, null, chartType, WIDTH, HEIGHT));
+        panel.paint(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintMonthlyRollups() {
+        panel.setSeries(null, monthly, ChartPanel.project(null, monthly, chartType, WIDTH, HEIGHT));
+        panel.paint(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,79 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.ConcurrentWeatherStore;
+import com.weatherapp.WeatherEntry;
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// ConcurrentWeatherStore kept in memory: a month's query from a snapshot with
+// nothing else running, the same query from three threads while a fourth
+// writes to the store, and those writes. Reads never wait for the writer, so
+// they should only lose what CPU time the writer takes from them.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class ConcurrentStoreBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConcurrentWeatherStore store;
+    private int queryStart;
+    private int queryEnd;
+    private List<WeatherEntry> pair;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WeatherStore rows = Datasets.store(this.rows);
+        store = new ConcurrentWeatherStore();
+        store.addAll(rows.toEntries());
+        queryStart = Datasets.START_DAY + Datasets.SPAN_DAYS - 30;
+        queryEnd = Datasets.START_DAY + Datasets.SPAN_DAYS - 1;
+        // Written and deleted again in the month queried and the one before it
+        pair = Arrays.asList(
+                new WeatherEntry(LocalDate.ofEpochDay(queryEnd), 20, 50, "Clear", Datasets.location(0)),
+                new WeatherEntry(LocalDate.ofEpochDay(queryStart - 31), 20, 50, "Clear", Datasets.location(0)));
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(3)
+    public int readAlone() {
+        return store.snapshot().range(queryStart, queryEnd, Datasets.location(1)).size();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public int readWhileWriting() {
+        return store.snapshot().range(queryStart, queryEnd, Datasets.location(1)).size();
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public int write() {
+        store.addAll(pair);
+        return store.removeAll(pair);
+    }
+}
@@ -0,0 +1,358 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.ConcurrentWeatherStore;
+import com.weatherapp.FileManager;
+import com.weatherapp.WeatherEntry;
+import com.weatherapp.WeatherStore;
+import com.weatherapp.WeatherView;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Stress test of ConcurrentWeatherStore's contract, journaling to a real
+// FileManager. Exits with status 1 on the first violation.
+//
+//   java -cp benchmarks/target/benchmarks.jar com.weatherapp.benchmarks.ConcurrentStoreStress \
+//       [--seconds=10] [--writers=4] [--readers=4] [--months=6]
+//
+// Each writer owns a location and at op k adds a pair of rows tagged k in two
+// different months, in one write, deleting the pair from op k - 2 in the same
+// write when k % 3 == 2. The months are shared, so writers contend for them.
+// Readers check every snapshot they take:
+//
+//  - each writer's rows are whole pairs: no write is half visible
+//  - the pairs are exactly those left after some number n of that writer's
+//    ops, with n between its ops completed before and after the snapshot was
+//    taken: writes are visible in order and as soon as they return
+//  - versions never go backwards, and the size matches the months
+//  - a snapshot read again later has not changed
+//
+// Then a writer is stalled inside a write, holding its months, while the
+// test checks that readers and writes to other months carry on and a write
+// to a stalled month waits. Finally the store must match the writers' last
+// ops, and the journal, replayed by a new FileManager, must match the store.
+public final class ConcurrentStoreStress {
+    private static final String CONDITION = "Pair";
+    private static final String STALLED = "Stalled";
+    private static final YearMonth FIRST_MONTH = YearMonth.of(2020, 1);
+    private static final long STALL_MILLIS = 500;
+    // Low enough that compactions run alongside the writers
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private final int writers;
+    private final int readers;
+    private final int months;
+    private final ConcurrentWeatherStore store;
+    private final AtomicLongArray done;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private final AtomicReference<String> failure = new AtomicReference<>();
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong maxSnapshotNanos = new AtomicLong();
+
+    private ConcurrentStoreStress(ConcurrentWeatherStore store, int writers, int readers, int months) {
+        this.store = store;
+        this.writers = writers;
+        this.readers = readers;
+        this.months = months;
+        this.done = new AtomicLongArray(writers);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int seconds = 10;
+        int writers = 4;
+        int readers = 4;
+        int months = 6;
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            int value = Integer.parseInt(option[1]);
+            switch (option[0]) {
+                case "--seconds": seconds = value; break;
+                case "--writers": writers = value; break;
+                case "--readers": readers = value; break;
+                case "--months": months = Math.max(2, value); break;
+                default: throw new IllegalArgumentException("Unknown option " + option[0]);
+            }
+        }
+
+        Path dir = Files.createTempDirectory("weather-stress");
+        StallingFileManager fileManager = new StallingFileManager(dir);
+        try {
+            ConcurrentStoreStress test = new ConcurrentStoreStress(new ConcurrentWeatherStore(fileManager), writers, readers, months);
+            test.run(seconds);
+            test.checkStall(fileManager);
+            test.checkFinal(fileManager, dir);
+        } catch (AssertionError e) {
+            System.out.println("FAILED: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            fileManager.close();
+            Datasets.delete(dir);
+        }
+        System.out.println("OK");
+    }
+
+    private void run(int seconds) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(writers + readers);
+        List<Future<Long>> writes = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            int writer = i;
+            writes.add(threads.submit(() -> write(writer)));
+        }
+        List<Future<?>> reads = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            reads.add(threads.submit(this::read));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < deadline && failure.get() == null) {
+            Thread.sleep(50);
+        }
+        running.set(false);
+        long ops = 0;
+        for (Future<Long> write : writes) {
+            ops += write.get();
+        }
+        for (Future<?> read : reads) {
+            read.get();
+        }
+        threads.shutdown();
+        check(failure.get() == null, failure.get());
+        System.out.printf("%d writers: %,d writes (%,.0f/s); %d readers: %,d snapshots checked; slowest snapshot() %,d ns%n",
+                writers, ops, ops / (double) seconds, readers, snapshots.get(), maxSnapshotNanos.get());
+    }
+
+    private long write(int writer) {
+        long op = 0;
+        while (running.get() && failure.get() == null) {
+            List<WeatherEntry> removed = op >= 2 && op % 3 == 2 ? pair(writer, op - 2) : Collections.emptyList();
+            int deleted = store.replace(removed, pair(writer, op));
+            if (deleted != removed.size()) {
+                fail("Writer " + writer + " op " + op + " deleted " + deleted + " of " + removed.size() + " rows");
+            }
+            done.set(writer, ++op);
+        }
+        return op;
+    }
+
+    private void read() {
+        long lastVersion = -1;
+        ConcurrentWeatherStore.Snapshot kept = null;
+        long keptFingerprint = 0;
+        long[] before = new long[writers];
+        long[] after = new long[writers];
+        while (running.get() && failure.get() == null) {
+            for (int i = 0; i < writers; i++) {
+                before[i] = done.get(i);
+            }
+            long start = System.nanoTime();
+            ConcurrentWeatherStore.Snapshot snapshot = store.snapshot();
+            maxSnapshotNanos.accumulateAndGet(System.nanoTime() - start, Math::max);
+            for (int i = 0; i < writers; i++) {
+                after[i] = done.get(i);
+            }
+            if (snapshot.getVersion() < lastVersion) {
+                fail("Version went from " + lastVersion + " back to " + snapshot.getVersion());
+            }
+            lastVersion = snapshot.getVersion();
+            int rows = 0;
+            for (YearMonth month : snapshot.getMonths()) {
+                rows += snapshot.month(month).size();
+            }
+            if (rows != snapshot.size()) {
+                fail("Snapshot size " + snapshot.size() + " but its months hold " + rows);
+            }
+            for (int i = 0; i < writers; i++) {
+                checkWriter(snapshot, i, before[i], after[i]);
+            }
+            // A snapshot kept around must not change under later writes
+            if (kept != null && fingerprint(kept) != keptFingerprint) {
+                fail("Snapshot at version " + kept.getVersion() + " changed after it was taken");
+            }
+            if (kept == null || snapshots.get() % 64 == 0) {
+                kept = snapshot;
+                keptFingerprint = fingerprint(snapshot);
+            }
+            snapshots.incrementAndGet();
+        }
+    }
+
+    private void checkWriter(ConcurrentWeatherStore.Snapshot snapshot, int writer, long before, long after) {
+        WeatherView rows = snapshot.range(Integer.MIN_VALUE, Integer.MAX_VALUE, location(writer));
+        Map<Long, Integer> tags = new HashMap<>();
+        long ops = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            long tag = (long) rows.getTemperature(row);
+            tags.merge(tag, 1, Integer::sum);
+            ops = Math.max(ops, tag + 1);
+        }
+        for (Map.Entry<Long, Integer> tag : tags.entrySet()) {
+            if (tag.getValue() != 2) {
+                fail("Writer " + writer + " op " + tag.getKey() + " has " + tag.getValue() + " of its 2 rows");
+            }
+        }
+        // Op n is published just before it is counted as done
+        if (ops < before || ops > after + 1) {
+            fail("Writer " + writer + " shows " + ops + " ops, but " + before + " were done before and " + after + " after");
+        }
+        for (long op = 0; op < ops; op++) {
+            if (isLive(op, ops) != tags.containsKey(op)) {
+                fail("Writer " + writer + " after " + ops + " ops " + (tags.containsKey(op) ? "still has" : "lost") + " op " + op);
+            }
+        }
+    }
+
+    // Stalls a write inside the FileManager, so it holds its months' locks
+    private void checkStall(StallingFileManager fileManager) throws Exception {
+        ExecutorService threads = Executors.newCachedThreadPool();
+        YearMonth month = FIRST_MONTH;
+        YearMonth other = FIRST_MONTH.plusMonths(1);
+        CountDownLatch release = new CountDownLatch(1);
+        fileManager.stall = release;
+        Future<?> stalled = threads.submit(() -> store.add(entry(STALLED, month, 1, 0)));
+        fileManager.stalled.await();
+
+        long readsBefore = snapshots.get();
+        Future<?> reader = threads.submit(() -> {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STALL_MILLIS);
+            while (System.nanoTime() < end) {
+                store.snapshot().range(Integer.MIN_VALUE, Integer.MAX_VALUE, null).size();
+                snapshots.incrementAndGet();
+            }
+        });
+        Future<?> otherMonth = threads.submit(() -> store.add(entry(STALLED, other, 1, 1)));
+        Future<?> sameMonth = threads.submit(() -> store.add(entry(STALLED, month, 2, 2)));
+        try {
+            otherMonth.get(STALL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            fail("A write to another month waited for the stalled one");
+        }
+        reader.get();
+        check(failure.get() == null, failure.get());
+        check(snapshots.get() > readsBefore, "Readers made no progress while a write was stalled");
+        check(!sameMonth.isDone(), "A write to the stalled month did not wait for it");
+        check(store.snapshot().range(Integer.MIN_VALUE, Integer.MAX_VALUE, STALLED).size() == 1,
+                "Only the write to the other month should be visible during the stall");
+
+        release.countDown();
+        stalled.get(10, TimeUnit.SECONDS);
+        sameMonth.get(10, TimeUnit.SECONDS);
+        threads.shutdown();
+        check(store.snapshot().range(Integer.MIN_VALUE, Integer.MAX_VALUE, STALLED).size() == 3,
+                "Writes lost after the stall");
+        System.out.printf("Stalled write: %,d snapshots taken and a write to another month finished meanwhile%n",
+                snapshots.get() - readsBefore);
+    }
+
+    private void checkFinal(FileManager fileManager, Path dir) {
+        ConcurrentWeatherStore.Snapshot last = store.snapshot();
+        for (int i = 0; i < writers; i++) {
+            checkWriter(last, i, done.get(i), done.get(i));
+        }
+        check(failure.get() == null, failure.get());
+        fileManager.close();
+
+        FileManager replay = new FileManager(dir.resolve("weather_data"), dir.resolve("weather_data.journal"),
+                COMPACTION_THRESHOLD);
+        WeatherStore journaled = replay.loadStore();
+        replay.close();
+        WeatherStore memory = last.toStore();
+        check(journaled.size() == memory.size(), "Journal replays to " + journaled.size() + " rows, store has " + memory.size());
+        check(sorted(journaled).equals(sorted(memory)), "Journal replays to different rows than the store holds");
+        System.out.printf("Final state: %,d rows, same as the journal replayed%n", memory.size());
+    }
+
+    private List<WeatherEntry> pair(int writer, long op) {
+        int first = (int) Math.floorMod(op * 7 + writer, (long) months);
+        int second = (first + 1 + (int) (op % (months - 1))) % months;
+        return Arrays.asList(entry(location(writer), FIRST_MONTH.plusMonths(first), (int) (op % 28) + 1, op),
+                entry(location(writer), FIRST_MONTH.plusMonths(second), (int) (op % 28) + 1, op));
+    }
+
+    private static WeatherEntry entry(String location, YearMonth month, int day, long tag) {
+        return new WeatherEntry(month.atDay(day), tag, 50, CONDITION, location);
+    }
+
+    private static String location(int writer) {
+        return "Writer " + writer;
+    }
+
+    // Op j's pair is deleted by op j + 2 when j % 3 == 0
+    private static boolean isLive(long op, long ops) {
+        return !(op % 3 == 0 && op + 2 < ops);
+    }
+
+    private static long fingerprint(ConcurrentWeatherStore.Snapshot snapshot) {
+        long hash = snapshot.getVersion();
+        for (YearMonth month : snapshot.getMonths()) {
+            WeatherView rows = snapshot.month(month);
+            for (int row = 0; row < rows.size(); row++) {
+                hash = 31 * hash + rows.getEpochDay(row);
+                hash = 31 * hash + Double.hashCode(rows.getTemperature(row));
+                hash = 31 * hash + rows.getLocation(row).hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private static List<String> sorted(WeatherStore rows) {
+        List<String> lines = new ArrayList<>(rows.size());
+        for (int row = 0; row < rows.size(); row++) {
+            lines.add(rows.getEpochDay(row) + "," + rows.getTemperature(row) + "," + rows.getHumidity(row) + ","
+                    + rows.getLocation(row) + "," + rows.getCondition(row));
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private void fail(String message) {
+        failure.compareAndSet(null, message);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    // Can hold one write of the STALLED location
+    // inside the FileManager until released
+    private static final class StallingFileManager extends FileManager {
+        volatile CountDownLatch stall;
+        final CountDownLatch stalled = new CountDownLatch(1);
+
+        StallingFileManager(Path dir) {
+            super(dir.resolve("weather_data"), dir.resolve("weather_data.journal"), COMPACTION_THRESHOLD);
+        }
+
+        @Override
+        public void replaceEntries(List<WeatherEntry> removed, List<WeatherEntry> added) {
+            CountDownLatch latch = stall;
+            if (latch != null && !added.isEmpty() && added.get(0).getLocation().equals(STALLED)) {
+                stall = null;
+                stalled.countDown();
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.replaceEntries(removed, added);
+        }
+    }
+}
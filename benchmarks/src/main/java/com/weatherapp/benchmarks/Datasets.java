@@ -0,0 +1,71 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.FileManager;
+import com.weatherapp.WeatherStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Synthetic weather logs for the benchmarks. Rows are spread evenly over ten
+// years and fifty cities, with a seasonal temperature curve plus noise, and
+// the same size always gives the same rows.
+public final class Datasets {
+    public static final int START_DAY = (int) LocalDate.of(2015, 1, 1).toEpochDay();
+    public static final int SPAN_DAYS = 3650;
+    static final String[] CONDITIONS = {"Clear", "Clouds", "Rain", "Drizzle", "Snow", "Mist", "Fog", "Thunderstorm"};
+    static final String[] LOCATIONS = new String[50];
+
+    static {
+        for (int i = 0; i < LOCATIONS.length; i++) {
+            LOCATIONS[i] = "City " + i;
+        }
+    }
+
+    private Datasets() {
+    }
+
+    public static WeatherStore store(int rows) {
+        Random random = new Random(rows);
+        WeatherStore store = new WeatherStore(rows);
+        for (int row = 0; row < rows; row++) {
+            int offset = (int) ((long) row * SPAN_DAYS / rows);
+            double season = Math.sin(2 * Math.PI * (offset % 365) / 365.0);
+            double temperature = Math.round((12 + 14 * season + random.nextGaussian() * 4) * 10) / 10.0;
+            store.add(START_DAY + offset, temperature, random.nextInt(101),
+                    CONDITIONS[random.nextInt(CONDITIONS.length)], LOCATIONS[random.nextInt(LOCATIONS.length)]);
+        }
+        return store;
+    }
+
+    public static String location(int index) {
+        return LOCATIONS[Math.floorMod(index, LOCATIONS.length)];
+    }
+
+    // A FileManager over a fresh directory, with compaction left to the caller
+    public static FileManager fileManager(Path dir) {
+        return new FileManager(dir.resolve("weather_data"), dir.resolve("weather_data.journal"), Integer.MAX_VALUE);
+    }
+
+    // Writes the rows as monthly partitions in a new temporary directory
+    public static Path writeLog(WeatherStore store) throws IOException {
+        Path dir = Files.createTempDirectory("weather-bench");
+        FileManager fileManager = fileManager(dir);
+        fileManager.saveStore(store);
+        fileManager.close();
+        return dir;
+    }
+
+    public static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+
+// Heap held by a loaded WeatherStore, including the location index its first
+// location query builds. The run builds the store from scratch and measures
+// live heap, after full collections, before and after. The primary score is
+// the time to build it; the "bytesPerMillionRows" secondary metric is the
+// footprint, scaled to a million rows so runs with other row counts compare.
+// The serial collector makes the heap usage read after System.gc() exact, so
+// one measured run is enough; JMH would add up the counter over several.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-XX:+UseSerialGC"})
+public class FootprintBenchmark {
+    @Param({"1000000"})
+    public int rows;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long bytesPerMillionRows;
+    }
+
+    @Benchmark
+    public int heapPerMillionRows(Footprint footprint) {
+        long before = liveHeap();
+        WeatherStore store = Datasets.store(rows);
+        store.trimToSize();
+        store.range(Datasets.START_DAY, Datasets.START_DAY, Datasets.location(0));
+        long after = liveHeap();
+        Reference.reachabilityFence(store);
+        footprint.bytesPerMillionRows = (after - before) * 1_000_000L / rows;
+        return store.size();
+    }
+
+    private long liveHeap() {
+        // A second pass picks up anything the first one only finalized
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
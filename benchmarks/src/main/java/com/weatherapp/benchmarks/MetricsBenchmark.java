@@ -0,0 +1,90 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.ChartPanel;
+import com.weatherapp.Metrics;
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// What leaving the metrics on costs: a single recording, alone and with four
+// threads hitting the same timer, and an instrumented chart repaint with
+// recording on against the same repaint in a JVM started with it off.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true"})
+public class MetricsBenchmark {
+    private static final int CHART_ROWS = 100000;
+
+    private final Metrics.Counter counter = Metrics.counter("benchmark.counter");
+    private final Metrics.Timer timer = Metrics.timer("benchmark.timer");
+    private long nanos;
+    private ChartPanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WeatherStore store = Datasets.store(CHART_ROWS);
+        panel = new ChartPanel();
+        panel.setSize(860, 300);
+        panel.setSeries(store, null, ChartPanel.project(store, null, panel.getChartType(), 860, 300));
+        image = new BufferedImage(860, 300, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void timerRecord() {
+        // Spread over the buckets like real latencies
+        nanos = nanos * 6364136223846793005L + 1442695040888963407L;
+        timer.record(nanos >>> 40);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timerRecordContended() {
+        timer.recordSince(System.nanoTime() - 1000);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public BufferedImage chartRepaint() {
+        panel.paint(graphics);
+        return image;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dweatherapp.metrics=false"})
+    public BufferedImage chartRepaintWithoutMetrics() {
+        panel.paint(graphics);
+        return image;
+    }
+}
@@ -0,0 +1,123 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.CsvLoader;
+import com.weatherapp.FileManager;
+import com.weatherapp.LoadResult;
+import com.weatherapp.WeatherEntry;
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Startup and save paths: reading the binary partitions into a store or a
+// list of entries, paging in one month, parsing a CSV import, and writing
+// the whole log back.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class PersistenceBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private WeatherStore store;
+    private List<WeatherEntry> entries;
+    private Path logDir;
+    private Path saveDir;
+    private Path csv;
+    private YearMonth lastMonth;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        store = Datasets.store(rows);
+        entries = store.toEntries();
+        logDir = Datasets.writeLog(store);
+        saveDir = Files.createTempDirectory("weather-bench");
+        csv = logDir.resolve("export.csv");
+        // Closed again, since only one FileManager may have the log open at a time
+        FileManager fileManager = Datasets.fileManager(logDir);
+        fileManager.exportCsv(csv, store);
+        lastMonth = fileManager.getPartitions().get(0).plusMonths(119);
+        fileManager.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Datasets.delete(logDir);
+        Datasets.delete(saveDir);
+    }
+
+    @Benchmark
+    public WeatherStore loadStore() {
+        FileManager fileManager = Datasets.fileManager(logDir);
+        try {
+            return fileManager.loadStore();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    @Benchmark
+    public List<WeatherEntry> loadEntries() {
+        FileManager fileManager = Datasets.fileManager(logDir);
+        try {
+            return fileManager.loadEntries();
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    @Benchmark
+    public WeatherStore pageInMonth() {
+        FileManager fileManager = Datasets.fileManager(logDir);
+        try {
+            return fileManager.loadMonths(lastMonth, lastMonth);
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    @Benchmark
+    public LoadResult importCsv() throws IOException {
+        return CsvLoader.load(csv);
+    }
+
+    @Benchmark
+    public void saveStore() {
+        FileManager fileManager = Datasets.fileManager(saveDir);
+        try {
+            fileManager.saveStore(store);
+        } finally {
+            fileManager.close();
+        }
+    }
+
+    @Benchmark
+    public void saveEntries() {
+        FileManager fileManager = Datasets.fileManager(saveDir);
+        try {
+            fileManager.saveEntries(entries);
+        } finally {
+            fileManager.close();
+        }
+    }
+}
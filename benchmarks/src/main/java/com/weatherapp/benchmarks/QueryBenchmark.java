@@ -0,0 +1,100 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.RollupIndex;
+import com.weatherapp.WeatherDates;
+import com.weatherapp.WeatherStore;
+import com.weatherapp.WeatherSummary;
+import com.weatherapp.WeatherView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// What the Filter button costs: resolving a date range, with or without a
+// location, to the rows on show and reading them, summarizing the range from
+// the rollups, and parsing the dates typed into the filter and manual entry.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g"})
+public class QueryBenchmark {
+    private static final int QUERIES = 256;
+    // A month-long window, as the date choosers are usually set
+    private static final int WINDOW_DAYS = 30;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private WeatherStore store;
+    private RollupIndex rollups;
+    private final int[] starts = new int[QUERIES];
+    private final String[] dates = new String[QUERIES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = Datasets.store(rows);
+        rollups = RollupIndex.of(store);
+        Random random = new Random(42);
+        for (int i = 0; i < QUERIES; i++) {
+            starts[i] = Datasets.START_DAY + random.nextInt(Datasets.SPAN_DAYS - WINDOW_DAYS);
+            dates[i] = LocalDate.ofEpochDay(starts[i]).format(WeatherDates.FORMAT);
+        }
+    }
+
+    private int nextStart() {
+        next = (next + 1) % QUERIES;
+        return starts[next];
+    }
+
+    @Benchmark
+    public double rangeQuery() {
+        int start = nextStart();
+        return sumTemperatures(store.range(start, start + WINDOW_DAYS - 1));
+    }
+
+    @Benchmark
+    public double rangeQueryForLocation() {
+        int start = nextStart();
+        return sumTemperatures(store.range(start, start + WINDOW_DAYS - 1, Datasets.location(start)));
+    }
+
+    @Benchmark
+    public WeatherSummary rollupSummary() {
+        int start = nextStart();
+        // A year and a bit, so months, weeks and days all take part
+        return rollups.summarize(start, start + 400);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(QUERIES)
+    public void parseDates(Blackhole blackhole) {
+        for (String date : dates) {
+            blackhole.consume(WeatherDates.parseEpochDay(date));
+        }
+    }
+
+    private static double sumTemperatures(WeatherView view) {
+        double sum = 0;
+        for (int row = 0; row < view.size(); row++) {
+            sum += view.getTemperature(row);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,123 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.FileManager;
+import com.weatherapp.WeatherDates;
+import com.weatherapp.WeatherQueryServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Load test for WeatherQueryServer: sixteen client threads sending requests
+// back to back over keep-alive connections to a server on the same box, each
+// for a random month of one city. Scores are requests per second across all
+// threads. The conditional variant sends the ETag from an earlier response,
+// as a polling client would, and gets 304s.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+// The client and server share the JIT's time, so warm up for longer
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+// Without nodelay each response waits out the client's delayed ACK, as Main serve avoids
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dsun.net.httpserver.nodelay=true"})
+@Threads(16)
+public class QueryServerBenchmark {
+    private static final int WINDOW_DAYS = 30;
+
+    @Param({"100000", "1000000"})
+    public int rows;
+
+    private Path dir;
+    private FileManager fileManager;
+    private WeatherQueryServer server;
+    private HttpClient client;
+    private String base;
+    private String statsEtag;
+    private URI statsUri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        dir = Datasets.writeLog(Datasets.store(rows));
+        fileManager = Datasets.fileManager(dir);
+        server = new WeatherQueryServer(fileManager, new InetSocketAddress("127.0.0.1", 0));
+        server.start();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        base = "http://127.0.0.1:" + server.getPort() + "/api/";
+        statsUri = uri("stats", Datasets.START_DAY, 0);
+        statsEtag = client.send(HttpRequest.newBuilder(statsUri).build(), HttpResponse.BodyHandlers.discarding())
+                .headers().firstValue("ETag").orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.stop();
+        fileManager.close();
+        Datasets.delete(dir);
+    }
+
+    @Benchmark
+    public int range() throws IOException, InterruptedException {
+        return get(randomUri("range"), true);
+    }
+
+    @Benchmark
+    public int stats() throws IOException, InterruptedException {
+        return get(randomUri("stats"), false);
+    }
+
+    @Benchmark
+    public int rollups() throws IOException, InterruptedException {
+        return get(randomUri("rollups"), true);
+    }
+
+    @Benchmark
+    public int statsNotModified() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(statsUri).header("If-None-Match", statsEtag).build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private int get(URI uri, boolean gzip) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " for " + uri);
+        }
+        return response.body().length;
+    }
+
+    private URI randomUri(String endpoint) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return uri(endpoint, Datasets.START_DAY + random.nextInt(Datasets.SPAN_DAYS - WINDOW_DAYS), random.nextInt(1000));
+    }
+
+    private URI uri(String endpoint, int startDay, int city) {
+        String from = LocalDate.ofEpochDay(startDay).format(WeatherDates.FORMAT);
+        String to = LocalDate.ofEpochDay(startDay + WINDOW_DAYS - 1).format(WeatherDates.FORMAT);
+        return URI.create(base + endpoint + "?from=" + from + "&to=" + to + "&city=" + Datasets.location(city).replace(" ", "%20"));
+    }
+}
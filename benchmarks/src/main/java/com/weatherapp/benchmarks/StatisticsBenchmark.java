@@ -0,0 +1,68 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.Distribution;
+import com.weatherapp.StatisticsAccumulator;
+import com.weatherapp.StatisticsPanel;
+import com.weatherapp.WeatherStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// The statistics panel: a full pass over the rows, the label update from a
+// summary that is already accumulated, and reading percentiles from it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class StatisticsBenchmark {
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private WeatherStore store;
+    private StatisticsAccumulator statistics;
+    private StatisticsPanel panel;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = Datasets.store(rows);
+        statistics = StatisticsAccumulator.of(store);
+        panel = new StatisticsPanel();
+    }
+
+    @Benchmark
+    public StatisticsAccumulator accumulate() {
+        return StatisticsAccumulator.of(store);
+    }
+
+    @Benchmark
+    public void updateStatisticsFromRows() {
+        panel.updateStatistics(store);
+    }
+
+    @Benchmark
+    public void updateStatisticsFromSummary() {
+        panel.updateStatistics(statistics);
+    }
+
+    @Benchmark
+    public void percentiles(Blackhole blackhole) {
+        Distribution temperatures = statistics.getTemperatures();
+        blackhole.consume(temperatures.getPercentile(5));
+        blackhole.consume(temperatures.getPercentile(50));
+        blackhole.consume(temperatures.getPercentile(95));
+    }
+}
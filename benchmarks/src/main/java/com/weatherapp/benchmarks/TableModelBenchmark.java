@@ -0,0 +1,56 @@
+package com.weatherapp.benchmarks;
+
+import com.weatherapp.WeatherStore;
+import com.weatherapp.WeatherTableModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+// Cell reads as JTable makes them while painting: one screen of rows, every
+// column, at a scroll position that moves on each invocation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class TableModelBenchmark {
+    private static final int VISIBLE_ROWS = 40;
+    private static final int COLUMNS = 5;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int rows;
+
+    private WeatherTableModel model;
+    private int firstRow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new WeatherTableModel(Datasets.store(rows));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VISIBLE_ROWS * COLUMNS)
+    public void getValueAt(Blackhole blackhole) {
+        // Stride through the log like a scrollbar drag
+        firstRow = (firstRow + 7919) % (rows - VISIBLE_ROWS);
+        for (int row = firstRow; row < firstRow + VISIBLE_ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                blackhole.consume(model.getValueAt(row, column));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.weatherapp;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Writes the rows of a date range to a CSV or NDJSON file a month at a time,
+// so only one month of the log is in memory however wide the range is. The
+// file is written next to the target and moved into place when complete.
+// CSV output can be read back by CsvLoader and BulkImporter, NDJSON by
+// BulkImporter.
+public class BulkExporter {
+    private static final Metrics.Counter EXPORTED_ROWS = Metrics.counter("export.rows");
+
+    public interface ProgressListener {
+        // Called after each month with the rows written so far
+        void progress(YearMonth month, int monthsDone, int monthCount, long rows);
+    }
+
+    private final FileManager fileManager;
+
+    public BulkExporter(FileManager fileManager) {
+        this.fileManager = fileManager;
+    }
+
+    // Rows dated startDay..endDay inclusive, of one location or, if it is
+    // null or empty, all of them. Listener may be null. Returns the row count.
+    public long export(Path target, BulkFormat format, int startDay, int endDay, String location,
+                       ProgressListener listener) throws IOException {
+        List<YearMonth> months = new ArrayList<>();
+        if (endDay >= startDay) {
+            YearMonth first = YearMonth.from(LocalDate.ofEpochDay(startDay));
+            YearMonth last = YearMonth.from(LocalDate.ofEpochDay(endDay));
+            for (YearMonth month : fileManager.getPartitions()) {
+                if (!month.isBefore(first) && !month.isAfter(last)) {
+                    months.add(month);
+                }
+            }
+        }
+        String place = location == null ? "" : location.trim();
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long rows = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            if (format == BulkFormat.CSV) {
+                writer.write(CsvLoader.FIELDS_HEADER);
+                writer.newLine();
+            }
+            for (int i = 0; i < months.size(); i++) {
+                YearMonth month = months.get(i);
+                WeatherStore store = fileManager.loadMonths(month, month);
+                WeatherView view = place.isEmpty() ? store.range(startDay, endDay) : store.range(startDay, endDay, place);
+                for (int row = 0; row < view.size(); row++) {
+                    if (format == BulkFormat.CSV) {
+                        writeCsv(writer, view, row);
+                    } else {
+                        writeJson(writer, view, row);
+                    }
+                    writer.newLine();
+                }
+                rows += view.size();
+                EXPORTED_ROWS.add(view.size());
+                if (listener != null) {
+                    listener.progress(month, i + 1, months.size(), rows);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        return rows;
+    }
+
+    // Same columns as FileManager.exportCsv
+    private static void writeCsv(Writer writer, WeatherView rows, int row) throws IOException {
+        writer.write(WeatherDates.format(rows.getEpochDay(row)));
+        writer.write(',');
+        writer.write(String.format(Locale.ROOT, "%.1f", rows.getTemperature(row)));
+        writer.write(',');
+        writer.write(Integer.toString(rows.getHumidity(row)));
+        writer.write(',');
+        // A comma would shift the condition into the location on import
+        writer.write(FileManager.cleanLocation(rows.getLocation(row)));
+        writer.write(',');
+        writer.write(rows.getCondition(row));
+    }
+
+    private static void writeJson(Writer writer, WeatherView rows, int row) throws IOException {
+        writer.write("{\"date\":\"");
+        writer.write(WeatherDates.format(rows.getEpochDay(row)));
+        writer.write("\",\"temperature\":");
+        double temperature = rows.getTemperature(row);
+        String text = String.format(Locale.ROOT, "%.1f", temperature);
+        // JSON has no NaN or Infinity; as strings the line stays valid JSON,
+        // and an import rejects it along with the other invalid rows
+        writer.write(Double.isFinite(temperature) ? text : JSONObject.quote(text));
+        writer.write(",\"humidity\":");
+        writer.write(Integer.toString(rows.getHumidity(row)));
+        writer.write(",\"condition\":");
+        writer.write(JSONObject.quote(rows.getCondition(row)));
+        writer.write(",\"location\":");
+        writer.write(JSONObject.quote(rows.getLocation(row)));
+        writer.write('}');
+    }
+}
@@ -0,0 +1,23 @@
+package com.weatherapp;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+// File formats of bulk imports and exports. CSV is the app's export format,
+// with a CsvLoader.FIELDS_HEADER line and a location column; NDJSON is one
+// JSON object per line with date, temperature, humidity, condition and
+// location fields.
+public enum BulkFormat {
+    CSV, NDJSON;
+
+    // NDJSON for .ndjson and .jsonl files, CSV for anything else
+    public static BulkFormat forPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+    }
+
+    // Accepts the names in any case; throws IllegalArgumentException for others
+    public static BulkFormat parse(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,270 @@
+package com.weatherapp;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Streams a CSV or NDJSON file of readings into the log, holding no more than
+// one batch in memory however large the file is. Every line is checked with
+// the manual entry form's rules; lines that fail are skipped and counted, and
+// the first few are reported with their line numbers. Valid rows go into the
+// partitions a batch at a time through FileManager.importRows(), and the
+// rollups are rebuilt once when the file is done.
+public class BulkImporter {
+    public static final int DEFAULT_BATCH_SIZE = 100_000;
+    // Rejected lines kept for the report; the rest are only counted
+    private static final int MAX_ERRORS = 20;
+    private static final Metrics.Counter IMPORTED_ROWS = Metrics.counter("import.rows");
+    private static final Metrics.Counter REJECTED_ROWS = Metrics.counter("import.rows.rejected");
+
+    public interface ProgressListener {
+        void progress(Status status);
+    }
+
+    private interface BatchSink {
+        int write(List<WeatherEntry> batch) throws IOException;
+    }
+
+    // How far an import has got; passed to the listener after every batch
+    // and returned once the file is done
+    public static final class Status {
+        private final long bytesRead;
+        private final long totalBytes;
+        private final long imported;
+        private final long rejected;
+        private final long elapsedNanos;
+        private final List<String> errors;
+
+        private Status(long bytesRead, long totalBytes, long imported, long rejected, long elapsedNanos,
+                       List<String> errors) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+            this.errors = errors;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        // 0..100, by bytes read
+        public int getPercent() {
+            return totalBytes <= 0 ? 100 : (int) Math.min(100, bytesRead * 100 / totalBytes);
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : imported * 1e9 / elapsedNanos;
+        }
+
+        // "Line <n>: <reason>" for the first rejected lines
+        public List<String> getErrors() {
+            return errors;
+        }
+    }
+
+    private final FileManager fileManager;
+    private final int batchSize;
+
+    public BulkImporter(FileManager fileManager) {
+        this(fileManager, DEFAULT_BATCH_SIZE);
+    }
+
+    public BulkImporter(FileManager fileManager, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.fileManager = fileManager;
+        this.batchSize = batchSize;
+    }
+
+    // Listener may be null. Batches written before an IOException stay imported.
+    public Status importFile(Path source, BulkFormat format, ProgressListener listener) throws IOException {
+        try {
+            Status status = transfer(source, format, batchSize, listener, this::write);
+            fileManager.finishImport();
+            return status;
+        } catch (IOException e) {
+            // Whatever made it in still gets its rollups
+            try {
+                fileManager.finishImport();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    // Checks every line as importFile() does, but adds the valid rows to
+    // `rows` instead of writing them, for callers that journal rows through
+    // a store of their own. The whole file is held in memory.
+    public static Status readFile(Path source, BulkFormat format, List<WeatherEntry> rows) throws IOException {
+        return transfer(source, format, DEFAULT_BATCH_SIZE, null, batch -> {
+            rows.addAll(batch);
+            int count = batch.size();
+            batch.clear();
+            return count;
+        });
+    }
+
+    // Hands the valid rows to the sink a batch at a time; the sink clears the
+    // batch and returns how many rows it took
+    private static Status transfer(Path source, BulkFormat format, int batchSize, ProgressListener listener,
+                                   BatchSink sink) throws IOException {
+        long start = System.nanoTime();
+        long totalBytes = Files.size(source);
+        List<WeatherEntry> batch = new ArrayList<>(Math.min(batchSize, 1 << 16));
+        List<String> errors = new ArrayList<>();
+        long imported = 0;
+        long rejected = 0;
+        long lineNumber = 0;
+        boolean withLocation = false;
+        try (CountingInputStream counter = new CountingInputStream(Files.newInputStream(source));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (format == BulkFormat.CSV && line.charAt(0) == '#') {
+                    // #seq= and other comments are ignored
+                    if (line.equals(CsvLoader.FIELDS_HEADER)) {
+                        withLocation = true;
+                    }
+                    continue;
+                }
+                try {
+                    batch.add(format == BulkFormat.CSV ? parseCsv(line, withLocation) : parseJson(line));
+                } catch (IllegalArgumentException e) {
+                    rejected++;
+                    if (errors.size() < MAX_ERRORS) {
+                        errors.add("Line " + lineNumber + ": " + e.getMessage());
+                    }
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    imported += sink.write(batch);
+                    report(listener, counter.count, totalBytes, imported, rejected, start, errors);
+                }
+            }
+            imported += sink.write(batch);
+        } finally {
+            REJECTED_ROWS.add(rejected);
+        }
+        Status status = new Status(totalBytes, totalBytes, imported, rejected, System.nanoTime() - start,
+                Collections.unmodifiableList(errors));
+        if (listener != null) {
+            listener.progress(status);
+        }
+        return status;
+    }
+
+    private int write(List<WeatherEntry> batch) throws IOException {
+        int count = batch.size();
+        if (count > 0) {
+            fileManager.importRows(WeatherStore.of(batch));
+            IMPORTED_ROWS.add(count);
+            batch.clear();
+        }
+        return count;
+    }
+
+    private static void report(ProgressListener listener, long bytesRead, long totalBytes, long imported,
+                               long rejected, long start, List<String> errors) {
+        if (listener != null) {
+            listener.progress(new Status(bytesRead, totalBytes, imported, rejected, System.nanoTime() - start,
+                    Collections.unmodifiableList(new ArrayList<>(errors))));
+        }
+    }
+
+    // date,temperature,humidity[,location],condition; the condition may contain commas
+    private static WeatherEntry parseCsv(String line, boolean withLocation) {
+        String[] fields = line.split(",", withLocation ? 5 : 4);
+        if (fields.length < (withLocation ? 5 : 4)) {
+            throw new IllegalArgumentException("All fields are required.");
+        }
+        String location = withLocation ? fields[3].trim() : "";
+        String condition = fields[withLocation ? 4 : 3].trim();
+        return EntryValidator.validate(fields[0].trim(), fields[1].trim(), fields[2].trim(), condition, location);
+    }
+
+    private static WeatherEntry parseJson(String line) {
+        JSONObject row;
+        try {
+            row = new JSONObject(line);
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Not a JSON object.");
+        }
+        return EntryValidator.validate(field(row, "date"), field(row, "temperature"), field(row, "humidity"),
+                field(row, "condition"), field(row, "location"));
+    }
+
+    // Numbers are validated from their text like everything else
+    private static String field(JSONObject row, String name) {
+        Object value = row.opt(name);
+        return value == null || value == JSONObject.NULL ? "" : value.toString().trim();
+    }
+
+    // Bytes handed to the reader, for progress; the reader's buffer runs a little ahead of the rows
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
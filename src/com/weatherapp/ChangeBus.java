@@ -0,0 +1,82 @@
+package com.weatherapp;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Hands changes to the weather data from whatever made them to the views that
+// show it. Immediate subscribers hear about every publish, for state that has
+// to track the store exactly, such as a table's row count. Everyone else is
+// called at most once per frame with all changes since the last call, so a
+// burst of mutations costs one refresh. Listeners always run on the EDT.
+public class ChangeBus {
+    // About one frame at 60 Hz
+    static final int FRAME_MILLIS = 16;
+    private static final Metrics.Counter CHANGES = Metrics.counter("ui.changes");
+    // One recording per frame that had changes, so its count is the refresh rate
+    private static final Metrics.Timer REFRESH_TIME = Metrics.timer("ui.refresh");
+
+    public interface Listener {
+        void changed(List<WeatherChange> changes);
+    }
+
+    private final List<Listener> immediate = new CopyOnWriteArrayList<>();
+    private final List<Listener> perFrame = new CopyOnWriteArrayList<>();
+    // Touched only on the EDT
+    private List<WeatherChange> pending = new ArrayList<>();
+    private final Timer frame;
+
+    public ChangeBus() {
+        frame = new Timer(FRAME_MILLIS, e -> flush());
+        frame.setRepeats(false);
+    }
+
+    public void subscribeImmediately(Listener listener) {
+        immediate.add(listener);
+    }
+
+    public void subscribe(Listener listener) {
+        perFrame.add(listener);
+    }
+
+    public void publish(WeatherChange change) {
+        publishAll(Collections.singletonList(change));
+    }
+
+    public void publishAll(List<WeatherChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (!SwingUtilities.isEventDispatchThread()) {
+            List<WeatherChange> copy = new ArrayList<>(changes);
+            SwingUtilities.invokeLater(() -> publishAll(copy));
+            return;
+        }
+        CHANGES.add(changes.size());
+        for (Listener listener : immediate) {
+            listener.changed(changes);
+        }
+        pending.addAll(changes);
+        if (!frame.isRunning()) {
+            frame.start();
+        }
+    }
+
+    // Delivers anything pending now instead of on the next tick
+    public void flush() {
+        frame.stop();
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<WeatherChange> changes = Collections.unmodifiableList(pending);
+        pending = new ArrayList<>();
+        for (Listener listener : perFrame) {
+            listener.changed(changes);
+        }
+        REFRESH_TIME.recordSince(start);
+    }
+}
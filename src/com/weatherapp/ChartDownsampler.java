@@ -0,0 +1,53 @@
+package com.weatherapp;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+// Reduces a series to what can actually be seen at a given pixel width. Rows
+// are split into equal buckets, and each bucket keeps only its lowest and
+// highest temperature (in their original order), so peaks survive while the
+// number of points drops to at most two per bucket.
+public final class ChartDownsampler {
+    private ChartDownsampler() {
+    }
+
+    // Returns the source rows to plot, in ascending order
+    public static int[] minMax(WeatherView entries, int buckets) {
+        return minMax(entries.size(), entries::getTemperature, buckets);
+    }
+
+    // Same for any series of values, such as rollup averages
+    public static int[] minMax(int size, IntToDoubleFunction values, int buckets) {
+        if (buckets < 1 || size <= 2 * buckets) {
+            int[] all = new int[size];
+            for (int row = 0; row < size; row++) {
+                all[row] = row;
+            }
+            return all;
+        }
+
+        int[] sampled = new int[2 * buckets];
+        int count = 0;
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int from = (int) ((long) bucket * size / buckets);
+            int to = (int) ((long) (bucket + 1) * size / buckets);
+            int minRow = from;
+            int maxRow = from;
+            for (int row = from + 1; row < to; row++) {
+                double value = values.applyAsDouble(row);
+                if (value < values.applyAsDouble(minRow)) {
+                    minRow = row;
+                } else if (value > values.applyAsDouble(maxRow)) {
+                    maxRow = row;
+                }
+            }
+            if (minRow == maxRow) {
+                sampled[count++] = minRow;
+            } else {
+                sampled[count++] = Math.min(minRow, maxRow);
+                sampled[count++] = Math.max(minRow, maxRow);
+            }
+        }
+        return count == sampled.length ? sampled : Arrays.copyOf(sampled, count);
+    }
+}
@@ -1,186 +1,227 @@
 package com.weatherapp;
 
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Dimension;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.geom.Arc2D;
 import java.awt.Font;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.ExecutionException;
+import java.util.function.IntToDoubleFunction;
+
+// Draws a series of rows or rollup buckets from geometry built off the EDT:
+// the caller projects a new series with project() on a worker thread and
+// hands both to setSeries() on the EDT. Resizes and chart type changes are
+// projected again on a worker of the panel's own, and painting only ever
+// draws a finished Geometry.
 public class ChartPanel extends JPanel {
-    private List<WeatherEntry> entries;
+    private static final int PADDING = 25;
+    private static final int LABEL_PADDING = 25;
+    private static final int MIN_BAR_WIDTH = 3;
+    private static final Color AREA_FILL = new Color(0, 150, 255, 100);
+    private static final Font LEGEND_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final Metrics.Timer PAINT_TIME = Metrics.timer("ui.chart.paint");
+    private static final Color[] PIE_COLORS = {Color.RED, Color.GREEN, Color.BLUE, Color.ORANGE, Color.CYAN, Color.MAGENTA, Color.YELLOW, Color.PINK};
+
+    // Rows that nobody changes once they are handed over, since they are
+    // projected off the EDT; null before the first series
+    private WeatherView entries;
+    // Buckets plotted by their average instead of the rows, or null
+    private List<Rollup> rollups;
     private String chartType = "Line Chart";
+    // Null until the first series is projected
+    private Geometry geometry;
+    private boolean projecting;
+    private boolean projectPending;
+    private final Arc2D.Double arc = new Arc2D.Double();
 
-    public ChartPanel(List<WeatherEntry> entries) {
-        this.entries = entries;
+    public ChartPanel() {
         setPreferredSize(new Dimension(400, 200));
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                reproject();
+            }
+        });
+    }
+
+    // Screen coordinates of a series for a chart of the given type and size.
+    // Runs on any thread; the rows must not change while it does. Exactly one
+    // of entries and rollups is non-null.
+    public static Geometry project(WeatherView entries, List<Rollup> rollups, String chartType, int width, int height) {
+        return new Geometry(entries, rollups, chartType, width, height);
     }
 
-    public void setEntries(List<WeatherEntry> entries) {
+    // Shows rows, or rollup buckets if rollups is non-null, with geometry
+    // from project(). Called on the EDT; if the panel was resized or its
+    // chart type changed since the geometry was built it is built again.
+    public void setSeries(WeatherView entries, List<Rollup> rollups, Geometry geometry) {
         this.entries = entries;
+        this.rollups = rollups;
+        this.geometry = geometry;
+        if (!geometry.matches(entries, rollups, chartType, getWidth(), getHeight())) {
+            reproject();
+        }
         repaint();
     }
 
+    public String getChartType() {
+        return chartType;
+    }
+
     public void setChartType(String chartType) {
         this.chartType = chartType;
-        repaint();
+        reproject();
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
-        if (entries == null || entries.isEmpty()) {
+        paintChart(g);
+        PAINT_TIME.recordSince(start);
+    }
+
+    // Projects the current series again on a worker thread. Requests made
+    // while one is running are folded into a single follow-up.
+    private void reproject() {
+        if (seriesSize() == 0 || (geometry != null && geometry.matches(entries, rollups, chartType, getWidth(), getHeight()))) {
+            return;
+        }
+        if (projecting) {
+            projectPending = true;
+            return;
+        }
+        projecting = true;
+        WeatherView rows = entries;
+        List<Rollup> buckets = rollups;
+        String type = chartType;
+        int width = getWidth();
+        int height = getHeight();
+        new SwingWorker<Geometry, Void>() {
+            @Override
+            protected Geometry doInBackground() {
+                return project(rows, buckets, type, width, height);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    // A series set meanwhile came with geometry of its own
+                    if (rows == entries && buckets == rollups) {
+                        geometry = get();
+                        repaint();
+                    }
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+                projecting = false;
+                if (projectPending) {
+                    projectPending = false;
+                    reproject();
+                }
+            }
+        }.execute();
+    }
+
+    private void paintChart(Graphics g) {
+        if (seriesSize() == 0) {
             g.drawString("No data to display.", 10, 20);
             return;
         }
 
+        // After a chart type change nothing is drawn until its geometry is
+        // ready; after a resize the old geometry is drawn until then
+        Geometry geo = geometry;
+        if (geo == null || !geo.chartType.equals(chartType)) {
+            return;
+        }
+
         Graphics2D g2d = (Graphics2D) g;
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         switch (chartType) {
             case "Line Chart":
-                drawLineChart(g2d);
+                drawLineChart(g2d, geo);
                 break;
             case "Bar Chart":
-                drawBarChart(g2d);
+                drawBarChart(g2d, geo);
                 break;
             case "Area Chart":
-                drawAreaChart(g2d);
+                drawAreaChart(g2d, geo);
                 break;
             case "Scatter Plot":
-                drawScatterPlot(g2d);
+                drawScatterPlot(g2d, geo);
                 break;
             case "Pie Chart (Conditions)":
-                drawPieChart(g2d);
+                drawPieChart(g2d, geo);
                 break;
         }
     }
 
-    private void drawLineChart(Graphics2D g2d) {
+    private void drawLineChart(Graphics2D g2d, Geometry geo) {
         int width = getWidth();
         int height = getHeight();
-        int padding = 25;
-        int labelPadding = 25;
-
-        double maxTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).max().orElse(0);
-        double minTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).min().orElse(0);
 
         g2d.setColor(Color.WHITE);
-        g2d.fillRect(padding + labelPadding, padding, width - 2 * padding - labelPadding, height - 2 * padding - labelPadding);
+        g2d.fillRect(PADDING + LABEL_PADDING, PADDING, width - 2 * PADDING - LABEL_PADDING, height - 2 * PADDING - LABEL_PADDING);
         g2d.setColor(Color.BLACK);
 
         // Draw Y-axis
-        g2d.drawLine(padding + labelPadding, height - padding - labelPadding, padding + labelPadding, padding);
+        g2d.drawLine(PADDING + LABEL_PADDING, height - PADDING - LABEL_PADDING, PADDING + LABEL_PADDING, PADDING);
         // Draw X-axis
-        g2d.drawLine(padding + labelPadding, height - padding - labelPadding, width - padding, height - padding - labelPadding);
+        g2d.drawLine(PADDING + LABEL_PADDING, height - PADDING - LABEL_PADDING, width - PADDING, height - PADDING - LABEL_PADDING);
 
         g2d.setColor(Color.BLUE);
 
-        if (entries.size() < 2) {
-            // Not enough data to draw a line, maybe draw a point?
-            if (entries.size() == 1) {
-                int x = padding + labelPadding + (width - 2 * padding - labelPadding) / 2;
-                int y = (int) (height - padding - labelPadding - ((entries.get(0).getTemperature() - minTemp) / (maxTemp - minTemp == 0 ? 1 : maxTemp - minTemp)) * (height - 2 * padding - labelPadding));
-                g2d.fillOval(x - 3, y - 3, 6, 6);
-            }
+        if (geo.count == 1) {
+            // Not enough data to draw a line, so draw a point
+            g2d.fillOval(geo.xPoints[0] - 3, geo.yPoints[0] - 3, 6, 6);
             return;
         }
-
-        int pointWidth = (width - 2 * padding - labelPadding) / (entries.size() - 1);
-        for (int i = 0; i < entries.size() - 1; i++) {
-            int x1 = padding + labelPadding + i * pointWidth;
-            int y1 = (int) (height - padding - labelPadding - ((entries.get(i).getTemperature() - minTemp) / (maxTemp - minTemp == 0 ? 1 : maxTemp - minTemp)) * (height - 2 * padding - labelPadding));
-            int x2 = padding + labelPadding + (i + 1) * pointWidth;
-            int y2 = (int) (height - padding - labelPadding - ((entries.get(i + 1).getTemperature() - minTemp) / (maxTemp - minTemp == 0 ? 1 : maxTemp - minTemp)) * (height - 2 * padding - labelPadding));
-            g2d.drawLine(x1, y1, x2, y2);
-        }
+        g2d.drawPolyline(geo.xPoints, geo.yPoints, geo.count);
     }
 
-    private void drawBarChart(Graphics2D g2d) {
-        int width = getWidth();
-        int height = getHeight();
-        int padding = 25;
-        int labelPadding = 25;
-
-        double maxTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).max().orElse(0);
-
-        int barWidth = (width - 2 * padding - labelPadding) / entries.size();
-        for (int i = 0; i < entries.size(); i++) {
-            int barHeight = (int) ((entries.get(i).getTemperature() / maxTemp) * (height - 2 * padding - labelPadding));
-            int x = padding + labelPadding + i * barWidth;
-            int y = height - padding - labelPadding - barHeight;
+    private void drawBarChart(Graphics2D g2d, Geometry geo) {
+        for (int i = 0; i < geo.count; i++) {
+            int top = Math.min(geo.yPoints[i], geo.barBase);
+            int barHeight = Math.abs(geo.barBase - geo.yPoints[i]);
             g2d.setColor(Color.CYAN);
-            g2d.fillRect(x, y, barWidth - 2, barHeight);
+            g2d.fillRect(geo.xPoints[i], top, geo.barWidth - 2, barHeight);
             g2d.setColor(Color.BLACK);
-            g2d.drawRect(x, y, barWidth - 2, barHeight);
+            g2d.drawRect(geo.xPoints[i], top, geo.barWidth - 2, barHeight);
         }
     }
 
-    private void drawAreaChart(Graphics2D g2d) {
-        if (entries.size() < 2) {
+    private void drawAreaChart(Graphics2D g2d, Geometry geo) {
+        if (seriesSize() < 2) {
             g2d.drawString("Area chart requires at least 2 data points.", 10, 20);
             return;
         }
-        int width = getWidth();
-        int height = getHeight();
-        int padding = 25;
-        int labelPadding = 25;
-
-        double maxTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).max().orElse(0);
-        double minTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).min().orElse(0);
-
-        int[] xPoints = new int[entries.size() + 2];
-        int[] yPoints = new int[entries.size() + 2];
-
-        for (int i = 0; i < entries.size(); i++) {
-            xPoints[i] = padding + labelPadding + i * (width - 2 * padding - labelPadding) / (entries.size() - 1);
-            yPoints[i] = (int) (height - padding - labelPadding - ((entries.get(i).getTemperature() - minTemp) / (maxTemp - minTemp == 0 ? 1 : maxTemp - minTemp)) * (height - 2 * padding - labelPadding));
-        }
-        xPoints[entries.size()] = padding + labelPadding + (width - 2 * padding - labelPadding);
-        yPoints[entries.size()] = height - padding - labelPadding;
-        xPoints[entries.size() + 1] = padding + labelPadding;
-        yPoints[entries.size() + 1] = height - padding - labelPadding;
 
-        g2d.setColor(new Color(0, 150, 255, 100));
-        g2d.fillPolygon(xPoints, yPoints, entries.size() + 2);
+        // The geometry carries the two baseline corners after the series
+        g2d.setColor(AREA_FILL);
+        g2d.fillPolygon(geo.xPoints, geo.yPoints, geo.count + 2);
 
         g2d.setColor(Color.BLUE);
-        for (int i = 0; i < entries.size() - 1; i++) {
-            g2d.drawLine(xPoints[i], yPoints[i], xPoints[i+1], yPoints[i+1]);
-        }
+        g2d.drawPolyline(geo.xPoints, geo.yPoints, geo.count);
     }
 
-    private void drawScatterPlot(Graphics2D g2d) {
-        int width = getWidth();
-        int height = getHeight();
-        int padding = 25;
-        int labelPadding = 25;
-
-        double maxTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).max().orElse(0);
-        double minTemp = entries.stream().mapToDouble(WeatherEntry::getTemperature).min().orElse(0);
-
+    private void drawScatterPlot(Graphics2D g2d, Geometry geo) {
         g2d.setColor(Color.RED);
-
-        for (int i = 0; i < entries.size(); i++) {
-            int x = padding + labelPadding;
-            if (entries.size() > 1) {
-                x += i * (width - 2 * padding - labelPadding) / (entries.size() - 1);
-            } else {
-                x += (width - 2 * padding - labelPadding) / 2;
-            }
-            int y = (int) (height - padding - labelPadding - ((entries.get(i).getTemperature() - minTemp) / (maxTemp - minTemp == 0 ? 1 : maxTemp - minTemp)) * (height - 2 * padding - labelPadding));
-            g2d.fillOval(x - 3, y - 3, 6, 6);
+        for (int i = 0; i < geo.count; i++) {
+            g2d.fillOval(geo.xPoints[i] - 3, geo.yPoints[i] - 3, 6, 6);
         }
     }
 
-    private void drawPieChart(Graphics2D g2d) {
-        Map<String, Long> conditionCounts = entries.stream()
-                .collect(Collectors.groupingBy(WeatherEntry::getCondition, Collectors.counting()));
+    private void drawPieChart(Graphics2D g2d, Geometry geo) {
+        int[] conditionCounts = geo.conditionCounts;
 
         int width = getWidth();
         int height = getHeight();
@@ -188,31 +229,166 @@ public class ChartPanel extends JPanel {
         int x = (width - pieSize) / 2;
         int y = (height - pieSize) / 2;
 
-        double total = entries.size();
+        double total = geo.total;
         double currentAngle = 0.0;
         int i = 0;
-        for (Map.Entry<String, Long> entry : conditionCounts.entrySet()) {
-            double sweepAngle = (entry.getValue() / total) * 360.0;
+        for (int code = 0; code < geo.conditionCount; code++) {
+            if (conditionCounts[code] == 0) {
+                continue;
+            }
+            double sweepAngle = (conditionCounts[code] / total) * 360.0;
             g2d.setColor(getPieColor(i++));
-            g2d.fill(new Arc2D.Double(x, y, pieSize, pieSize, currentAngle, sweepAngle, Arc2D.PIE));
+            arc.setArc(x, y, pieSize, pieSize, currentAngle, sweepAngle, Arc2D.PIE);
+            g2d.fill(arc);
             currentAngle += sweepAngle;
         }
-        
+
         // Draw legend
-        g2d.setFont(new Font("Arial", Font.PLAIN, 12));
+        g2d.setFont(LEGEND_FONT);
         i = 0;
         int legendY = y;
-        for (Map.Entry<String, Long> entry : conditionCounts.entrySet()) {
+        for (int code = 0; code < geo.conditionCount; code++) {
+            if (conditionCounts[code] == 0) {
+                continue;
+            }
             g2d.setColor(getPieColor(i++));
             g2d.fillRect(x + pieSize + 10, legendY, 10, 10);
             g2d.setColor(Color.BLACK);
-            g2d.drawString(entry.getKey(), x + pieSize + 25, legendY + 10);
+            g2d.drawString(geo.conditionNames[code], x + pieSize + 25, legendY + 10);
             legendY += 15;
         }
     }
 
+    private int seriesSize() {
+        if (rollups != null) {
+            return rollups.size();
+        }
+        return entries == null ? 0 : entries.size();
+    }
+
     private Color getPieColor(int i) {
-        Color[] colors = {Color.RED, Color.GREEN, Color.BLUE, Color.ORANGE, Color.CYAN, Color.MAGENTA, Color.YELLOW, Color.PINK};
-        return colors[i % colors.length];
+        return PIE_COLORS[i % PIE_COLORS.length];
+    }
+
+    // Immutable once built, so a worker can build it while the EDT paints the last one
+    public static final class Geometry {
+        private final WeatherView entries;
+        private final List<Rollup> rollups;
+        final String chartType;
+        final int width;
+        final int height;
+
+        int[] xPoints = new int[0];
+        int[] yPoints = new int[0];
+        int count;
+        int barWidth;
+        // Where the bars start: the y of 0, or the plot edge nearest to it
+        int barBase;
+        int[] conditionCounts = new int[0];
+        String[] conditionNames = new String[0];
+        int conditionCount;
+        long total;
+
+        private Geometry(WeatherView entries, List<Rollup> rollups, String chartType, int width, int height) {
+            this.entries = entries;
+            this.rollups = rollups;
+            this.chartType = chartType;
+            this.width = width;
+            this.height = height;
+
+            if (chartType.equals("Pie Chart (Conditions)")) {
+                if (rollups != null) {
+                    buildConditionCounts(rollups);
+                } else {
+                    buildConditionCounts(entries);
+                }
+                return;
+            }
+
+            int size = rollups != null ? rollups.size() : entries.size();
+            IntToDoubleFunction temperatures = rollups != null ? i -> rollups.get(i).getAverage() : entries::getTemperature;
+
+            int plotWidth = width - 2 * PADDING - LABEL_PADDING;
+            int plotHeight = height - 2 * PADDING - LABEL_PADDING;
+            int baseline = height - PADDING - LABEL_PADDING;
+            boolean bars = chartType.equals("Bar Chart");
+            // Bars get wider buckets so every bar stays a few pixels wide
+            int buckets = Math.max(bars ? plotWidth / MIN_BAR_WIDTH / 2 : plotWidth, 1);
+            int[] rows = ChartDownsampler.minMax(size, temperatures, buckets);
+
+            // The sampled rows keep each bucket's extremes, so these match the full series
+            double maxTemp = Double.NEGATIVE_INFINITY;
+            double minTemp = Double.POSITIVE_INFINITY;
+            for (int row : rows) {
+                double temperature = temperatures.applyAsDouble(row);
+                maxTemp = Math.max(maxTemp, temperature);
+                minTemp = Math.min(minTemp, temperature);
+            }
+
+            count = rows.length;
+            xPoints = new int[count + 2];
+            yPoints = new int[count + 2];
+            double scale = plotHeight / (maxTemp - minTemp == 0 ? 1 : maxTemp - minTemp);
+            if (bars) {
+                barWidth = Math.max(plotWidth / Math.max(count, 1), 1);
+                // Bars grow up or down from 0 when it is in range, otherwise
+                // from the edge of the plot nearest to it
+                double anchor = Math.max(minTemp, Math.min(maxTemp, 0));
+                barBase = (int) (baseline - (anchor - minTemp) * scale);
+                for (int i = 0; i < count; i++) {
+                    xPoints[i] = PADDING + LABEL_PADDING + i * barWidth;
+                    yPoints[i] = (int) (baseline - (temperatures.applyAsDouble(rows[i]) - minTemp) * scale);
+                }
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                int x = size < 2 ? plotWidth / 2 : (int) ((long) rows[i] * plotWidth / (size - 1));
+                xPoints[i] = PADDING + LABEL_PADDING + x;
+                yPoints[i] = (int) (baseline - (temperatures.applyAsDouble(rows[i]) - minTemp) * scale);
+            }
+            // Baseline corners closing the area chart's polygon
+            xPoints[count] = PADDING + LABEL_PADDING + plotWidth;
+            yPoints[count] = baseline;
+            xPoints[count + 1] = PADDING + LABEL_PADDING;
+            yPoints[count + 1] = baseline;
+        }
+
+        boolean matches(WeatherView entries, List<Rollup> rollups, String chartType, int width, int height) {
+            return this.entries == entries && this.rollups == rollups && this.chartType.equals(chartType)
+                    && this.width == width && this.height == height;
+        }
+
+        private void buildConditionCounts(WeatherView entries) {
+            resetConditions(entries.conditionCount());
+            for (int code = 0; code < conditionCount; code++) {
+                conditionNames[code] = entries.conditionName(code);
+            }
+            for (int row = 0; row < entries.size(); row++) {
+                conditionCounts[entries.getConditionCode(row)]++;
+            }
+            total = entries.size();
+        }
+
+        // Buckets of one series share their condition codes
+        private void buildConditionCounts(List<Rollup> rollups) {
+            resetConditions(rollups.isEmpty() ? 0 : rollups.get(0).conditionCount());
+            total = 0;
+            for (Rollup bucket : rollups) {
+                for (int code = 0; code < conditionCount; code++) {
+                    conditionCounts[code] += bucket.countOf(code);
+                }
+                total += bucket.getCount();
+            }
+            for (int code = 0; code < conditionCount; code++) {
+                conditionNames[code] = rollups.get(0).conditionName(code);
+            }
+        }
+
+        private void resetConditions(int count) {
+            conditionCount = count;
+            conditionCounts = new int[count];
+            conditionNames = new String[count];
+        }
     }
 }
@@ -0,0 +1,315 @@
+package com.weatherapp;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Weather rows shared between threads, such as ingestion writing while the
+// HTTP API reads. WeatherStore itself is single-threaded; this keeps one per
+// month and never changes a store once other threads can see it. The contract:
+//
+//  - snapshot() returns the whole store at one version. A snapshot never
+//    changes afterwards and is read without locks, and taking one is a single
+//    volatile read, so readers never wait for writers.
+//  - Every write is atomic: a snapshot has all of it or none of it, even when
+//    it spans several months.
+//  - Writes to the same month run one at a time, in the order they lock it;
+//    writes to different months run in parallel. A write spanning months
+//    locks them oldest first.
+//  - Writers never wait for readers: a write copies the months it changes and
+//    publishes a new snapshot that shares every other month with the old one.
+//
+// With a FileManager, each write is journaled while its months are locked,
+// so the journal sees writes to a month in the same order the store does.
+// Writes made to the FileManager directly are only picked up by reload().
+public class ConcurrentWeatherStore {
+    private static final Metrics.Timer WRITE_TIME = Metrics.timer("store.write");
+    private static final Metrics.Timer RELOAD_TIME = Metrics.timer("store.reload");
+    // Publishes that lost a race with a write to another month and were redone
+    private static final Metrics.Counter PUBLISH_RETRIES = Metrics.counter("store.publish.retries");
+
+    // Null for a store kept only in memory
+    private final FileManager fileManager;
+    private final Map<YearMonth, ReentrantLock> monthLocks = new ConcurrentHashMap<>();
+    // Writes share it, reload() takes it exclusively; readers never touch it
+    private final ReentrantReadWriteLock reloadLock = new ReentrantReadWriteLock();
+    private final AtomicReference<Snapshot> current;
+
+    public ConcurrentWeatherStore() {
+        this.fileManager = null;
+        this.current = new AtomicReference<>(new Snapshot(0, new TreeMap<>()));
+    }
+
+    // Loads the whole log, and journals every write to it from then on
+    public ConcurrentWeatherStore(FileManager fileManager) {
+        this.fileManager = fileManager;
+        this.current = new AtomicReference<>(new Snapshot(0, split(fileManager.loadStore())));
+    }
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public void add(WeatherEntry entry) {
+        replace(Collections.emptyList(), Collections.singletonList(entry));
+    }
+
+    public void addAll(List<WeatherEntry> entries) {
+        replace(Collections.emptyList(), entries);
+    }
+
+    // Returns false if no row matched
+    public boolean remove(WeatherEntry entry) {
+        return replace(Collections.singletonList(entry), Collections.emptyList()) == 1;
+    }
+
+    public int removeAll(List<WeatherEntry> entries) {
+        return replace(entries, Collections.emptyList());
+    }
+
+    // Deletes a row matching each of `removed`, as a journal replay would,
+    // and adds `added`, all as one write. Returns the number of rows deleted.
+    public int replace(List<WeatherEntry> removed, List<WeatherEntry> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        TreeMap<YearMonth, MonthChange> changes = new TreeMap<>();
+        for (WeatherEntry entry : removed) {
+            changes.computeIfAbsent(YearMonth.from(entry.getDate()), month -> new MonthChange()).removed.add(entry);
+        }
+        for (WeatherEntry entry : added) {
+            changes.computeIfAbsent(YearMonth.from(entry.getDate()), month -> new MonthChange()).added.add(entry);
+        }
+
+        List<ReentrantLock> held = new ArrayList<>(changes.size());
+        reloadLock.readLock().lock();
+        try {
+            for (YearMonth month : changes.keySet()) {
+                ReentrantLock lock = monthLocks.computeIfAbsent(month, m -> new ReentrantLock());
+                lock.lock();
+                held.add(lock);
+            }
+            // Only holders of a month's lock publish that month, so what the
+            // current snapshot has for these months is their latest version
+            Snapshot base = current.get();
+            TreeMap<YearMonth, WeatherStore> changed = new TreeMap<>();
+            List<WeatherEntry> deleted = new ArrayList<>();
+            for (Map.Entry<YearMonth, MonthChange> change : changes.entrySet()) {
+                WeatherStore rows = new WeatherStore();
+                WeatherStore old = base.months.get(change.getKey());
+                if (old != null) {
+                    rows.addAll(old);
+                }
+                change.getValue().applyTo(rows, deleted);
+                freeze(rows);
+                changed.put(change.getKey(), rows);
+            }
+            // Journal only the deletes that matched a row, or a replay would
+            // take them off the rollups without the rows ever being there
+            if (fileManager != null && (!deleted.isEmpty() || !added.isEmpty())) {
+                fileManager.replaceEntries(deleted, added);
+            }
+            publish(changed);
+            WRITE_TIME.recordSince(start);
+            return deleted.size();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+            reloadLock.readLock().unlock();
+        }
+    }
+
+    // Loads the log again, for changes made to the FileManager directly.
+    // Waits for writes in progress and holds new ones off until it is done;
+    // readers carry on with the previous snapshot meanwhile.
+    public void reload() {
+        if (fileManager == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        reloadLock.writeLock().lock();
+        try {
+            TreeMap<YearMonth, WeatherStore> months = split(fileManager.loadStore());
+            Snapshot previous = current.get();
+            current.set(new Snapshot(previous.version + 1, months));
+            RELOAD_TIME.recordSince(start);
+        } finally {
+            reloadLock.writeLock().unlock();
+        }
+    }
+
+    // Swaps the changed months into whatever the latest snapshot is. Writes to
+    // other months may publish in between, which only costs another attempt.
+    private void publish(TreeMap<YearMonth, WeatherStore> changed) {
+        while (true) {
+            Snapshot previous = current.get();
+            TreeMap<YearMonth, WeatherStore> months = new TreeMap<>(previous.months);
+            for (Map.Entry<YearMonth, WeatherStore> month : changed.entrySet()) {
+                if (month.getValue().isEmpty()) {
+                    months.remove(month.getKey());
+                } else {
+                    months.put(month.getKey(), month.getValue());
+                }
+            }
+            if (current.compareAndSet(previous, new Snapshot(previous.version + 1, months))) {
+                return;
+            }
+            PUBLISH_RETRIES.increment();
+        }
+    }
+
+    private static TreeMap<YearMonth, WeatherStore> split(WeatherStore store) {
+        TreeMap<YearMonth, WeatherStore> months = new TreeMap<>();
+        int row = 0;
+        while (row < store.size()) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(store.getEpochDay(row)));
+            WeatherSlice slice = store.range((int) month.atDay(1).toEpochDay(), (int) month.atEndOfMonth().toEpochDay());
+            WeatherStore rows = new WeatherStore(slice.size());
+            rows.appendAll(slice);
+            freeze(rows);
+            months.put(month, rows);
+            row = slice.getTo();
+        }
+        return months;
+    }
+
+    // The per-location index is built lazily; build it before the store is
+    // shared, so concurrent readers only ever read it
+    private static void freeze(WeatherStore rows) {
+        rows.buildLocationIndex();
+    }
+
+    // One month's part of a write
+    private static final class MonthChange {
+        final List<WeatherEntry> removed = new ArrayList<>();
+        final List<WeatherEntry> added = new ArrayList<>();
+
+        // Adds the entries of `removed` that matched a row to `deleted`
+        void applyTo(WeatherStore rows, List<WeatherEntry> deleted) {
+            BitSet matched = new BitSet(rows.size());
+            for (WeatherEntry entry : removed) {
+                WeatherSlice day = rows.onDay((int) entry.getDate().toEpochDay());
+                for (int i = 0; i < day.size(); i++) {
+                    int row = day.sourceRow(i);
+                    if (!matched.get(row) && FileManager.sameRow(day, i, entry)) {
+                        matched.set(row);
+                        deleted.add(entry);
+                        break;
+                    }
+                }
+            }
+            if (!matched.isEmpty()) {
+                rows.removeRows(matched.stream().toArray());
+            }
+            if (!added.isEmpty()) {
+                rows.addAll(WeatherStore.of(added));
+            }
+        }
+    }
+
+    // The store at one version. Immutable; safe to read from any thread.
+    public static final class Snapshot {
+        private final long version;
+        // Never modified once the snapshot is published, nor are the stores in it
+        private final TreeMap<YearMonth, WeatherStore> months;
+        private final int size;
+        private volatile RollupIndex rollups;
+
+        private Snapshot(long version, TreeMap<YearMonth, WeatherStore> months) {
+            this.version = version;
+            this.months = months;
+            int rows = 0;
+            for (WeatherStore store : months.values()) {
+                rows += store.size();
+            }
+            this.size = rows;
+        }
+
+        // Goes up by one with every write
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        // Months that have rows, oldest first
+        public List<YearMonth> getMonths() {
+            return new ArrayList<>(months.keySet());
+        }
+
+        public WeatherView month(YearMonth month) {
+            WeatherStore rows = months.get(month);
+            return rows == null ? new WeatherStore().range(0, 0) : rows.range(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        }
+
+        // Rows of one location dated startDay..endDay inclusive; a null
+        // location means all of them. Within one month the view shares the
+        // snapshot's arrays; a wider range is copied into a new store.
+        public WeatherView range(int startDay, int endDay, String location) {
+            if (months.isEmpty()) {
+                return new WeatherStore().range(0, 0);
+            }
+            // Clamped to the months there are, since YearMonth can't hold every epoch day
+            long from = Math.max(startDay, months.firstKey().atDay(1).toEpochDay());
+            long to = Math.min(endDay, months.lastKey().atEndOfMonth().toEpochDay());
+            if (to < from) {
+                return new WeatherStore().range(0, 0);
+            }
+            NavigableMap<YearMonth, WeatherStore> covered = months.subMap(YearMonth.from(LocalDate.ofEpochDay(from)), true,
+                    YearMonth.from(LocalDate.ofEpochDay(to)), true);
+            if (covered.isEmpty()) {
+                return new WeatherStore().range(0, 0);
+            }
+            if (covered.size() == 1) {
+                return covered.firstEntry().getValue().range(startDay, endDay, location);
+            }
+            WeatherStore rows = new WeatherStore();
+            for (WeatherStore month : covered.values()) {
+                rows.appendAll(month.range(startDay, endDay, location));
+            }
+            return rows;
+        }
+
+        // Every row, copied into a store of the caller's own
+        public WeatherStore toStore() {
+            WeatherStore rows = new WeatherStore(Math.max(size, 1));
+            for (WeatherStore month : months.values()) {
+                rows.appendAll(month);
+            }
+            return rows;
+        }
+
+        // Day, week and month rollups of every row, built on first use. Shared
+        // by everyone reading this snapshot, so callers must not change it.
+        public RollupIndex getRollups() {
+            RollupIndex index = rollups;
+            if (index == null) {
+                index = new RollupIndex();
+                for (Map.Entry<YearMonth, WeatherStore> month : months.entrySet()) {
+                    index.replaceMonth(month.getKey(), month.getValue());
+                }
+                // Two threads may both build it; either copy is the same
+                rollups = index;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.weatherapp;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Loads weather CSV files by memory-mapping them, cutting them into chunks on
+// line boundaries and parsing the chunks in parallel straight from the mapped
+// bytes. Chunks are merged back in file order. Lines that don't parse are
+// skipped and counted, as FileManager has always done.
+//
+// Rows are date,temperature,humidity,condition, or with a FIELDS_HEADER line
+// at the top date,temperature,humidity,location,condition. The condition goes
+// last in both since it may contain commas.
+public final class CsvLoader {
+    static final String FIELDS_HEADER = "#fields=date,temperature,humidity,location,condition";
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int MAX_CHUNK_SIZE = 64 << 20;
+    // Headers are only looked for within this many bytes of the start
+    private static final int HEADER_WINDOW = 4096;
+    private static final byte[] SEQ_HEADER = "#seq=".getBytes(StandardCharsets.US_ASCII);
+    private static final Metrics.Counter SKIPPED_ROWS = Metrics.counter("storage.rows.skipped");
+
+    private CsvLoader() {
+    }
+
+    public static LoadResult load(Path path) throws IOException {
+        return load(path, ForkJoinPool.commonPool());
+    }
+
+    public static LoadResult load(Path path, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new LoadResult(new WeatherStore(), 0, 0);
+            }
+            long target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, size / (pool.getParallelism() * 4L)));
+            boolean withLocation = hasLocationColumn(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, HEADER_WINDOW)));
+
+            List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = nextLineStart(channel, Math.min(start + target, size), size);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                tasks.add(pool.submit(() -> parse(buffer, withLocation)));
+                start = end;
+            }
+
+            List<Chunk> chunks = new ArrayList<>(tasks.size());
+            int rows = 0;
+            for (ForkJoinTask<Chunk> task : tasks) {
+                Chunk chunk = task.join();
+                chunks.add(chunk);
+                rows += chunk.count;
+            }
+            return merge(chunks, rows);
+        } catch (NoSuchFileException e) {
+            return new LoadResult(new WeatherStore(), 0, 0);
+        }
+    }
+
+    // First offset at or after `from` that starts a line
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        if (from >= size) {
+            return size;
+        }
+        long window = Math.min(size - (from - 1), 1 << 16);
+        MappedByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, from - 1, window);
+        for (int i = 0; i < window; i++) {
+            if (probe.get(i) == '\n') {
+                return from + i;
+            }
+        }
+        // A line longer than the probe window; keep looking past it
+        return nextLineStart(channel, from - 1 + window, size);
+    }
+
+    // True if the leading comment lines include FIELDS_HEADER
+    private static boolean hasLocationColumn(MappedByteBuffer buffer) {
+        byte[] header = FIELDS_HEADER.getBytes(StandardCharsets.US_ASCII);
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit && buffer.get(lineStart) == '#') {
+            int lineEnd = indexOf(buffer, lineStart, limit, (byte) '\n');
+            if (lineEnd < 0) {
+                lineEnd = limit;
+            }
+            int contentEnd = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd - lineStart == header.length && startsWith(buffer, lineStart, contentEnd, header)) {
+                return true;
+            }
+            lineStart = lineEnd + 1;
+        }
+        return false;
+    }
+
+    private static LoadResult merge(List<Chunk> chunks, int rows) {
+        WeatherStore store = new WeatherStore(rows);
+        int skipped = 0;
+        long seq = 0;
+        for (Chunk chunk : chunks) {
+            short[] codes = new short[chunk.conditions.size()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = store.encodeCondition(chunk.conditions.name(i));
+            }
+            short[] places = new short[chunk.locations.size()];
+            for (int i = 0; i < places.length; i++) {
+                places[i] = store.encodeLocation(chunk.locations.name(i));
+            }
+            for (int i = 0; i < chunk.count; i++) {
+                chunk.conditionCodes[i] = codes[chunk.conditionCodes[i]];
+                chunk.locationCodes[i] = places[chunk.locationCodes[i]];
+            }
+            store.appendColumns(chunk.epochDays, chunk.temperatures, chunk.humidities, chunk.conditionCodes,
+                    chunk.locationCodes, chunk.count);
+            skipped += chunk.skipped;
+            seq = Math.max(seq, chunk.seq);
+        }
+        store.sortByDay();
+        SKIPPED_ROWS.add(skipped);
+        return new LoadResult(store, skipped, seq);
+    }
+
+    private static Chunk parse(MappedByteBuffer buffer, boolean withLocation) {
+        Chunk chunk = new Chunk(Math.max(16, buffer.limit() / 24), withLocation);
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int contentEnd = lineEnd;
+            if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+            if (contentEnd > lineStart) {
+                parseLine(buffer, lineStart, contentEnd, chunk);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static void parseLine(MappedByteBuffer buffer, int start, int end, Chunk chunk) {
+        if (buffer.get(start) == '#') {
+            if (startsWith(buffer, start, end, SEQ_HEADER)) {
+                long seq = parseLong(buffer, start + SEQ_HEADER.length, end);
+                if (seq >= 0) {
+                    chunk.seq = Math.max(chunk.seq, seq);
+                }
+            }
+            return;
+        }
+        int comma1 = indexOf(buffer, start, end, (byte) ',');
+        int comma2 = comma1 < 0 ? -1 : indexOf(buffer, comma1 + 1, end, (byte) ',');
+        int comma3 = comma2 < 0 ? -1 : indexOf(buffer, comma2 + 1, end, (byte) ',');
+        int comma4 = comma3 < 0 || !chunk.withLocation ? comma3 : indexOf(buffer, comma3 + 1, end, (byte) ',');
+        if (comma4 < 0) {
+            chunk.skipped++;
+            return;
+        }
+        int epochDay = parseDate(buffer, start, comma1);
+        double temperature = parseDecimal(buffer, comma1 + 1, comma2);
+        long humidity = parseLong(buffer, comma2 + 1, comma3);
+        if (epochDay == Integer.MIN_VALUE || Double.isNaN(temperature) || humidity < 0 || humidity > 100) {
+            chunk.skipped++;
+            return;
+        }
+        short location = chunk.withLocation ? chunk.locations.code(buffer, comma3 + 1, comma4) : chunk.noLocation();
+        chunk.add(epochDay, temperature, (byte) humidity, chunk.conditions.code(buffer, comma4 + 1, end), location);
+    }
+
+    // d-M-yyyy as an epoch day, or Integer.MIN_VALUE if malformed
+    private static int parseDate(MappedByteBuffer buffer, int start, int end) {
+        int day = 0;
+        int month = 0;
+        int year = 0;
+        int field = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '-' && field < 2 && digits > 0) {
+                field++;
+                digits = 0;
+            } else if (b >= '0' && b <= '9' && digits < (field == 2 ? 4 : 2)) {
+                int digit = b - '0';
+                if (field == 0) {
+                    day = day * 10 + digit;
+                } else if (field == 1) {
+                    month = month * 10 + digit;
+                } else {
+                    year = year * 10 + digit;
+                }
+                digits++;
+            } else {
+                return Integer.MIN_VALUE;
+            }
+        }
+        if (field != 2 || digits != 4 || month < 1 || month > 12 || day < 1 || day > WeatherDates.lengthOfMonth(year, month)) {
+            return Integer.MIN_VALUE;
+        }
+        return WeatherDates.toEpochDay(year, month, day);
+    }
+
+    // [-]digits[.digits]; long mantissas and exponents fall back to
+    // Double.parseDouble. Returns NaN if malformed or not finite.
+    private static double parseDecimal(MappedByteBuffer buffer, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean point = false;
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !point) {
+                point = true;
+            } else {
+                digits = -1;
+                break;
+            }
+        }
+        if (digits > 0 && digits <= 15 && fractionDigits <= 15) {
+            // Both operands are exact doubles, so one division rounds the same way parseDouble does
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        // parseDouble also takes "NaN", "Infinity", hex floats and a trailing
+        // d or f, none of which a temperature should be written as
+        for (i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if ((b < '0' || b > '9') && b != '.' && b != '-' && b != '+' && b != 'e' && b != 'E') {
+                return Double.NaN;
+            }
+        }
+        try {
+            double value = Double.parseDouble(decode(buffer, start, end));
+            // "1e999" overflows to infinity
+            return Double.isFinite(value) ? value : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    // Non-negative decimal integer, or -1 if malformed
+    private static long parseLong(MappedByteBuffer buffer, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static int indexOf(MappedByteBuffer buffer, int start, int end, byte target) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(MappedByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(MappedByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Parsed columns of one chunk. Condition and location codes are local to
+    // the chunk until merge() maps them onto the store's dictionaries.
+    private static final class Chunk {
+        final boolean withLocation;
+        int[] epochDays;
+        double[] temperatures;
+        byte[] humidities;
+        short[] conditionCodes;
+        short[] locationCodes;
+        int count;
+        int skipped;
+        long seq;
+
+        final ByteDictionary conditions = new ByteDictionary();
+        final ByteDictionary locations = new ByteDictionary();
+
+        Chunk(int capacity, boolean withLocation) {
+            this.withLocation = withLocation;
+            epochDays = new int[capacity];
+            temperatures = new double[capacity];
+            humidities = new byte[capacity];
+            conditionCodes = new short[capacity];
+            locationCodes = new short[capacity];
+        }
+
+        void add(int epochDay, double temperature, byte humidity, short code, short location) {
+            if (count == epochDays.length) {
+                int capacity = count + (count >> 1) + 1;
+                epochDays = Arrays.copyOf(epochDays, capacity);
+                temperatures = Arrays.copyOf(temperatures, capacity);
+                humidities = Arrays.copyOf(humidities, capacity);
+                conditionCodes = Arrays.copyOf(conditionCodes, capacity);
+                locationCodes = Arrays.copyOf(locationCodes, capacity);
+            }
+            epochDays[count] = epochDay;
+            temperatures[count] = temperature;
+            humidities[count] = humidity;
+            conditionCodes[count] = code;
+            locationCodes[count] = location;
+            count++;
+        }
+
+        // Code of the empty location that files without a location column map to
+        short noLocation() {
+            if (locations.size() == 0) {
+                locations.add(new byte[0], 1);
+            }
+            return 0;
+        }
+    }
+
+    // Open-addressed table from field bytes to a local code, so repeated
+    // values are matched without decoding a String per row
+    private static final class ByteDictionary {
+        private final List<String> names = new ArrayList<>();
+        private int[] slots = new int[64];
+        private byte[][] slotBytes = new byte[64][];
+
+        short code(MappedByteBuffer buffer, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                byte[] candidate = slotBytes[slot];
+                if (candidate == null) {
+                    break;
+                }
+                if (matches(candidate, buffer, start, end)) {
+                    return (short) slots[slot];
+                }
+            }
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+            return add(bytes, hash);
+        }
+
+        short add(byte[] bytes, int hash) {
+            int code = names.size();
+            names.add(new String(bytes, StandardCharsets.UTF_8));
+            insert(bytes, hash, code);
+            if (names.size() * 2 > slots.length) {
+                rehash();
+            }
+            return (short) code;
+        }
+
+        String name(int code) {
+            return names.get(code);
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        private void insert(byte[] bytes, int hash, int code) {
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slotBytes[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            slotBytes[slot] = bytes;
+            slots[slot] = code;
+        }
+
+        private void rehash() {
+            byte[][] oldBytes = slotBytes;
+            int[] oldSlots = slots;
+            slotBytes = new byte[oldBytes.length * 2][];
+            slots = new int[oldSlots.length * 2];
+            for (int i = 0; i < oldBytes.length; i++) {
+                if (oldBytes[i] != null) {
+                    int hash = 1;
+                    for (byte b : oldBytes[i]) {
+                        hash = 31 * hash + b;
+                    }
+                    insert(oldBytes[i], hash, oldSlots[i]);
+                }
+            }
+        }
+
+        private static boolean matches(byte[] candidate, MappedByteBuffer buffer, int start, int end) {
+            if (candidate.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < candidate.length; i++) {
+                if (candidate[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.weatherapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Streaming distribution of one measurement: mean and variance by Welford's
+// method, and percentiles from a fixed-width histogram. Bins are centred on
+// multiples of the bin width, so a percentile is off from the exact one by
+// at most half a bin. Only the bins between the lowest and highest one seen
+// are allocated, and never more than the clamped range, so memory is bounded
+// however many values go in. Adds and removes are O(1) apart from growing
+// the bin array; distributions with the same bin width merge exactly.
+public class Distribution {
+    static final double TEMPERATURE_BIN = 0.5;
+    static final double HUMIDITY_BIN = 1;
+    // Values beyond this many bins either side of zero count in the last bin
+    private static final int MAX_BIN = 400;
+
+    private final double binWidth;
+    private long count;
+    private double mean;
+    // Sum of squared differences from the mean
+    private double m2;
+    // counts[i] holds bin firstBin + i
+    private int firstBin;
+    private int[] counts = new int[0];
+
+    public Distribution(double binWidth) {
+        this.binWidth = binWidth;
+    }
+
+    Distribution(Distribution other) {
+        this(other.binWidth);
+        merge(other);
+    }
+
+    public static Distribution temperatures() {
+        return new Distribution(TEMPERATURE_BIN);
+    }
+
+    public static Distribution humidities() {
+        return new Distribution(HUMIDITY_BIN);
+    }
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        int bin = bin(value);
+        ensureBins(bin, bin);
+        counts[bin - firstBin]++;
+    }
+
+    // The value must have been added before
+    public void remove(double value) {
+        if (count <= 1) {
+            clear();
+            return;
+        }
+        double delta = value - mean;
+        mean = (mean * count - value) / (count - 1);
+        m2 = Math.max(0, m2 - delta * (value - mean));
+        count--;
+        int bin = bin(value) - firstBin;
+        if (bin >= 0 && bin < counts.length && counts[bin] > 0) {
+            counts[bin]--;
+        }
+    }
+
+    // Chan et al.'s pairwise combination of the moments, plus the bin counts
+    public void merge(Distribution other) {
+        if (other.binWidth != binWidth) {
+            throw new IllegalArgumentException("Bin widths differ: " + binWidth + " and " + other.binWidth);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        count = total;
+        ensureBins(other.firstBin, other.firstBin + other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[other.firstBin + i - firstBin] += other.counts[i];
+        }
+    }
+
+    public void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        Arrays.fill(counts, 0);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    // Sample variance; NaN for fewer than two values
+    public double getVariance() {
+        return count < 2 ? Double.NaN : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    // Nearest-rank percentile, 0 < percent <= 100, to within half a bin
+    public double getPercentile(double percent) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (firstBin + i) * binWidth;
+            }
+        }
+        return (firstBin + counts.length - 1) * binWidth;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+        int from = 0;
+        int to = counts.length;
+        while (from < to && counts[from] == 0) {
+            from++;
+        }
+        while (to > from && counts[to - 1] == 0) {
+            to--;
+        }
+        out.writeInt(firstBin + from);
+        out.writeShort(to - from);
+        for (int i = from; i < to; i++) {
+            out.writeInt(counts[i]);
+        }
+    }
+
+    void readFrom(DataInput in) throws IOException {
+        count = in.readLong();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+        int first = in.readInt();
+        int length = in.readShort();
+        if (count < 0 || length < 0 || first < -MAX_BIN || first + length - 1 > MAX_BIN) {
+            throw new IOException("Corrupt distribution");
+        }
+        firstBin = first;
+        counts = new int[length];
+        for (int i = 0; i < length; i++) {
+            counts[i] = in.readInt();
+        }
+    }
+
+    private int bin(double value) {
+        long bin = Math.round(value / binWidth);
+        return (int) Math.max(-MAX_BIN, Math.min(MAX_BIN, bin));
+    }
+
+    // Widens the bin array to cover bins from..to
+    private void ensureBins(int from, int to) {
+        if (counts.length == 0) {
+            firstBin = from;
+            counts = new int[to - from + 1];
+            return;
+        }
+        int lastBin = firstBin + counts.length - 1;
+        if (from >= firstBin && to <= lastBin) {
+            return;
+        }
+        int newFirst = Math.min(from, firstBin);
+        int newLast = Math.max(to, lastBin);
+        int[] widened = new int[newLast - newFirst + 1];
+        System.arraycopy(counts, 0, widened, firstBin - newFirst, counts.length);
+        firstBin = newFirst;
+        counts = widened;
+    }
+}
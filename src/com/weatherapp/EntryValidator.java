@@ -0,0 +1,46 @@
+package com.weatherapp;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+// The rules a reading typed into the manual entry form has to pass, shared
+// with bulk imports so a file can't put in anything the form would refuse.
+// Fields come in as text; the message of the exception is fit to show a user.
+public final class EntryValidator {
+    private EntryValidator() {
+    }
+
+    // Location is optional and cleaned of separators; everything else is required
+    public static WeatherEntry validate(String date, String temperature, String humidity, String condition,
+                                        String location) {
+        if (isEmpty(date) || isEmpty(temperature) || isEmpty(humidity) || isEmpty(condition)) {
+            throw new IllegalArgumentException("All fields are required.");
+        }
+        LocalDate day;
+        try {
+            day = LocalDate.ofEpochDay(WeatherDates.parseEpochDay(date));
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Invalid date format. Please use dd-MM-yyyy.");
+        }
+        double temp;
+        int humidityValue;
+        try {
+            temp = Double.parseDouble(temperature);
+            humidityValue = Integer.parseInt(humidity);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Temperature and Humidity must be numbers.");
+        }
+        // parseDouble takes "NaN", "Infinity" and overflows like "1e999"
+        if (!Double.isFinite(temp)) {
+            throw new IllegalArgumentException("Temperature must be a finite number.");
+        }
+        if (humidityValue < 0 || humidityValue > 100) {
+            throw new IllegalArgumentException("Humidity must be between 0 and 100.");
+        }
+        return new WeatherEntry(day, temp, humidityValue, condition, FileManager.cleanLocation(location));
+    }
+
+    private static boolean isEmpty(String field) {
+        return field == null || field.isEmpty();
+    }
+}
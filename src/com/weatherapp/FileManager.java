@@ -2,56 +2,961 @@ package com.weatherapp;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
 
+// Weather log on disk: one binary file per month in weather_data/, a manifest
+// listing them, and a journal of adds and deletes made since the last
+// compaction. Months are loaded independently, so callers can start with the
+// recent ones and page older ones in when they are needed. Day, week and
+// month rollups of the whole log are kept next to the partitions and in
+// memory, so aggregates over any range are available without loading it.
+// A lock file in the data directory keeps a second FileManager, in this
+// process or another, from opening the same log.
 public class FileManager {
-    private static final String FILE_PATH = "weather_data.csv";
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd-MM-yyyy");
+    private static final String DATA_DIR = "weather_data";
+    private static final String MANIFEST = "manifest";
+    private static final String ROLLUPS = "rollups";
+    private static final String LOCK = "lock";
+    private static final String PARTITION_SUFFIX = ".wdb";
+    private static final String JOURNAL_PATH = "weather_data.journal";
+    // Single base files of older versions, split into months on first start
+    private static final String LEGACY_BASE_PATH = "weather_data.wdb";
+    private static final String LEGACY_CSV_PATH = "weather_data.csv";
+    private static final String SEQ_HEADER = "#seq=";
+    private static final int COMPACTION_THRESHOLD = 1000;
+
+    private static final Metrics.Timer LOAD_TIME = Metrics.timer("storage.load");
+    private static final Metrics.Timer SAVE_TIME = Metrics.timer("storage.save");
+    private static final Metrics.Timer APPEND_TIME = Metrics.timer("storage.journal.append");
+    private static final Metrics.Timer COMPACT_TIME = Metrics.timer("storage.compact");
+    private static final Metrics.Timer IMPORT_TIME = Metrics.timer("storage.import");
+    private static final Metrics.Counter RECORDS_APPENDED = Metrics.counter("storage.journal.records");
+    private static final Metrics.Counter TORN_RECORDS = Metrics.counter("storage.journal.torn");
+    // IOExceptions that were logged and otherwise swallowed
+    private static final Metrics.Counter ERRORS = Metrics.counter("storage.errors");
+
+    private final Path dataDir;
+    private final Path journalPath;
+    private final List<Path> legacyPaths;
+    private final int compactionThreshold;
+    private final Object baseLock = new Object();
+    private final Object journalLock = new Object();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "weather-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by baseLock; read without it once set
+    private volatile boolean opened;
+    // Held from open() until close(); null if the lock file couldn't be written
+    private FileLock directoryLock;
+    private long manifestSeq;
+    private final TreeMap<YearMonth, Integer> partitionRows = new TreeMap<>();
+    private int skippedLines;
+    // Rollups of the partition files as of manifestSeq, persisted with them
+    private RollupIndex baseRollups = new RollupIndex();
+    // Rollups of the partitions with the journal on top; updated as records
+    // are appended and internally synchronized
+    private final RollupIndex rollups = new RollupIndex();
+
+    // Bumped after every successful append or save, so readers can tell when to reload
+    private final AtomicLong modifications = new AtomicLong();
+    // Months merged into by importRows() whose rollups are waiting for finishImport()
+    private final TreeSet<YearMonth> importedMonths = new TreeSet<>();
+
+    // Guarded by journalLock
+    private FileChannel journalChannel;
+    private long nextSeq;
+    private int journalRecords;
+    private boolean compactionPending;
+    // The journal's records by month, so a month can be loaded without rereading it
+    private final Map<YearMonth, List<JournalRecord>> journalByMonth = new HashMap<>();
+
+    public FileManager() {
+        this(Paths.get(DATA_DIR), Paths.get(JOURNAL_PATH), COMPACTION_THRESHOLD,
+                Paths.get(LEGACY_BASE_PATH), Paths.get(LEGACY_CSV_PATH));
+    }
+
+    public FileManager(Path dataDir, Path journalPath, int compactionThreshold, Path... legacyPaths) {
+        this.dataDir = dataDir;
+        this.journalPath = journalPath;
+        this.compactionThreshold = compactionThreshold;
+        this.legacyPaths = Arrays.asList(legacyPaths);
+    }
+
+    // Months that have rows on disk or in the journal, oldest first
+    public List<YearMonth> getPartitions() {
+        open();
+        synchronized (baseLock) {
+            TreeSet<YearMonth> months = new TreeSet<>(partitionRows.keySet());
+            synchronized (journalLock) {
+                months.addAll(journalByMonth.keySet());
+            }
+            return new ArrayList<>(months);
+        }
+    }
+
+    // Loads the months from..to inclusive, either bound null for open-ended,
+    // with the journal replayed on top of each.
+    public WeatherStore loadMonths(YearMonth from, YearMonth to) {
+        long start = System.nanoTime();
+        open();
+        synchronized (baseLock) {
+            WeatherStore store = new WeatherStore();
+            for (YearMonth month : getPartitions()) {
+                if ((from == null || !month.isBefore(from)) && (to == null || !month.isAfter(to))) {
+                    store.addAll(readPartition(month));
+                }
+            }
+            LOAD_TIME.recordSince(start);
+            return store;
+        }
+    }
+
+    public WeatherStore loadStore() {
+        return loadMonths(null, null);
+    }
 
     public List<WeatherEntry> loadEntries() {
-        List<WeatherEntry> entries = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(FILE_PATH))) {
+        return loadStore().toEntries();
+    }
+
+    // Aggregates over every row in the log, loaded or not, kept current as
+    // entries are appended and removed
+    public RollupIndex getRollups() {
+        open();
+        return rollups;
+    }
+
+    // Changes whenever rows are appended, removed or saved through this instance
+    public long getModificationCount() {
+        return modifications.get();
+    }
+
+    // Lines of an older CSV base file that could not be parsed when it was migrated
+    public int getSkippedLines() {
+        synchronized (baseLock) {
+            return skippedLines;
+        }
+    }
+
+    // Full rewrite of every partition. Kept for callers that replace the whole
+    // data set at once; single adds and deletes should go through the journal.
+    public void saveEntries(List<WeatherEntry> entries) {
+        saveStore(WeatherStore.of(entries));
+    }
+
+    public void saveStore(WeatherStore store) {
+        long start = System.nanoTime();
+        open();
+        synchronized (baseLock) {
+            synchronized (journalLock) {
+                try {
+                    writePartitions(store, Math.max(0, nextSeq - 1));
+                    closeJournal();
+                    Files.deleteIfExists(journalPath);
+                    journalRecords = 0;
+                    journalByMonth.clear();
+                    rollups.replaceAll(baseRollups);
+                    modifications.incrementAndGet();
+                    SAVE_TIME.recordSince(start);
+                } catch (IOException e) {
+                    ERRORS.increment();
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    public void appendEntry(WeatherEntry entry) {
+        appendRecords(Collections.emptyList(), Collections.singletonList(entry));
+    }
+
+    // Journals several adds with a single write and sync
+    public void appendEntries(List<WeatherEntry> entries) {
+        appendRecords(Collections.emptyList(), entries);
+    }
+
+    public void removeEntry(WeatherEntry entry) {
+        appendRecords(Collections.singletonList(entry), Collections.emptyList());
+    }
+
+    public void removeEntries(List<WeatherEntry> entries) {
+        appendRecords(entries, Collections.emptyList());
+    }
+
+    // Journals an edit of several rows as their deletes followed by the
+    // edited rows, all in one write, so replay never sees half of it
+    public void replaceEntries(List<WeatherEntry> removed, List<WeatherEntry> added) {
+        appendRecords(removed, added);
+    }
+
+    // Bulk loading: merges day-ordered rows straight into their month
+    // partitions instead of journaling them, and leaves the rollups of those
+    // months alone until finishImport(), so a backfill of millions of rows
+    // costs one partition rewrite per month per batch and a single rollup
+    // rebuild. Stores already loaded by other callers don't see the rows.
+    public void importRows(WeatherStore rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        open();
+        synchronized (baseLock) {
+            if (importedMonths.isEmpty()) {
+                // Rollups on disk are stale until finishImport(); without them a
+                // crash in between rebuilds them from the partitions on next start
+                Files.deleteIfExists(dataDir.resolve(ROLLUPS));
+            }
+            int row = 0;
+            while (row < rows.size()) {
+                YearMonth month = YearMonth.from(LocalDate.ofEpochDay(rows.getEpochDay(row)));
+                WeatherSlice added = rows.range((int) month.atDay(1).toEpochDay(), (int) month.atEndOfMonth().toEpochDay());
+                LoadResult partition = readPartitionFile(month);
+                WeatherStore merged = partition.getStore();
+                merged.addAll(added);
+                // Same sequence number, so journal records for the month still replay on top
+                writePartition(month, merged, partition.getSeq());
+                importedMonths.add(month);
+                row = added.getTo();
+            }
+            writeManifest(manifestSeq);
+            IMPORT_TIME.recordSince(start);
+        }
+    }
+
+    // Rebuilds the rollups of every month imported into since the last call
+    // and counts the import as one modification
+    public void finishImport() throws IOException {
+        open();
+        synchronized (baseLock) {
+            if (importedMonths.isEmpty()) {
+                return;
+            }
+            for (YearMonth month : importedMonths) {
+                WeatherStore rows = readPartitionFile(month).getStore();
+                baseRollups.replaceMonth(month, rows);
+                synchronized (journalLock) {
+                    rollups.replaceMonth(month, journalByMonth.containsKey(month) ? readPartition(month) : rows);
+                }
+            }
+            writeRollups(manifestSeq);
+            importedMonths.clear();
+            modifications.incrementAndGet();
+        }
+    }
+
+    // Writes the rows as CSV with a location column, announced by a header line
+    public void exportCsv(Path target, WeatherView entries) throws IOException {
+        writeAtomically(target, out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(CsvLoader.FIELDS_HEADER);
+            writer.newLine();
+            for (int row = 0; row < entries.size(); row++) {
+                writer.write(formatRow(entries, row));
+                writer.newLine();
+            }
+            writer.flush();
+        });
+    }
+
+    public void close() {
+        compactor.shutdown();
+        synchronized (journalLock) {
+            closeJournal();
+        }
+        synchronized (baseLock) {
+            if (directoryLock != null) {
+                try {
+                    directoryLock.channel().close();
+                } catch (IOException e) {
+                    ERRORS.increment();
+                    e.printStackTrace();
+                }
+                directoryLock = null;
+            }
+        }
+    }
+
+    // Reads the manifest, or migrates an older base file if there is none yet,
+    // then indexes the journal by month.
+    private void open() {
+        if (opened) {
+            return;
+        }
+        synchronized (baseLock) {
+            if (opened) {
+                return;
+            }
+            lockDirectory();
+            if (!readManifest()) {
+                migrateLegacy();
+            }
+            loadRollups();
+            List<JournalRecord> records = new ArrayList<>();
+            if (readJournal(records)) {
+                truncateJournal(records);
+            }
+            synchronized (journalLock) {
+                long lastSeq = manifestSeq;
+                int pending = 0;
+                for (JournalRecord record : records) {
+                    if (record.seq <= manifestSeq) {
+                        continue;
+                    }
+                    index(record);
+                    lastSeq = Math.max(lastSeq, record.seq);
+                    pending++;
+                }
+                nextSeq = lastSeq + 1;
+                journalRecords = pending;
+                rollups.replaceAll(baseRollups);
+                for (YearMonth month : journalByMonth.keySet()) {
+                    rollups.replaceMonth(month, readPartition(month));
+                }
+            }
+            opened = true;
+        }
+    }
+
+    // Only one FileManager may use the directory at a time, in this process or
+    // any other: each would keep its own sequence numbers and compact the
+    // journal behind the other's back. Throws IllegalStateException if the
+    // directory is taken.
+    private void lockDirectory() {
+        FileChannel channel = null;
+        try {
+            Files.createDirectories(dataDir);
+            channel = FileChannel.open(dataDir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                channel.close();
+                throw new IllegalStateException(dataDir.toAbsolutePath() + " is in use by another weather application or service");
+            }
+            directoryLock = lock;
+        } catch (IOException e) {
+            // Carry on unguarded rather than refuse to start on a file system without locks
+            ERRORS.increment();
+            e.printStackTrace();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already reported
+                }
+            }
+        }
+    }
+
+    private void appendRecords(List<WeatherEntry> removed, List<WeatherEntry> added) {
+        int count = removed.size() + added.size();
+        if (count == 0) {
+            return;
+        }
+        open();
+        boolean compact;
+        // Days whose rollup lost its minimum or maximum to a delete
+        TreeSet<LocalDate> recount = new TreeSet<>();
+        synchronized (journalLock) {
+            long start = System.nanoTime();
+            try {
+                List<JournalRecord> records = new ArrayList<>(count);
+                StringBuilder lines = new StringBuilder();
+                long seq = nextSeq;
+                for (WeatherEntry entry : removed) {
+                    JournalRecord record = JournalRecord.create(seq++, JournalRecord.DELETE, entry);
+                    records.add(record);
+                    lines.append(record.line).append(System.lineSeparator());
+                }
+                for (WeatherEntry entry : added) {
+                    JournalRecord record = JournalRecord.create(seq++, JournalRecord.ADD, entry);
+                    records.add(record);
+                    lines.append(record.line).append(System.lineSeparator());
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+                FileChannel channel = journalChannel();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                APPEND_TIME.recordSince(start);
+                RECORDS_APPENDED.add(count);
+                nextSeq = seq;
+                journalRecords += count;
+                for (JournalRecord record : records) {
+                    index(record);
+                    if (!record.applyTo(rollups)) {
+                        recount.add(record.entry.getDate());
+                    }
+                }
+                modifications.incrementAndGet();
+            } catch (IOException e) {
+                ERRORS.increment();
+                e.printStackTrace();
+                return;
+            }
+            compact = journalRecords >= compactionThreshold && !compactionPending;
+            if (compact) {
+                compactionPending = true;
+            }
+        }
+        if (!recount.isEmpty()) {
+            recountRollups(recount);
+        }
+        if (compact) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    private void index(JournalRecord record) {
+        if (record.entry != null) {
+            journalByMonth.computeIfAbsent(YearMonth.from(record.entry.getDate()), month -> new ArrayList<>()).add(record);
+        }
+    }
+
+    // Rebuilds the rollups of the given days from their rows. The journal
+    // stays locked meanwhile so no append can slip in between the read and
+    // the update.
+    private void recountRollups(TreeSet<LocalDate> days) {
+        synchronized (baseLock) {
+            synchronized (journalLock) {
+                YearMonth loaded = null;
+                WeatherStore rows = null;
+                for (LocalDate day : days) {
+                    if (!YearMonth.from(day).equals(loaded)) {
+                        loaded = YearMonth.from(day);
+                        rows = readPartition(loaded);
+                    }
+                    rollups.replaceDay((int) day.toEpochDay(), rows.onDay((int) day.toEpochDay()));
+                }
+            }
+        }
+    }
+
+    // Folds the journal into the partitions it touches. Each partition file and
+    // the manifest record the last sequence number they contain, so a crash at
+    // any point only leaves records that are either skipped on replay or still
+    // waiting in the journal.
+    private void compact() {
+        long start = System.nanoTime();
+        synchronized (baseLock) {
+            compactPartitions();
+        }
+        COMPACT_TIME.recordSince(start);
+    }
+
+    private void compactPartitions() {
+        try {
+            long foldedSeq;
+            Map<YearMonth, List<JournalRecord>> folded = new TreeMap<>();
+            synchronized (journalLock) {
+                foldedSeq = nextSeq - 1;
+                journalByMonth.forEach((month, records) -> folded.put(month, new ArrayList<>(records)));
+            }
+
+            for (Map.Entry<YearMonth, List<JournalRecord>> touched : folded.entrySet()) {
+                YearMonth month = touched.getKey();
+                LoadResult partition = readPartitionFile(month);
+                long partitionSeq = Math.max(partition.getSeq(), manifestSeq);
+                WeatherStore store = partition.getStore();
+                for (JournalRecord record : touched.getValue()) {
+                    if (record.seq > partitionSeq && record.seq <= foldedSeq) {
+                        record.applyTo(store);
+                    }
+                }
+                writePartition(month, store, foldedSeq);
+                baseRollups.replaceMonth(month, store);
+            }
+            writeManifest(foldedSeq);
+            // Mid-import the rollups are partly stale and stay off disk until finishImport()
+            if (importedMonths.isEmpty()) {
+                writeRollups(foldedSeq);
+            }
+
+            synchronized (journalLock) {
+                List<JournalRecord> remaining = new ArrayList<>();
+                for (JournalRecord record : readJournal()) {
+                    if (record.seq > foldedSeq) {
+                        remaining.add(record);
+                    }
+                }
+                closeJournal();
+                writeJournal(remaining);
+                journalRecords = remaining.size();
+                Iterator<List<JournalRecord>> months = journalByMonth.values().iterator();
+                while (months.hasNext()) {
+                    List<JournalRecord> records = months.next();
+                    records.removeIf(record -> record.seq <= foldedSeq);
+                    if (records.isEmpty()) {
+                        months.remove();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ERRORS.increment();
+            e.printStackTrace();
+        } finally {
+            synchronized (journalLock) {
+                compactionPending = false;
+            }
+        }
+    }
+
+    // One month's rows with its journal records replayed; call with baseLock held
+    private WeatherStore readPartition(YearMonth month) {
+        LoadResult partition = readPartitionFile(month);
+        long partitionSeq = Math.max(partition.getSeq(), manifestSeq);
+        WeatherStore store = partition.getStore();
+        List<JournalRecord> records;
+        synchronized (journalLock) {
+            records = new ArrayList<>(journalByMonth.getOrDefault(month, Collections.emptyList()));
+        }
+        for (JournalRecord record : records) {
+            if (record.seq > partitionSeq) {
+                record.applyTo(store);
+            }
+        }
+        return store;
+    }
+
+    private LoadResult readPartitionFile(YearMonth month) {
+        Path path = partitionPath(month);
+        try {
+            return WeatherBinaryFormat.read(path);
+        } catch (IOException e) {
+            ERRORS.increment();
+            e.printStackTrace();
+            // Keep the damaged file around instead of compacting over it
+            quarantine(path);
+            return new LoadResult(new WeatherStore(), 0, 0);
+        }
+    }
+
+    private void writePartition(YearMonth month, WeatherView rows, long seq) throws IOException {
+        Path path = partitionPath(month);
+        if (rows.isEmpty()) {
+            Files.deleteIfExists(path);
+            partitionRows.remove(month);
+            return;
+        }
+        Files.createDirectories(dataDir);
+        writeAtomically(path, out -> WeatherBinaryFormat.write(out, rows, seq));
+        partitionRows.put(month, rows.size());
+    }
+
+    // Replaces every partition with the store's rows, split by month
+    private void writePartitions(WeatherStore store, long seq) throws IOException {
+        List<YearMonth> stale = new ArrayList<>(partitionRows.keySet());
+        int row = 0;
+        while (row < store.size()) {
+            YearMonth month = YearMonth.from(LocalDate.ofEpochDay(store.getEpochDay(row)));
+            WeatherSlice rows = store.range((int) month.atDay(1).toEpochDay(), (int) month.atEndOfMonth().toEpochDay());
+            writePartition(month, rows, seq);
+            stale.remove(month);
+            row = rows.getTo();
+        }
+        for (YearMonth month : stale) {
+            writePartition(month, new WeatherStore(), seq);
+        }
+        writeManifest(seq);
+        baseRollups = RollupIndex.of(store);
+        importedMonths.clear();
+        writeRollups(seq);
+    }
+
+    // Reads the rollups written with the manifest, or rebuilds them from the
+    // partitions if they are missing or belong to a different compaction
+    private void loadRollups() {
+        Path path = dataDir.resolve(ROLLUPS);
+        try {
+            RollupIndex stored = RollupIndex.read(path, manifestSeq);
+            if (stored != null) {
+                baseRollups = stored;
+                return;
+            }
+        } catch (IOException e) {
+            ERRORS.increment();
+            e.printStackTrace();
+        }
+        baseRollups = new RollupIndex();
+        if (partitionRows.isEmpty()) {
+            return;
+        }
+        for (YearMonth month : partitionRows.keySet()) {
+            baseRollups.replaceMonth(month, readPartitionFile(month).getStore());
+        }
+        try {
+            writeRollups(manifestSeq);
+        } catch (IOException e) {
+            ERRORS.increment();
+            e.printStackTrace();
+        }
+    }
+
+    private void writeRollups(long seq) throws IOException {
+        Files.createDirectories(dataDir);
+        writeAtomically(dataDir.resolve(ROLLUPS), out -> baseRollups.write(out, seq));
+    }
+
+    // Returns false if there is no manifest yet
+    private boolean readManifest() {
+        try (BufferedReader reader = Files.newBufferedReader(dataDir.resolve(MANIFEST), StandardCharsets.UTF_8)) {
             String line;
             while ((line = reader.readLine()) != null) {
-                String[] data = line.split(",");
-                if (data.length == 4) {
-                    try {
-                        Date date = DATE_FORMAT.parse(data[0]);
-                        double temperature = Double.parseDouble(data[1]);
-                        int humidity = Integer.parseInt(data[2]);
-                        String condition = data[3];
-                        entries.add(new WeatherEntry(date, temperature, humidity, condition));
-                    } catch (ParseException | NumberFormatException e) {
-                        // Ignore malformed lines
+                try {
+                    if (line.startsWith(SEQ_HEADER)) {
+                        manifestSeq = Long.parseLong(line.substring(SEQ_HEADER.length()));
+                        continue;
                     }
+                    String[] data = line.split(",");
+                    if (data.length == 2) {
+                        partitionRows.put(YearMonth.parse(data[0]), Integer.parseInt(data[1]));
+                    }
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    // Ignore malformed lines
                 }
             }
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
         } catch (IOException e) {
-            // File might not exist yet, which is fine
+            ERRORS.increment();
+            e.printStackTrace();
+            return false;
         }
-        return entries;
     }
 
-    public void saveEntries(List<WeatherEntry> entries) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_PATH))) {
-            for (WeatherEntry entry : entries) {
-                String line = String.format("%s,%.1f,%d,%s",
-                        DATE_FORMAT.format(entry.getDate()),
-                        entry.getTemperature(),
-                        entry.getHumidity(),
-                        entry.getCondition());
-                writer.write(line);
+    private void writeManifest(long seq) throws IOException {
+        Files.createDirectories(dataDir);
+        writeAtomically(dataDir.resolve(MANIFEST), out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(SEQ_HEADER + seq);
+            writer.newLine();
+            for (Map.Entry<YearMonth, Integer> partition : partitionRows.entrySet()) {
+                writer.write(partition.getKey() + "," + partition.getValue());
                 writer.newLine();
             }
+            writer.flush();
+        });
+        manifestSeq = seq;
+    }
+
+    // First start with partitions: split the newest older-style base file by month
+    private void migrateLegacy() {
+        for (Path path : legacyPaths) {
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try {
+                LoadResult legacy = path.toString().endsWith(".csv") ? CsvLoader.load(path) : WeatherBinaryFormat.read(path);
+                skippedLines = legacy.getSkippedLines();
+                if (skippedLines > 0) {
+                    System.err.println("Skipped " + skippedLines + " malformed lines in " + path);
+                }
+                writePartitions(legacy.getStore(), legacy.getSeq());
+                return;
+            } catch (IOException e) {
+                ERRORS.increment();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private Path partitionPath(YearMonth month) {
+        return dataDir.resolve(month + PARTITION_SUFFIX);
+    }
+
+    private static void quarantine(Path path) {
+        Path corrupt = path.resolveSibling(path.getFileName() + ".corrupt");
+        try {
+            Files.move(path, corrupt, StandardCopyOption.REPLACE_EXISTING);
+            System.err.println("Moved unreadable " + path + " to " + corrupt);
         } catch (IOException e) {
+            ERRORS.increment();
             e.printStackTrace();
         }
     }
+
+    private List<JournalRecord> readJournal() {
+        List<JournalRecord> records = new ArrayList<>();
+        readJournal(records);
+        return records;
+    }
+
+    // Returns true if the journal ended in a torn record that has to be cut
+    // off before anything else is appended behind it.
+    private boolean readJournal(List<JournalRecord> records) {
+        // Records are UTF-8 whatever the platform charset. Malformed bytes, as
+        // in a write torn inside a character, decode to U+FFFD and fail the CRC.
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(journalPath), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JournalRecord record = JournalRecord.decode(line);
+                if (record == null) {
+                    // A torn or corrupted record can only be the tail of an interrupted write
+                    TORN_RECORDS.increment();
+                    return true;
+                }
+                records.add(record);
+            }
+        } catch (IOException e) {
+            // No journal yet
+        }
+        return false;
+    }
+
+    private void truncateJournal(List<JournalRecord> records) {
+        synchronized (journalLock) {
+            try {
+                closeJournal();
+                writeJournal(records);
+            } catch (IOException e) {
+                ERRORS.increment();
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void writeJournal(List<JournalRecord> records) throws IOException {
+        writeAtomically(journalPath, out -> {
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            for (JournalRecord record : records) {
+                writer.write(record.line);
+                writer.newLine();
+            }
+            writer.flush();
+        });
+    }
+
+    private void writeAtomically(Path target, FileContent content) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                content.writeTo(out);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private FileChannel journalChannel() throws IOException {
+        if (journalChannel == null || !journalChannel.isOpen()) {
+            journalChannel = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return journalChannel;
+    }
+
+    private void closeJournal() {
+        if (journalChannel != null) {
+            try {
+                journalChannel.close();
+            } catch (IOException e) {
+                ERRORS.increment();
+                e.printStackTrace();
+            }
+            journalChannel = null;
+        }
+    }
+
+    // Locale.ROOT, so the decimal point is always the '.' parseLine expects
+    private static String formatLine(WeatherEntry entry) {
+        return String.format(Locale.ROOT, "%s,%.1f,%d,%s",
+                WeatherDates.FORMAT.format(entry.getDate()),
+                entry.getTemperature(),
+                entry.getHumidity(),
+                entry.getCondition());
+    }
+
+    private static String formatRow(WeatherView entries, int row) {
+        return String.format(Locale.ROOT, "%s,%.1f,%d,%s,%s",
+                WeatherDates.format(entries.getEpochDay(row)),
+                entries.getTemperature(row),
+                entries.getHumidity(row),
+                cleanLocation(entries.getLocation(row)),
+                entries.getCondition(row));
+    }
+
+    // Whether a delete of the entry replays onto the row: the journal keeps
+    // one decimal of temperature, so that is all that has to match
+    static boolean sameRow(WeatherView view, int row, WeatherEntry entry) {
+        return Math.round(view.getTemperature(row) * 10) == Math.round(entry.getTemperature() * 10)
+                && view.getHumidity(row) == entry.getHumidity()
+                && view.getLocation(row).equals(entry.getLocation())
+                && view.getCondition(row).equals(entry.getCondition());
+    }
+
+    // Locations are stored between separators, so they may not contain any
+    public static String cleanLocation(String location) {
+        if (location == null) {
+            return "";
+        }
+        // Called for every row written, and almost no location needs the regex
+        for (int i = 0; i < location.length(); i++) {
+            char c = location.charAt(i);
+            if (c == ',' || c == '|' || c == '\r' || c == '\n') {
+                return location.replaceAll("[,|\\r\\n]", " ").trim();
+            }
+        }
+        return location.trim();
+    }
+
+    private static WeatherEntry parseLine(String line, String location) {
+        // The condition goes last and may itself contain commas
+        String[] data = line.split(",", 4);
+        if (data.length == 4) {
+            try {
+                LocalDate date = LocalDate.ofEpochDay(WeatherDates.parseEpochDay(data[0]));
+                double temperature = Double.parseDouble(data[1]);
+                int humidity = Integer.parseInt(data[2]);
+                String condition = data[3];
+                if (humidity < 0 || humidity > 100) {
+                    return null;
+                }
+                return new WeatherEntry(date, temperature, humidity, condition, location);
+            } catch (DateTimeException | NumberFormatException e) {
+                // Ignore malformed lines
+            }
+        }
+        return null;
+    }
+
+    // One journal line: "<seq>|<A or D>@<location>|<csv row>|<crc32>". Deletes
+    // are tombstones carrying the full row so replay can drop a matching entry.
+    // Records written before locations were kept have no "@<location>".
+    private static final class JournalRecord {
+        static final char ADD = 'A';
+        static final char DELETE = 'D';
+
+        final long seq;
+        final char type;
+        // Null if the row no longer parses; such records replay as no-ops
+        final WeatherEntry entry;
+        final String line;
+
+        private JournalRecord(long seq, char type, WeatherEntry entry, String line) {
+            this.seq = seq;
+            this.type = type;
+            this.entry = entry;
+            this.line = line;
+        }
+
+        static JournalRecord create(long seq, char type, WeatherEntry entry) {
+            String payload = formatLine(entry);
+            String location = cleanLocation(entry.getLocation());
+            String body = seq + "|" + type + "@" + location + "|" + payload;
+            // Keep the row as it will read back from disk, temperature rounded and all
+            return new JournalRecord(seq, type, parseLine(payload, location), body + "|" + Long.toHexString(checksum(body)));
+        }
+
+        static JournalRecord decode(String line) {
+            int crcSeparator = line.lastIndexOf('|');
+            if (crcSeparator < 0) {
+                return null;
+            }
+            String body = line.substring(0, crcSeparator);
+            try {
+                if (Long.parseLong(line.substring(crcSeparator + 1), 16) != checksum(body)) {
+                    return null;
+                }
+                String[] parts = body.split("\\|", 3);
+                if (parts.length != 3 || parts[1].isEmpty() || (parts[1].length() > 1 && parts[1].charAt(1) != '@')) {
+                    return null;
+                }
+                String location = parts[1].length() > 1 ? parts[1].substring(2) : "";
+                return new JournalRecord(Long.parseLong(parts[0]), parts[1].charAt(0), parseLine(parts[2], location), line);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        // Returns false if the record left a day's rollup needing a recount
+        boolean applyTo(RollupIndex rollups) {
+            if (entry == null) {
+                return true;
+            }
+            int day = (int) entry.getDate().toEpochDay();
+            if (type == ADD) {
+                rollups.add(day, entry.getTemperature(), entry.getHumidity(), entry.getCondition());
+                return true;
+            }
+            return type != DELETE || rollups.remove(day, entry.getTemperature(), entry.getHumidity(), entry.getCondition());
+        }
+
+        void applyTo(WeatherStore store) {
+            if (entry == null) {
+                return;
+            }
+            if (type == ADD) {
+                store.add(entry);
+            } else if (type == DELETE) {
+                // Only rows of the same day can match, and those are adjacent
+                WeatherSlice day = store.onDay((int) entry.getDate().toEpochDay());
+                for (int i = 0; i < day.size(); i++) {
+                    if (sameRow(day, i, entry)) {
+                        store.remove(day.sourceRow(i));
+                        break;
+                    }
+                }
+            }
+        }
+
+        private static long checksum(String body) {
+            CRC32 crc = new CRC32();
+            crc.update(body.getBytes(StandardCharsets.UTF_8));
+            return crc.getValue();
+        }
+    }
+
+    private interface FileContent {
+        void writeTo(OutputStream out) throws IOException;
+    }
 }
@@ -0,0 +1,199 @@
+package com.weatherapp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// City name to coordinates cache. Lookups go through a bounded in-memory LRU;
+// every new result is also appended to a file so the cache survives restarts.
+public class GeocodeCache {
+    private static final String FILE_PATH = "geocode_cache.csv";
+    private static final int DEFAULT_MAX_SIZE = 256;
+    private static final Duration DEFAULT_TTL = Duration.ofDays(30);
+    private static final Metrics.Counter HITS = Metrics.counter("geocode.cache.hits");
+    private static final Metrics.Counter MISSES = Metrics.counter("geocode.cache.misses");
+
+    private final Path path;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Coordinates> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private int linesOnDisk;
+
+    public GeocodeCache() {
+        this(Paths.get(FILE_PATH), DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    // A null path keeps the cache in memory only
+    public GeocodeCache(Path path, int maxSize, Duration ttl) {
+        this.path = path;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.entries = new LinkedHashMap<String, Coordinates>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Coordinates> eldest) {
+                return size() > GeocodeCache.this.maxSize;
+            }
+        };
+        load();
+    }
+
+    public static String normalize(String city) {
+        return city.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized Coordinates get(String city) {
+        String key = normalize(city);
+        Coordinates coordinates = entries.get(key);
+        if (coordinates != null && isExpired(coordinates)) {
+            entries.remove(key);
+            coordinates = null;
+        }
+        if (coordinates == null) {
+            misses.incrementAndGet();
+            MISSES.increment();
+        } else {
+            hits.incrementAndGet();
+            HITS.increment();
+        }
+        return coordinates;
+    }
+
+    public synchronized void put(String city, double latitude, double longitude) {
+        String key = normalize(city);
+        Coordinates coordinates = new Coordinates(latitude, longitude, System.currentTimeMillis());
+        entries.put(key, coordinates);
+        if (path == null) {
+            return;
+        }
+        if (linesOnDisk >= 2 * maxSize) {
+            rewrite();
+        } else {
+            try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(formatLine(key, coordinates));
+                writer.newLine();
+                linesOnDisk++;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private boolean isExpired(Coordinates coordinates) {
+        return System.currentTimeMillis() - coordinates.getFetchedAt() > ttlMillis;
+    }
+
+    private void load() {
+        if (path == null) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesOnDisk++;
+                // latitude,longitude,fetchedAt,name; the name goes last since it may contain commas
+                String[] data = line.split(",", 4);
+                if (data.length == 4) {
+                    try {
+                        Coordinates coordinates = new Coordinates(Double.parseDouble(data[0]),
+                                Double.parseDouble(data[1]), Long.parseLong(data[2]));
+                        if (!isExpired(coordinates)) {
+                            entries.put(data[3], coordinates);
+                        }
+                    } catch (NumberFormatException e) {
+                        // Ignore malformed lines
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // File might not exist yet, which is fine
+        }
+    }
+
+    // Later lines win on load, so the file only needs compacting once it has
+    // grown well past the number of live entries. The compacted file replaces
+    // the old one in a single move, so a crash leaves one or the other.
+    private void rewrite() {
+        Path temp = null;
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Coordinates> entry : entries.entrySet()) {
+                    writer.write(formatLine(entry.getKey(), entry.getValue()));
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            linesOnDisk = entries.size();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Nothing more to clean up
+                }
+            }
+        }
+    }
+
+    private static String formatLine(String key, Coordinates coordinates) {
+        return coordinates.getLatitude() + "," + coordinates.getLongitude() + "," + coordinates.getFetchedAt() + "," + key;
+    }
+
+    public static final class Coordinates {
+        private final double latitude;
+        private final double longitude;
+        private final long fetchedAt;
+
+        public Coordinates(double latitude, double longitude, long fetchedAt) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.fetchedAt = fetchedAt;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.weatherapp;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Headless collector: polls a fixed set of cities on a schedule and hands new
+// readings to a writer thread through a bounded queue, which journals them
+// in batches, through a ConcurrentWeatherStore if one is given so readers of
+// it see them. Runs without Swing; see Main for the command line entry point.
+public class IngestionService {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int WRITE_BATCH_SIZE = 256;
+    private static final double JITTER = 0.1;
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final WeatherEntry END_OF_STREAM = new WeatherEntry(null, 0, 0, null);
+    // Batches that failed to write; their readings are fetched again on the next poll
+    private static final Metrics.Counter WRITE_ERRORS = Metrics.counter("ingest.write.errors");
+
+    private final WeatherApiClient client;
+    private final FileManager fileManager;
+    // Null to write to the FileManager only
+    private final ConcurrentWeatherStore store;
+    private final List<String> cities;
+    private final Duration interval;
+    private final int parallelism;
+
+    private final BlockingQueue<WeatherEntry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // The log holds one reading per city per day, so the first reading of a
+    // day is kept and later polls that day only fill in cities that failed.
+    // Holds location@day keys for today and yesterday, seeded from the log on start.
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "weather-ingest-poller"));
+    private final Thread writer = new Thread(this::writeLoop, "weather-ingest-writer");
+
+    private int consecutiveFailures;
+    private volatile boolean running;
+
+    public IngestionService(WeatherApiClient client, FileManager fileManager, List<String> cities, Duration interval, int parallelism) {
+        this(client, fileManager, null, cities, interval, parallelism);
+    }
+
+    // The store must journal to the same FileManager
+    public IngestionService(WeatherApiClient client, FileManager fileManager, ConcurrentWeatherStore store,
+                            List<String> cities, Duration interval, int parallelism) {
+        this.client = client;
+        this.fileManager = fileManager;
+        this.store = store;
+        this.cities = Collections.unmodifiableList(new ArrayList<>(cities));
+        this.interval = interval;
+        this.parallelism = parallelism;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        seedSeen((int) LocalDate.now().toEpochDay());
+        writer.start();
+        long initialDelay = ThreadLocalRandom.current().nextLong((long) (interval.toMillis() * JITTER) + 1);
+        poller.schedule(this::poll, initialDelay, TimeUnit.MILLISECONDS);
+    }
+
+    // Stops polling, waits for an in-progress poll, then lets the writer flush
+    // everything still queued before returning.
+    public synchronized void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        poller.shutdownNow();
+        poller.awaitTermination(client.getTimeout().toMillis() * 2, TimeUnit.MILLISECONDS);
+        queue.put(END_OF_STREAM);
+        writer.join();
+        fileManager.close();
+    }
+
+    private void poll() {
+        if (!running) {
+            return;
+        }
+        long delay;
+        try {
+            WeatherApiClient.BatchResult result = client.fetchWeatherBatchAsync(cities, parallelism).get();
+            int day = (int) LocalDate.now().toEpochDay();
+            pruneSeen(day);
+            int queued = 0;
+            for (Map.Entry<String, WeatherEntry> fetched : result.getEntries().entrySet()) {
+                WeatherEntry entry = fetched.getValue();
+                if (seen.add(key(entry))) {
+                    queue.put(entry);
+                    queued++;
+                } else {
+                    System.out.println("Dropped the reading for " + entry.getLocation() + ": the log already has one for "
+                            + entry.getDate().format(WeatherDates.FORMAT));
+                }
+            }
+            for (Map.Entry<String, Throwable> failure : result.getFailures().entrySet()) {
+                System.err.println("Failed to fetch weather for " + failure.getKey() + ": " + failure.getValue().getMessage());
+            }
+            System.out.println("Polled " + cities.size() + " cities: " + queued + " new, "
+                    + (result.getEntries().size() - queued) + " already logged today, " + result.getFailures().size() + " failed");
+            if (result.getEntries().isEmpty() && !result.getFailures().isEmpty()) {
+                delay = backoff();
+            } else {
+                consecutiveFailures = 0;
+                delay = jitter(interval);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            System.err.println("Weather poll failed: " + e.getMessage());
+            delay = backoff();
+        }
+        if (running) {
+            poller.schedule(this::poll, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void writeLoop() {
+        List<WeatherEntry> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        boolean done = false;
+        while (!done) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, WRITE_BATCH_SIZE - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                done = true;
+            }
+            int end = batch.indexOf(END_OF_STREAM);
+            if (end >= 0) {
+                batch.subList(end, batch.size()).clear();
+                done = true;
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    if (store != null) {
+                        store.addAll(batch);
+                    } else {
+                        fileManager.appendEntries(batch);
+                    }
+                } catch (RuntimeException e) {
+                    // Keep the writer alive, or the poller blocks on a full queue for good
+                    WRITE_ERRORS.increment();
+                    System.err.println("Failed to write " + batch.size() + " weather readings: " + e);
+                    for (WeatherEntry entry : batch) {
+                        seen.remove(key(entry));
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    // Exponential backoff on consecutive failed polls, capped at MAX_BACKOFF
+    private long backoff() {
+        consecutiveFailures++;
+        long delay = Math.min(interval.toMillis() << Math.min(consecutiveFailures, 16), MAX_BACKOFF.toMillis());
+        return jitter(Duration.ofMillis(Math.max(delay, interval.toMillis())));
+    }
+
+    // Spreads polls by up to +/-10% so several collectors don't hit the API in lockstep
+    private static long jitter(Duration delay) {
+        long millis = delay.toMillis();
+        long spread = (long) (millis * JITTER);
+        if (spread == 0) {
+            return millis;
+        }
+        return millis + ThreadLocalRandom.current().nextLong(-spread, spread + 1);
+    }
+
+    // Readings from today and yesterday already in the log, so a restart on
+    // the same day doesn't ingest them again
+    private void seedSeen(int today) {
+        int from = today - 1;
+        WeatherView recent = store != null
+                ? store.snapshot().range(from, Integer.MAX_VALUE, null)
+                : fileManager.loadMonths(YearMonth.from(LocalDate.ofEpochDay(from)), null).range(from, Integer.MAX_VALUE);
+        for (int row = 0; row < recent.size(); row++) {
+            seen.add(key(recent.getLocation(row), recent.getEpochDay(row)));
+        }
+    }
+
+    private static String key(WeatherEntry entry) {
+        return key(entry.getLocation(), (int) entry.getDate().toEpochDay());
+    }
+
+    private static String key(String location, int epochDay) {
+        return GeocodeCache.normalize(location) + "@" + epochDay;
+    }
+
+    private void pruneSeen(int today) {
+        for (Iterator<String> it = seen.iterator(); it.hasNext(); ) {
+            String key = it.next();
+            int day = Integer.parseInt(key.substring(key.lastIndexOf('@') + 1));
+            if (day < today - 1) {
+                it.remove();
+            }
+        }
+    }
+}
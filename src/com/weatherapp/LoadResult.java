@@ -0,0 +1,28 @@
+package com.weatherapp;
+
+// What a loader produced from a base file: the rows, how many lines it had to
+// skip and the journal sequence number the file was written at.
+public final class LoadResult {
+    private final WeatherStore store;
+    private final int skippedLines;
+    private final long seq;
+
+    LoadResult(WeatherStore store, int skippedLines, long seq) {
+        this.store = store;
+        this.skippedLines = skippedLines;
+        this.seq = seq;
+    }
+
+    public WeatherStore getStore() {
+        return store;
+    }
+
+    public int getSkippedLines() {
+        return skippedLines;
+    }
+
+    // Journal sequence number recorded in the file, or 0
+    public long getSeq() {
+        return seq;
+    }
+}
@@ -0,0 +1,90 @@
+package com.weatherapp;
+
+// The rows of one location within a WeatherStore, read through the store's
+// per-location index: rows[from..to) are store positions in day order. Like
+// WeatherSlice it copies nothing and goes stale once the store is mutated.
+public class LocationSlice implements WeatherView {
+    private final WeatherStore store;
+    private final int[] rows;
+    private final int from;
+    private final int to;
+
+    LocationSlice(WeatherStore store, int[] rows, int from, int to) {
+        this.store = store;
+        this.rows = rows;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public int getEpochDay(int row) {
+        return store.getEpochDay(toStoreRow(row));
+    }
+
+    @Override
+    public double getTemperature(int row) {
+        return store.getTemperature(toStoreRow(row));
+    }
+
+    @Override
+    public int getHumidity(int row) {
+        return store.getHumidity(toStoreRow(row));
+    }
+
+    @Override
+    public int getConditionCode(int row) {
+        return store.getConditionCode(toStoreRow(row));
+    }
+
+    @Override
+    public String getCondition(int row) {
+        return store.getCondition(toStoreRow(row));
+    }
+
+    @Override
+    public int conditionCount() {
+        return store.conditionCount();
+    }
+
+    @Override
+    public String conditionName(int code) {
+        return store.conditionName(code);
+    }
+
+    @Override
+    public int getLocationCode(int row) {
+        return store.getLocationCode(toStoreRow(row));
+    }
+
+    @Override
+    public String getLocation(int row) {
+        return store.getLocation(toStoreRow(row));
+    }
+
+    @Override
+    public int locationCount() {
+        return store.locationCount();
+    }
+
+    @Override
+    public String locationName(int code) {
+        return store.locationName(code);
+    }
+
+    @Override
+    public int sourceRow(int row) {
+        return toStoreRow(row);
+    }
+
+    private int toStoreRow(int row) {
+        if (row < 0 || row >= to - from) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + (to - from));
+        }
+        return rows[from + row];
+    }
+}
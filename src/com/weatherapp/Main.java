@@ -1,14 +1,265 @@
 package com.weatherapp;
 
-import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Main {
+    // The log keeps one reading per city per day, so polling more often only
+    // retries cities that failed earlier in the day
+    private static final long DEFAULT_POLL_SECONDS = 6 * 3600;
+    private static final int INGEST_PARALLELISM = 4;
+    private static final int DEFAULT_PORT = 8080;
+
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                new WeatherApplication().setVisible(true);
+        Metrics.registerMBean();
+        // -Dweatherapp.metrics.dumpSeconds=<n> prints the metrics every n seconds
+        long dumpSeconds = Long.getLong("weatherapp.metrics.dumpSeconds", 0);
+        if (dumpSeconds > 0) {
+            Metrics.startReporting(Duration.ofSeconds(dumpSeconds));
+        }
+        if (args.length > 0 && args[0].equals("ingest")) {
+            exitOnFailure(runIngestion(args));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            exitOnFailure(runServer(args));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("import")) {
+            exitOnFailure(runImport(args));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("export")) {
+            exitOnFailure(runExport(args));
+            return;
+        }
+        WeatherApplication.launch();
+    }
+
+    // ingest [--interval=<seconds>] <city>[;<city>...] ...
+    // Returns the exit status; on success polling carries on in the background
+    private static int runIngestion(String[] args) {
+        long intervalSeconds = DEFAULT_POLL_SECONDS;
+        List<String> cities = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--interval=")) {
+                try {
+                    intervalSeconds = Long.parseLong(args[i].substring("--interval=".length()));
+                } catch (NumberFormatException e) {
+                    return usage();
+                }
+            } else {
+                cities.addAll(WeatherApiClient.parseCities(args[i]));
+            }
+        }
+        if (cities.isEmpty() || intervalSeconds <= 0) {
+            return usage();
+        }
+
+        IngestionService service = new IngestionService(new WeatherApiClient(), new FileManager(), cities,
+                Duration.ofSeconds(intervalSeconds), INGEST_PARALLELISM);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                service.shutdown();
+                System.out.print(Metrics.dump());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "weather-ingest-shutdown"));
+        try {
+            service.start();
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+        System.out.println("Polling " + cities + " every " + intervalSeconds + "s; press Ctrl+C to stop.");
+        return 0;
+    }
+
+    // serve [--port=<port>] [--interval=<seconds>] [<city>[;<city>...] ...]
+    // Cities, if given, are also ingested in the same process, and the API
+    // picks up what they write. Returns the exit status; on success the
+    // server carries on in the background.
+    private static int runServer(String[] args) {
+        int port = DEFAULT_PORT;
+        long intervalSeconds = DEFAULT_POLL_SECONDS;
+        List<String> cities = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--port=")) {
+                    port = Integer.parseInt(args[i].substring("--port=".length()));
+                } else if (args[i].startsWith("--interval=")) {
+                    intervalSeconds = Long.parseLong(args[i].substring("--interval=".length()));
+                } else {
+                    cities.addAll(WeatherApiClient.parseCities(args[i]));
+                }
+            }
+        } catch (NumberFormatException e) {
+            return usage();
+        }
+        if (port < 0 || port > 65535 || intervalSeconds <= 0) {
+            return usage();
+        }
+
+        // Responses go out as headers and then chunks; with Nagle's algorithm
+        // on, each small one waits out the client's delayed ACK. Read when the
+        // JDK server first loads, so set before it is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        FileManager fileManager = new FileManager();
+        // Ingestion writes through the store the server reads, so new rows are served as they arrive
+        ConcurrentWeatherStore store;
+        try {
+            store = new ConcurrentWeatherStore(fileManager);
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            return 1;
+        }
+        WeatherQueryServer server = new WeatherQueryServer(store, new InetSocketAddress(port));
+        IngestionService service = cities.isEmpty() ? null : new IngestionService(new WeatherApiClient(), fileManager, store,
+                cities, Duration.ofSeconds(intervalSeconds), INGEST_PARALLELISM);
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Could not start the server on port " + port + ": " + e.getMessage());
+            fileManager.close();
+            return 1;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                if (service != null) {
+                    service.shutdown();
+                } else {
+                    fileManager.close();
+                }
+                System.out.print(Metrics.dump());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "weather-serve-shutdown"));
+        if (service != null) {
+            service.start();
+        }
+        System.out.println("Serving the weather API on port " + server.getPort() + (service != null ? ", polling " + cities : "")
+                + "; press Ctrl+C to stop.");
+        return 0;
+    }
+
+    // Exits only once the command has closed its FileManager, so the lock
+    // and any buffered writes are released first
+    private static void exitOnFailure(int status) {
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    // import [--format=csv|ndjson] [--batch=<rows>] <file>
+    // Returns the exit status
+    private static int runImport(String[] args) {
+        Path source = null;
+        BulkFormat format = null;
+        int batchSize = BulkImporter.DEFAULT_BATCH_SIZE;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--format=")) {
+                    format = BulkFormat.parse(args[i].substring("--format=".length()));
+                } else if (args[i].startsWith("--batch=")) {
+                    batchSize = Integer.parseInt(args[i].substring("--batch=".length()));
+                } else {
+                    source = Paths.get(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return usage();
+        }
+        if (source == null || batchSize <= 0) {
+            return usage();
+        }
+
+        FileManager fileManager = new FileManager();
+        try {
+            BulkImporter.Status status = new BulkImporter(fileManager, batchSize).importFile(source,
+                    format != null ? format : BulkFormat.forPath(source),
+                    progress -> System.out.printf("%3d%%  %,d rows imported, %,d rejected, %,.0f rows/s%n",
+                            progress.getPercent(), progress.getImported(), progress.getRejected(),
+                            progress.getRowsPerSecond()));
+            for (String error : status.getErrors()) {
+                System.err.println(error);
+            }
+            if (status.getRejected() > status.getErrors().size()) {
+                System.err.println("... and " + (status.getRejected() - status.getErrors().size()) + " more rejected lines");
             }
-        });
+            System.out.printf("Imported %,d rows from %s in %.1f s%n", status.getImported(), source,
+                    status.getElapsedNanos() / 1e9);
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Import of " + source + " failed: " + e.getMessage());
+            return 1;
+        } finally {
+            fileManager.close();
+        }
+        return 0;
+    }
+
+    // export [--from=dd-MM-yyyy] [--to=dd-MM-yyyy] [--city=<name>] [--format=csv|ndjson] <file>
+    // Returns the exit status
+    private static int runExport(String[] args) {
+        Path target = null;
+        BulkFormat format = null;
+        int startDay = Integer.MIN_VALUE;
+        int endDay = Integer.MAX_VALUE;
+        String city = null;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--from=")) {
+                    startDay = WeatherDates.parseEpochDay(args[i].substring("--from=".length()));
+                } else if (args[i].startsWith("--to=")) {
+                    endDay = WeatherDates.parseEpochDay(args[i].substring("--to=".length()));
+                } else if (args[i].startsWith("--city=")) {
+                    city = args[i].substring("--city=".length());
+                } else if (args[i].startsWith("--format=")) {
+                    format = BulkFormat.parse(args[i].substring("--format=".length()));
+                } else {
+                    target = Paths.get(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return usage();
+        }
+        if (target == null) {
+            return usage();
+        }
+
+        FileManager fileManager = new FileManager();
+        long start = System.nanoTime();
+        try {
+            long rows = new BulkExporter(fileManager).export(target, format != null ? format : BulkFormat.forPath(target),
+                    startDay, endDay, city,
+                    (month, done, count, written) -> System.out.printf("%3d%%  %s, %,d rows written%n",
+                            done * 100 / count, month, written));
+            System.out.printf("Exported %,d rows to %s in %.1f s%n", rows, target, (System.nanoTime() - start) / 1e9);
+        } catch (IOException | IllegalStateException e) {
+            System.err.println("Export to " + target + " failed: " + e.getMessage());
+            return 1;
+        } finally {
+            fileManager.close();
+        }
+        return 0;
+    }
+
+    // Returns the exit status for a bad command line
+    private static int usage() {
+        System.err.println("Usage: java com.weatherapp.Main ingest [--interval=<seconds>] <city>[;<city>...]");
+        System.err.println("       java com.weatherapp.Main serve [--port=<port>] [--interval=<seconds>] [<city>[;<city>...]]");
+        System.err.println("       java com.weatherapp.Main import [--format=csv|ndjson] [--batch=<rows>] <file>");
+        System.err.println("       java com.weatherapp.Main export [--from=dd-MM-yyyy] [--to=dd-MM-yyyy] [--city=<name>] [--format=csv|ndjson] <file>");
+        return 2;
     }
 }
@@ -0,0 +1,255 @@
+package com.weatherapp;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters and latency histograms for the hot paths, readable
+// over JMX and as a periodic text dump. Recording is a few LongAdder updates
+// with no locks or allocation, so it stays on in production; callers look up
+// their Counter or Timer once and keep it in a static field. Setting
+// -Dweatherapp.metrics=false turns recording into a constant-false branch
+// the JIT removes, which is how the overhead benchmark gets its baseline.
+public final class Metrics {
+    static final boolean ENABLED = !"false".equals(System.getProperty("weatherapp.metrics"));
+    static final String OBJECT_NAME = "com.weatherapp:type=Metrics";
+
+    private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    // Registers the MXBean with the platform server; safe to call more than once
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+            }
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Prints a dump to standard output at the given interval until exit
+    public static synchronized void startReporting(Duration interval) {
+        if (reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "weather-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        reporter.scheduleAtFixedRate(() -> System.out.print(dump()), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // One line per metric, sorted by name, timers in milliseconds
+    public static String dump() {
+        StringBuilder text = new StringBuilder("Metrics at ").append(LocalDateTime.now().withNano(0)).append(System.lineSeparator());
+        for (Map.Entry<String, Counter> counter : new TreeMap<>(counters).entrySet()) {
+            text.append(String.format("  %-32s %d%n", counter.getKey(), counter.getValue().get()));
+        }
+        for (Map.Entry<String, Timer> timer : new TreeMap<>(timers).entrySet()) {
+            Snapshot snapshot = timer.getValue().snapshot();
+            text.append(String.format("  %-32s count=%d mean=%.3f p50=%.3f p99=%.3f max=%.3f%n", timer.getKey(),
+                    snapshot.getCount(), snapshot.getMeanMillis(), snapshot.getP50Millis(), snapshot.getP99Millis(),
+                    snapshot.getMaxMillis()));
+        }
+        return text.toString();
+    }
+
+    public static void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Timer timer : timers.values()) {
+            timer.reset();
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder count = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+
+        public void add(long amount) {
+            if (ENABLED) {
+                count.add(amount);
+            }
+        }
+
+        public long get() {
+            return count.sum();
+        }
+
+        void reset() {
+            count.reset();
+        }
+    }
+
+    // Latencies in nanoseconds, bucketed by power of two (bucket i holds
+    // [2^(i-1), 2^i)), so a percentile is exact to within a factor of two.
+    // Good enough to tell a 2 ms save from a 200 ms one, at the cost of one
+    // bucket index per recording.
+    public static final class Timer {
+        private static final int BUCKETS = 64;
+
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        private Timer() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        // For callers that took System.nanoTime() before the work
+        public void recordSince(long startNanos) {
+            if (ENABLED) {
+                record(System.nanoTime() - startNanos);
+            }
+        }
+
+        public void record(long nanos) {
+            if (!ENABLED) {
+                return;
+            }
+            nanos = Math.max(0, nanos);
+            total.add(nanos);
+            max.accumulate(nanos);
+                buckets[64 - Long.numberOfLeadingZeros(nanos)].increment();
+        }
+
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                seen += counts[i];
+            }
+            return new Snapshot(seen, total.sum(), max.get(), percentile(counts, seen, 50), percentile(counts, seen, 99));
+        }
+
+        // Upper edge of the bucket holding the nearest-rank percentile
+        private static long percentile(long[] counts, long seen, double percent) {
+            if (seen == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100 * seen));
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    return i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        void reset() {
+            total.reset();
+            max.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+
+    // A timer's figures at one moment, in milliseconds
+    public static final class Snapshot {
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long p50Nanos;
+        private final long p99Nanos;
+
+        Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p99Nanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            // The top bucket's edge can overshoot the largest value seen
+            this.p50Nanos = Math.min(p50Nanos, maxNanos);
+            this.p99Nanos = Math.min(p99Nanos, maxNanos);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        public double getP50Millis() {
+            return p50Nanos / 1e6;
+        }
+
+        public double getP99Millis() {
+            return p99Nanos / 1e6;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+    }
+
+    private static final class Bean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> values = new TreeMap<>();
+            for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+                values.put(counter.getKey(), counter.getValue().get());
+            }
+            return values;
+        }
+
+        @Override
+        public Map<String, Snapshot> getTimers() {
+            Map<String, Snapshot> values = new TreeMap<>();
+            for (Map.Entry<String, Timer> timer : timers.entrySet()) {
+                values.put(timer.getKey(), timer.getValue().snapshot());
+            }
+            return values;
+        }
+
+        @Override
+        public String dump() {
+            return Metrics.dump();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.weatherapp;
+
+import java.util.Map;
+
+// What Metrics publishes over JMX, under com.weatherapp:type=Metrics
+public interface MetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Metrics.Snapshot> getTimers();
+
+    // The same text as the periodic dump
+    String dump();
+
+    void reset();
+}
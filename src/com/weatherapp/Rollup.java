@@ -0,0 +1,168 @@
+package com.weatherapp;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Aggregates of the readings in one bucket of a RollupIndex: a day, a week
+// (Monday to Sunday) or a calendar month, starting at getStartDay(). Buckets
+// merge by adding counts and combining distributions, so any set of them
+// combines into one summary.
+public class Rollup implements WeatherSummary {
+    private final int startDay;
+    // Condition names by code, shared with the index that produced the bucket
+    private final List<String> conditionNames;
+    private long count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private int[] conditionCounts;
+    private final Distribution temperatures = Distribution.temperatures();
+    private final Distribution humidities = Distribution.humidities();
+
+    Rollup(int startDay, List<String> conditionNames) {
+        this.startDay = startDay;
+        this.conditionNames = conditionNames;
+        this.conditionCounts = new int[conditionNames.size()];
+    }
+
+    Rollup(Rollup other, List<String> conditionNames) {
+        this(other.startDay, conditionNames);
+        merge(other);
+    }
+
+    public int getStartDay() {
+        return startDay;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    @Override
+    public double getAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Override
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    @Override
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    // Number of distinct condition codes; codes run from 0 to conditionCount() - 1
+    public int conditionCount() {
+        return conditionNames.size();
+    }
+
+    public String conditionName(int code) {
+        return conditionNames.get(code);
+    }
+
+    // Readings in the bucket with the given condition code
+    public int countOf(int code) {
+        return code < conditionCounts.length ? conditionCounts[code] : 0;
+    }
+
+    @Override
+    public Distribution getTemperatures() {
+        return temperatures;
+    }
+
+    @Override
+    public Distribution getHumidities() {
+        return humidities;
+    }
+
+    @Override
+    public String getMostCommonCondition() {
+        int best = -1;
+        for (int code = 0; code < conditionCounts.length; code++) {
+            if (conditionCounts[code] > 0 && (best < 0 || conditionCounts[code] > conditionCounts[best])) {
+                best = code;
+            }
+        }
+        return best < 0 ? null : conditionNames.get(best);
+    }
+
+    void add(double temperature, int humidity, int conditionCode) {
+        count++;
+        sum += temperature;
+        min = Math.min(min, temperature);
+        max = Math.max(max, temperature);
+        ensureCodes(conditionCode + 1);
+        conditionCounts[conditionCode]++;
+        temperatures.add(temperature);
+        humidities.add(humidity);
+    }
+
+    // Takes the reading out of the totals. Returns false if it was the
+    // bucket's minimum or maximum, which only a rescan of the rows can restore.
+    boolean remove(double temperature, int humidity, int conditionCode) {
+        count--;
+        sum -= temperature;
+        temperatures.remove(temperature);
+        humidities.remove(humidity);
+        if (conditionCode < conditionCounts.length && conditionCounts[conditionCode] > 0) {
+            conditionCounts[conditionCode]--;
+        }
+        if (count <= 0) {
+            clear();
+            return true;
+        }
+        return temperature != min && temperature != max;
+    }
+
+    // Both buckets must code conditions the same way
+    void merge(Rollup other) {
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        ensureCodes(other.conditionCounts.length);
+        for (int code = 0; code < other.conditionCounts.length; code++) {
+            conditionCounts[code] += other.conditionCounts[code];
+        }
+        temperatures.merge(other.temperatures);
+        humidities.merge(other.humidities);
+    }
+
+    void clear() {
+        count = 0;
+        sum = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        Arrays.fill(conditionCounts, 0);
+        temperatures.clear();
+        humidities.clear();
+    }
+
+    void restore(long count, double sum, double min, double max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    void setConditionCount(int code, int n) {
+        ensureCodes(code + 1);
+        conditionCounts[code] = n;
+    }
+
+    private void ensureCodes(int required) {
+        if (conditionCounts.length < required) {
+            conditionCounts = Arrays.copyOf(conditionCounts, Math.max(required, conditionNames.size()));
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.weatherapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Pre-aggregated readings per day, week and month. Adds update one bucket at
+// each level; deletes do too unless they take out a bucket's minimum or
+// maximum, in which case the caller hands over that day's rows to recount.
+// A range query combines whole months, whole weeks and the odd days at its
+// edges, so its cost depends on how many buckets it spans rather than on
+// how many readings they hold.
+//
+// Only the day buckets are persisted; weeks and months are summed from them
+// on load. The index is safe to share between threads.
+public class RollupIndex {
+    public enum Granularity {
+        DAY, WEEK, MONTH
+    }
+
+    private static final int MAGIC = 0x57524c50;
+    // Version 2 added the distributions; older files are rebuilt
+    private static final short VERSION = 2;
+
+    private final List<String> conditions = new ArrayList<>();
+    private final Map<String, Integer> conditionCodes = new HashMap<>();
+    // Buckets by the epoch day they start on
+    private final TreeMap<Integer, Rollup> days = new TreeMap<>();
+    private final TreeMap<Integer, Rollup> weeks = new TreeMap<>();
+    private final TreeMap<Integer, Rollup> months = new TreeMap<>();
+
+    public static RollupIndex of(WeatherView rows) {
+        RollupIndex index = new RollupIndex();
+        for (int row = 0; row < rows.size(); row++) {
+            index.add(rows.getEpochDay(row), rows.getTemperature(row), rows.getHumidity(row), rows.getCondition(row));
+        }
+        return index;
+    }
+
+    public synchronized void add(int epochDay, double temperature, int humidity, String condition) {
+        int code = encode(condition);
+        bucket(days, epochDay).add(temperature, humidity, code);
+        bucket(weeks, weekStart(epochDay)).add(temperature, humidity, code);
+        bucket(months, monthStart(epochDay)).add(temperature, humidity, code);
+    }
+
+    // Returns false if the day's minimum or maximum may have gone with the
+    // reading; replaceDay() with the day's remaining rows puts that right.
+    public synchronized boolean remove(int epochDay, double temperature, int humidity, String condition) {
+        Rollup day = days.get(epochDay);
+        Integer code = conditionCodes.get(condition);
+        if (day == null || code == null) {
+            return false;
+        }
+        boolean exact = day.remove(temperature, humidity, code);
+        if (day.isEmpty()) {
+            days.remove(epochDay);
+            resum(Granularity.WEEK, weekStart(epochDay));
+            resum(Granularity.MONTH, monthStart(epochDay));
+            return true;
+        }
+        // A week or month extreme is also the extreme of the day it came from,
+        // so while the day's are intact the wider buckets only lose the totals
+        weeks.get(weekStart(epochDay)).remove(temperature, humidity, code);
+        months.get(monthStart(epochDay)).remove(temperature, humidity, code);
+        return exact;
+    }
+
+    // Recounts one day from all of its rows
+    public synchronized void replaceDay(int epochDay, WeatherView rows) {
+        days.remove(epochDay);
+        for (int row = 0; row < rows.size(); row++) {
+            bucket(days, epochDay).add(rows.getTemperature(row), rows.getHumidity(row), encode(rows.getCondition(row)));
+        }
+        resum(Granularity.WEEK, weekStart(epochDay));
+        resum(Granularity.MONTH, monthStart(epochDay));
+    }
+
+    // Recounts one month from all of its rows, which must be in day order
+    public synchronized void replaceMonth(YearMonth month, WeatherView rows) {
+        int first = (int) month.atDay(1).toEpochDay();
+        int last = (int) month.atEndOfMonth().toEpochDay();
+        days.subMap(first, true, last, true).clear();
+        for (int row = 0; row < rows.size(); row++) {
+            bucket(days, rows.getEpochDay(row)).add(rows.getTemperature(row), rows.getHumidity(row),
+                    encode(rows.getCondition(row)));
+        }
+        // Weeks straddling the month boundary are resummed from both sides
+        for (int week = weekStart(first); week <= last; week += 7) {
+            resum(Granularity.WEEK, week);
+        }
+        resum(Granularity.MONTH, first);
+    }
+
+    public void replaceAll(RollupIndex other) {
+        if (other == this) {
+            return;
+        }
+        synchronized (other) {
+            synchronized (this) {
+                clear();
+                copyInto(other, this);
+            }
+        }
+    }
+
+    public synchronized RollupIndex copy() {
+        RollupIndex copy = new RollupIndex();
+        copyInto(this, copy);
+        return copy;
+    }
+
+    public synchronized void clear() {
+        conditions.clear();
+        conditionCodes.clear();
+        days.clear();
+        weeks.clear();
+        months.clear();
+    }
+
+    public synchronized boolean isEmpty() {
+        return days.isEmpty();
+    }
+
+    // Everything dated startDay..endDay inclusive, as one bucket
+    public synchronized Rollup summarize(int startDay, int endDay) {
+        List<String> names = new ArrayList<>(conditions);
+        Rollup total = new Rollup(startDay, names);
+        // Days before "from" are already counted
+        int from = startDay;
+        Integer day = days.ceilingKey(startDay);
+        while (day != null && day <= endDay) {
+            int month = monthStart(day);
+            int week = weekStart(day);
+            int end;
+            if (month >= from && monthEnd(month) <= endDay) {
+                end = monthEnd(month);
+                total.merge(months.get(month));
+            } else if (week >= from && week + 6 <= endDay) {
+                end = week + 6;
+                total.merge(weeks.get(week));
+            } else {
+                end = day;
+                total.merge(days.get(day));
+            }
+            from = end + 1;
+            day = days.higherKey(end);
+        }
+        return total;
+    }
+
+    // One bucket per day, week or month holding readings dated
+    // startDay..endDay, oldest first; buckets cut by the range only count
+    // the readings inside it.
+    public synchronized List<Rollup> series(int startDay, int endDay, Granularity granularity) {
+        List<String> names = new ArrayList<>(conditions);
+        TreeMap<Integer, Rollup> level = level(granularity);
+        List<Rollup> series = new ArrayList<>();
+        Integer day = days.ceilingKey(startDay);
+        while (day != null && day <= endDay) {
+            int start = periodStart(granularity, day);
+            int end = periodEnd(granularity, start);
+            if (start >= startDay && end <= endDay) {
+                series.add(new Rollup(level.get(start), names));
+            } else {
+                Rollup bucket = new Rollup(start, names);
+                for (Rollup part : days.subMap(Math.max(start, startDay), true, Math.min(end, endDay), true).values()) {
+                    bucket.merge(part);
+                }
+                series.add(bucket);
+            }
+            day = days.higherKey(end);
+        }
+        return series;
+    }
+
+    // Reads an index written at the given sequence number. Returns null if
+    // there is none, or the one on disk belongs to a different state of the log.
+    public static RollupIndex read(Path path, long seq) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in, seq);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    public static RollupIndex read(InputStream source, long seq) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(source, 1 << 16), new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a rollup file");
+        }
+        short version = in.readShort();
+        if (version > VERSION) {
+            throw new IOException("Unsupported rollup version " + version);
+        }
+        if (version < VERSION || in.readLong() != seq) {
+            return null;
+        }
+        RollupIndex index = new RollupIndex();
+        int conditionCount = in.readInt();
+        for (int code = 0; code < conditionCount; code++) {
+            index.encode(in.readUTF());
+        }
+        int dayCount = in.readInt();
+        for (int i = 0; i < dayCount; i++) {
+            int epochDay = in.readInt();
+            Rollup day = new Rollup(epochDay, index.conditions);
+            day.restore(in.readLong(), in.readDouble(), in.readDouble(), in.readDouble());
+            int used = in.readShort();
+            for (int j = 0; j < used; j++) {
+                int code = in.readShort();
+                if (code < 0 || code >= conditionCount) {
+                    throw new IOException("Unknown condition code in rollup for day " + epochDay);
+                }
+                day.setConditionCount(code, in.readInt());
+            }
+            day.getTemperatures().readFrom(in);
+            day.getHumidities().readFrom(in);
+            index.days.put(epochDay, day);
+        }
+        long crc = checked.getChecksum().getValue();
+        if (in.readInt() != (int) crc) {
+            throw new IOException("Rollup checksum mismatch");
+        }
+        for (Rollup day : index.days.values()) {
+            bucket(index.weeks, weekStart(day.getStartDay()), index.conditions).merge(day);
+            bucket(index.months, monthStart(day.getStartDay()), index.conditions).merge(day);
+        }
+        return index;
+    }
+
+    public synchronized void write(OutputStream target, long seq) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(target, 1 << 16), new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(seq);
+        out.writeInt(conditions.size());
+        for (String condition : conditions) {
+            out.writeUTF(condition);
+        }
+        out.writeInt(days.size());
+        for (Rollup day : days.values()) {
+            out.writeInt(day.getStartDay());
+            out.writeLong(day.getCount());
+            out.writeDouble(day.getSum());
+            out.writeDouble(day.getMin());
+            out.writeDouble(day.getMax());
+            int used = 0;
+            for (int code = 0; code < conditions.size(); code++) {
+                used += day.countOf(code) > 0 ? 1 : 0;
+            }
+            out.writeShort(used);
+            for (int code = 0; code < conditions.size(); code++) {
+                if (day.countOf(code) > 0) {
+                    out.writeShort(code);
+                    out.writeInt(day.countOf(code));
+                }
+            }
+            day.getTemperatures().writeTo(out);
+            day.getHumidities().writeTo(out);
+        }
+        out.flush();
+        out.writeInt((int) checked.getChecksum().getValue());
+        out.flush();
+    }
+
+    // Rebuilds a week or month bucket from its days
+    private void resum(Granularity granularity, int start) {
+        TreeMap<Integer, Rollup> level = level(granularity);
+        level.remove(start);
+        for (Rollup day : days.subMap(start, true, periodEnd(granularity, start), true).values()) {
+            bucket(level, start).merge(day);
+        }
+    }
+
+    private int encode(String condition) {
+        Integer code = conditionCodes.get(condition);
+        if (code == null) {
+            code = conditions.size();
+            conditions.add(condition);
+            conditionCodes.put(condition, code);
+        }
+        return code;
+    }
+
+    private Rollup bucket(TreeMap<Integer, Rollup> level, int start) {
+        return bucket(level, start, conditions);
+    }
+
+    private static Rollup bucket(TreeMap<Integer, Rollup> level, int start, List<String> names) {
+        return level.computeIfAbsent(start, key -> new Rollup(key, names));
+    }
+
+    private TreeMap<Integer, Rollup> level(Granularity granularity) {
+        switch (granularity) {
+            case WEEK:
+                return weeks;
+            case MONTH:
+                return months;
+            default:
+                return days;
+        }
+    }
+
+    private static void copyInto(RollupIndex from, RollupIndex to) {
+        for (String condition : from.conditions) {
+            to.encode(condition);
+        }
+        copyLevel(from.days, to.days, to.conditions);
+        copyLevel(from.weeks, to.weeks, to.conditions);
+        copyLevel(from.months, to.months, to.conditions);
+    }
+
+    private static void copyLevel(NavigableMap<Integer, Rollup> from, NavigableMap<Integer, Rollup> to, List<String> names) {
+        for (Rollup bucket : from.values()) {
+            to.put(bucket.getStartDay(), new Rollup(bucket, names));
+        }
+    }
+
+    private static int periodStart(Granularity granularity, int epochDay) {
+        switch (granularity) {
+            case WEEK:
+                return weekStart(epochDay);
+            case MONTH:
+                return monthStart(epochDay);
+            default:
+                return epochDay;
+        }
+    }
+
+    private static int periodEnd(Granularity granularity, int start) {
+        switch (granularity) {
+            case WEEK:
+                return start + 6;
+            case MONTH:
+                return monthEnd(start);
+            default:
+                return start;
+        }
+    }
+
+    // The Monday on or before the day; epoch day 0 was a Thursday
+    private static int weekStart(int epochDay) {
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+
+    private static int monthStart(int epochDay) {
+        return (int) LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+    }
+
+    private static int monthEnd(int monthStart) {
+        return (int) YearMonth.from(LocalDate.ofEpochDay(monthStart)).atEndOfMonth().toEpochDay();
+    }
+}
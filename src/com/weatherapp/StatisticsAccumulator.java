@@ -0,0 +1,138 @@
+package com.weatherapp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Running temperature, humidity and condition statistics. Inserts and deletes
+// update the totals in place, min/max come from a multiset of temperatures,
+// the mode from per-condition counts and spread and percentiles from
+// streaming distributions. Accumulators for disjoint sets of rows can be merged.
+public class StatisticsAccumulator implements WeatherSummary {
+    private long count;
+    private double sum;
+    private final TreeMap<Double, Integer> temperatures = new TreeMap<>();
+    private final Map<String, Integer> conditionCounts = new HashMap<>();
+    private final Distribution temperatureDistribution = Distribution.temperatures();
+    private final Distribution humidityDistribution = Distribution.humidities();
+
+    public static StatisticsAccumulator of(WeatherView entries) {
+        StatisticsAccumulator accumulator = new StatisticsAccumulator();
+        for (int row = 0; row < entries.size(); row++) {
+            accumulator.add(entries.getTemperature(row), entries.getHumidity(row), entries.getCondition(row));
+        }
+        return accumulator;
+    }
+
+    public void add(WeatherEntry entry) {
+        add(entry.getTemperature(), entry.getHumidity(), entry.getCondition());
+    }
+
+    public void add(double temperature, int humidity, String condition) {
+        count++;
+        sum += temperature;
+        temperatures.merge(temperature, 1, Integer::sum);
+        conditionCounts.merge(condition, 1, Integer::sum);
+        temperatureDistribution.add(temperature);
+        humidityDistribution.add(humidity);
+    }
+
+    public void remove(WeatherEntry entry) {
+        remove(entry.getTemperature(), entry.getHumidity(), entry.getCondition());
+    }
+
+    public void remove(double temperature, int humidity, String condition) {
+        Integer seen = temperatures.get(temperature);
+        if (seen == null) {
+            throw new IllegalArgumentException("Temperature " + temperature + " was never added");
+        }
+        count--;
+        sum -= temperature;
+        decrement(temperatures, temperature);
+        decrement(conditionCounts, condition);
+        temperatureDistribution.remove(temperature);
+        humidityDistribution.remove(humidity);
+        if (count == 0) {
+            // Drop any rounding error left over from the removals
+            sum = 0;
+        }
+    }
+
+    public void merge(StatisticsAccumulator other) {
+        count += other.count;
+        sum += other.sum;
+        other.temperatures.forEach((temperature, n) -> temperatures.merge(temperature, n, Integer::sum));
+        other.conditionCounts.forEach((condition, n) -> conditionCounts.merge(condition, n, Integer::sum));
+        temperatureDistribution.merge(other.temperatureDistribution);
+        humidityDistribution.merge(other.humidityDistribution);
+    }
+
+    public void clear() {
+        count = 0;
+        sum = 0;
+        temperatures.clear();
+        conditionCounts.clear();
+        temperatureDistribution.clear();
+        humidityDistribution.clear();
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public double getAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    @Override
+    public double getMin() {
+        return count == 0 ? Double.NaN : temperatures.firstKey();
+    }
+
+    @Override
+    public double getMax() {
+        return count == 0 ? Double.NaN : temperatures.lastKey();
+    }
+
+    @Override
+    public Distribution getTemperatures() {
+        return temperatureDistribution;
+    }
+
+    @Override
+    public Distribution getHumidities() {
+        return humidityDistribution;
+    }
+
+    @Override
+    public String getMostCommonCondition() {
+        String mostCommon = null;
+        int best = 0;
+        for (Map.Entry<String, Integer> entry : conditionCounts.entrySet()) {
+            if (entry.getValue() > best) {
+                best = entry.getValue();
+                mostCommon = entry.getKey();
+            }
+        }
+        return mostCommon;
+    }
+
+    private static <K> void decrement(Map<K, Integer> counts, K key) {
+        Integer n = counts.get(key);
+        if (n == null) {
+            return;
+        }
+        if (n == 1) {
+            counts.remove(key);
+        } else {
+            counts.put(key, n - 1);
+        }
+    }
+}
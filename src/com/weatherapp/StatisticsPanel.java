@@ -8,15 +8,14 @@ import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class StatisticsPanel extends JPanel {
     private final JLabel avgTempLabel = createLabel("~ Avg Temp", new Font("Arial", Font.PLAIN, 18));
     private final JLabel maxTempLabel = createLabel("↑ Max Temp", new Font("Arial", Font.BOLD, 18), Color.RED);
     private final JLabel minTempLabel = createLabel("↓ Min Temp", new Font("Arial", Font.BOLD, 18), Color.BLUE);
     private final JLabel commonConditionLabel = createLabel("* Most Common", new Font("Arial", Font.PLAIN, 18));
+    private final JLabel temperatureSpreadLabel = createLabel("Temp p5/p50/p95", new Font("Arial", Font.PLAIN, 14));
+    private final JLabel humiditySpreadLabel = createLabel("Humidity p5/p50/p95", new Font("Arial", Font.PLAIN, 14));
 
     public StatisticsPanel() {
         setLayout(new GridBagLayout());
@@ -38,6 +37,13 @@ public class StatisticsPanel extends JPanel {
 
         gbc.gridx = 1;
         add(commonConditionLabel, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        add(temperatureSpreadLabel, gbc);
+
+        gbc.gridx = 1;
+        add(humiditySpreadLabel, gbc);
     }
 
     private JLabel createLabel(String text, Font font) {
@@ -51,44 +57,38 @@ public class StatisticsPanel extends JPanel {
         return label;
     }
 
-    public void updateStatistics(List<WeatherEntry> entries) {
-        if (entries.isEmpty()) {
+    public void updateStatistics(WeatherView entries) {
+        updateStatistics(StatisticsAccumulator.of(entries));
+    }
+
+    public void updateStatistics(WeatherSummary statistics) {
+        if (statistics.isEmpty()) {
             avgTempLabel.setText("~ Avg Temp: N/A");
             maxTempLabel.setText("↑ Max Temp: N/A");
             minTempLabel.setText("↓ Min Temp: N/A");
             commonConditionLabel.setText("* Most Common: N/A");
+            temperatureSpreadLabel.setText("Temp p5/p50/p95: N/A");
+            humiditySpreadLabel.setText("Humidity p5/p50/p95: N/A");
             return;
         }
 
-        double totalTemp = 0;
-        double maxTemp = Double.MIN_VALUE;
-        double minTemp = Double.MAX_VALUE;
-        for (WeatherEntry entry : entries) {
-            totalTemp += entry.getTemperature();
-            if (entry.getTemperature() > maxTemp) {
-                maxTemp = entry.getTemperature();
-            }
-            if (entry.getTemperature() < minTemp) {
-                minTemp = entry.getTemperature();
-            }
-        }
-        double avgTemp = totalTemp / entries.size();
+        avgTempLabel.setText(String.format("~ Avg Temp: %.1f°C", statistics.getAverage()));
+        maxTempLabel.setText(String.format("↑ Max Temp: %.1f°C", statistics.getMax()));
+        minTempLabel.setText(String.format("↓ Min Temp: %.1f°C", statistics.getMin()));
+        commonConditionLabel.setText("* Most Common: " + statistics.getMostCommonCondition());
 
-        avgTempLabel.setText(String.format("~ Avg Temp: %.1f°C", avgTemp));
-        maxTempLabel.setText(String.format("↑ Max Temp: %.1f°C", maxTemp));
-        minTempLabel.setText(String.format("↓ Min Temp: %.1f°C", minTemp));
-        commonConditionLabel.setText("* Most Common: " + getMostCommonCondition(entries));
+        // Percentiles are read from histograms, so they are within half a bin
+        Distribution temperatures = statistics.getTemperatures();
+        temperatureSpreadLabel.setText(String.format("Temp p5/p50/p95: %.1f / %.1f / %.1f°C, σ %s",
+                temperatures.getPercentile(5), temperatures.getPercentile(50), temperatures.getPercentile(95),
+                formatDeviation(temperatures)));
+        Distribution humidities = statistics.getHumidities();
+        humiditySpreadLabel.setText(String.format("Humidity p5/p50/p95: %.0f / %.0f / %.0f%%, σ %s",
+                humidities.getPercentile(5), humidities.getPercentile(50), humidities.getPercentile(95),
+                formatDeviation(humidities)));
     }
 
-    private String getMostCommonCondition(List<WeatherEntry> entries) {
-        if (entries.isEmpty()) {
-            return "N/A";
-        }
-        return entries.stream()
-                .collect(Collectors.groupingBy(WeatherEntry::getCondition, Collectors.counting()))
-                .entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("N/A");
+    private static String formatDeviation(Distribution distribution) {
+        return distribution.getCount() < 2 ? "N/A" : String.format("%.1f", distribution.getStandardDeviation());
     }
-}
\ No newline at end of file
+}
@@ -1,61 +1,374 @@
 package com.weatherapp;
 
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.ZoneId;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class WeatherApiClient {
+    private static final String GEOCODE_URL = "https://geocoding-api.open-meteo.com/v1/search";
+    private static final String FORECAST_URL = "https://api.open-meteo.com/v1/forecast";
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    // The forecast endpoint takes comma-separated coordinate lists; keep URLs a sane length
+    private static final int MAX_COORDINATES_PER_REQUEST = 50;
+    // Between cities in a list typed or passed as one string; not a comma,
+    // which names like "Portland, OR" contain
+    public static final String CITY_SEPARATOR = ";";
+    private static final Metrics.Timer GEOCODE_LATENCY = Metrics.timer("api.geocode");
+    private static final Metrics.Timer FORECAST_LATENCY = Metrics.timer("api.forecast");
+    // Failed, timed out, cancelled or non-200 requests
+    private static final Metrics.Counter GEOCODE_ERRORS = Metrics.counter("api.geocode.errors");
+    private static final Metrics.Counter FORECAST_ERRORS = Metrics.counter("api.forecast.errors");
 
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final HttpClient httpClient;
+    private final String geocodeUrl;
+    private final String forecastUrl;
+    private final Duration timeout;
+    private final GeocodeCache geocodeCache;
 
-    public WeatherEntry fetchWeather(String city) throws Exception {
-        // 1. Geocode city to get latitude and longitude
-        String geocodeUrl = "https://geocoding-api.open-meteo.com/v1/search?name=" + city;
-        HttpRequest geocodeRequest = HttpRequest.newBuilder()
-                .uri(URI.create(geocodeUrl))
+    public WeatherApiClient() {
+        this(GEOCODE_URL, FORECAST_URL, DEFAULT_TIMEOUT, new GeocodeCache());
+    }
+
+    // The endpoints can be pointed at a local stub server
+    public WeatherApiClient(String geocodeUrl, String forecastUrl, Duration timeout) {
+        this(geocodeUrl, forecastUrl, timeout, new GeocodeCache(null, 256, Duration.ofDays(30)));
+    }
+
+    public WeatherApiClient(String geocodeUrl, String forecastUrl, Duration timeout, GeocodeCache geocodeCache) {
+        this.geocodeUrl = geocodeUrl;
+        this.forecastUrl = forecastUrl;
+        this.timeout = timeout;
+        this.geocodeCache = geocodeCache;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
                 .build();
-        HttpResponse<String> geocodeResponse = httpClient.send(geocodeRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
 
-        if (geocodeResponse.statusCode() != 200) {
-            throw new RuntimeException("Failed to geocode city");
+    public GeocodeCache getGeocodeCache() {
+        return geocodeCache;
+    }
+
+    // Cities in a CITY_SEPARATOR-separated list, trimmed, blanks dropped
+    public static List<String> parseCities(String text) {
+        List<String> cities = new ArrayList<>();
+        for (String city : text.split(CITY_SEPARATOR)) {
+            if (!city.trim().isEmpty()) {
+                cities.add(city.trim());
+            }
         }
+        return cities;
+    }
 
-        JSONObject geocodeJson = new JSONObject(geocodeResponse.body());
-        if (!geocodeJson.has("results")) {
-            throw new RuntimeException("City not found");
+    public WeatherEntry fetchWeather(String city) throws Exception {
+        try {
+            return fetchWeatherAsync(city).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
         }
-        JSONObject location = geocodeJson.getJSONArray("results").getJSONObject(0);
-        double latitude = location.getDouble("latitude");
-        double longitude = location.getDouble("longitude");
-
-        // 2. Fetch weather data
-        String weatherUrl = "https://api.open-meteo.com/v1/forecast?latitude=" + latitude + "&longitude=" + longitude + "&current_weather=true";
-        HttpRequest weatherRequest = HttpRequest.newBuilder()
-                .uri(URI.create(weatherUrl))
-                .build();
-        HttpResponse<String> weatherResponse = httpClient.send(weatherRequest, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Geocodes the city and fetches its current weather without blocking the
+    // caller. The whole round trip fails with a TimeoutException once the
+    // configured timeout elapses; cancelling the returned future aborts
+    // whichever request is in flight.
+    public CompletableFuture<WeatherEntry> fetchWeatherAsync(String city) {
+        CompletableFuture<WeatherEntry> result = new CompletableFuture<>();
+        Requests inFlight = new Requests(null);
+
+        // 1. Geocode city to get latitude and longitude, unless it is cached
+        geocode(city, inFlight::add).thenCompose(location -> {
+            // 2. Fetch weather data
+            String weatherUrl = forecastUrl + "?latitude=" + location.getLatitude() + "&longitude=" + location.getLongitude() + "&current_weather=true";
+            CompletableFuture<HttpResponse<String>> weatherFuture = send(weatherUrl, FORECAST_LATENCY, FORECAST_ERRORS);
+            inFlight.add(weatherFuture);
+            return weatherFuture;
+        }).thenApply(weatherResponse -> {
+            if (weatherResponse.statusCode() != 200) {
+                throw new RuntimeException("Failed to fetch weather data");
+            }
+            return parseWeather(new JSONObject(weatherResponse.body()).getJSONObject("current_weather"), city);
+        }).whenComplete((entry, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+            } else {
+                result.complete(entry);
+            }
+        });
+
+        return withDeadline(result, inFlight);
+    }
+
+    // Fetches the current weather for several cities. At most `parallelism`
+    // requests are in flight at once: first the geocoding lookups for cities
+    // that are not cached, then one forecast request per group of up to
+    // MAX_COORDINATES_PER_REQUEST cities. Each lookup and each forecast
+    // request fails with a TimeoutException after the configured timeout, so
+    // the batch takes at most that long per round of requests. A city that
+    // fails is reported in the result instead of failing the whole batch.
+    // Cancelling the returned future aborts every request in flight.
+    public CompletableFuture<BatchResult> fetchWeatherBatchAsync(List<String> cities, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        Map<String, String> byKey = new LinkedHashMap<>();
+        for (String city : cities) {
+            if (!city.trim().isEmpty()) {
+                byKey.putIfAbsent(GeocodeCache.normalize(city), city.trim());
+            }
+        }
+        List<String> unique = new ArrayList<>(byKey.values());
+
+        CompletableFuture<BatchResult> result = new CompletableFuture<>();
+        Map<String, GeocodeCache.Coordinates> located = new ConcurrentHashMap<>();
+        Map<String, WeatherEntry> fetched = new ConcurrentHashMap<>();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Requests inFlight = new Requests(null);
+        result.whenComplete((batch, error) -> {
+            if (error != null) {
+                inFlight.abort();
+            }
+        });
+
+        forEachBounded(unique, parallelism, result, city -> {
+            Requests lookup = new Requests(inFlight);
+            return withDeadline(geocode(city, lookup::add), lookup).whenComplete((location, error) -> {
+                if (error != null) {
+                    failures.put(city, unwrap(error));
+                } else {
+                    located.put(city, location);
+                }
+            });
+        }).thenCompose(ignored -> {
+            List<List<String>> groups = new ArrayList<>();
+            List<String> group = new ArrayList<>();
+            for (String city : unique) {
+                if (!located.containsKey(city)) {
+                    continue;
+                }
+                group.add(city);
+                if (group.size() == MAX_COORDINATES_PER_REQUEST) {
+                    groups.add(group);
+                    group = new ArrayList<>();
+                }
+            }
+            if (!group.isEmpty()) {
+                groups.add(group);
+            }
+            return forEachBounded(groups, parallelism, result, members -> {
+                Requests forecast = new Requests(inFlight);
+                return withDeadline(fetchForecasts(members, located, forecast::add), forecast).whenComplete((entries, error) -> {
+                    if (error != null) {
+                        for (String city : members) {
+                            failures.put(city, unwrap(error));
+                        }
+                    } else {
+                        fetched.putAll(entries);
+                    }
+                });
+            });
+        }).whenComplete((ignored, error) -> {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return;
+            }
+            Map<String, WeatherEntry> entries = new LinkedHashMap<>();
+            Map<String, Throwable> failed = new LinkedHashMap<>();
+            for (String city : unique) {
+                if (fetched.containsKey(city)) {
+                    entries.put(city, fetched.get(city));
+                } else if (failures.containsKey(city)) {
+                    failed.put(city, failures.get(city));
+                }
+            }
+            result.complete(new BatchResult(entries, failed));
+        });
+        return result;
+    }
+
+    // One forecast request for all of the given cities
+    private CompletableFuture<Map<String, WeatherEntry>> fetchForecasts(List<String> cities, Map<String, GeocodeCache.Coordinates> located,
+                                                                        Consumer<CompletableFuture<?>> sent) {
+        StringBuilder latitudes = new StringBuilder();
+        StringBuilder longitudes = new StringBuilder();
+        for (String city : cities) {
+            GeocodeCache.Coordinates location = located.get(city);
+            if (latitudes.length() > 0) {
+                latitudes.append(',');
+                longitudes.append(',');
+            }
+            latitudes.append(location.getLatitude());
+            longitudes.append(location.getLongitude());
+        }
+        String weatherUrl = forecastUrl + "?latitude=" + latitudes + "&longitude=" + longitudes + "&current_weather=true";
+        CompletableFuture<HttpResponse<String>> weatherFuture = send(weatherUrl, FORECAST_LATENCY, FORECAST_ERRORS);
+        sent.accept(weatherFuture);
+        return weatherFuture.thenApply(weatherResponse -> {
+            if (weatherResponse.statusCode() != 200) {
+                throw new RuntimeException("Failed to fetch weather data");
+            }
+            // A single location comes back as an object, several as an array in request order
+            String body = weatherResponse.body().trim();
+            Map<String, WeatherEntry> entries = new LinkedHashMap<>();
+            if (body.startsWith("[")) {
+                JSONArray forecasts = new JSONArray(body);
+                if (forecasts.length() != cities.size()) {
+                    throw new RuntimeException("Expected " + cities.size() + " forecasts but got " + forecasts.length());
+                }
+                for (int i = 0; i < cities.size(); i++) {
+                    entries.put(cities.get(i), parseWeather(forecasts.getJSONObject(i).getJSONObject("current_weather"), cities.get(i)));
+                }
+            } else {
+                if (cities.size() != 1) {
+                    throw new RuntimeException("Expected " + cities.size() + " forecasts but got 1");
+                }
+                entries.put(cities.get(0), parseWeather(new JSONObject(body).getJSONObject("current_weather"), cities.get(0)));
+            }
+            return entries;
+        });
+    }
+
+    // Runs task over items with at most `parallelism` of them outstanding. The
+    // returned future completes once every started task has finished; nothing
+    // new is started after `stop` completes.
+    private static <T> CompletableFuture<Void> forEachBounded(List<T> items, int parallelism, CompletableFuture<?> stop,
+                                                              Function<T, CompletableFuture<?>> task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (items.isEmpty()) {
+            done.complete(null);
+            return done;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger finished = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    int i = next.getAndIncrement();
+                    if (i >= items.size()) {
+                        return;
+                    }
+                    if (stop.isDone()) {
+                        done.cancel(false);
+                        return;
+                    }
+                    CompletableFuture<?> pending = task.apply(items.get(i));
+                    if (!pending.isDone()) {
+                        pending.whenComplete((ignored, error) -> {
+                            taskFinished();
+                            run();
+                        });
+                        return;
+                    }
+                    // Already complete (e.g. a cache hit): keep looping instead of recursing
+                    taskFinished();
+                }
+            }
 
-        if (weatherResponse.statusCode() != 200) {
-            throw new RuntimeException("Failed to fetch weather data");
+            private void taskFinished() {
+                if (finished.incrementAndGet() == items.size()) {
+                    done.complete(null);
+                }
+            }
+        };
+        for (int i = 0; i < Math.min(parallelism, items.size()); i++) {
+            worker.run();
         }
+        return done;
+    }
+
+    // Fails the step with a TimeoutException once the configured timeout
+    // elapses, and aborts its requests if it fails, times out or is cancelled
+    private <T> CompletableFuture<T> withDeadline(CompletableFuture<T> step, Requests requests) {
+        step.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        step.whenComplete((value, error) -> {
+            if (error != null) {
+                requests.abort();
+            }
+        });
+        return step;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    // Hands the request, if one is needed, to `sent` as soon as it starts
+    private CompletableFuture<GeocodeCache.Coordinates> geocode(String city, Consumer<CompletableFuture<?>> sent) {
+        GeocodeCache.Coordinates cached = geocodeCache.get(city);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        String geocodeRequestUrl = geocodeUrl + "?name=" + URLEncoder.encode(city, StandardCharsets.UTF_8);
+        CompletableFuture<HttpResponse<String>> geocodeFuture = send(geocodeRequestUrl, GEOCODE_LATENCY, GEOCODE_ERRORS);
+        sent.accept(geocodeFuture);
+        return geocodeFuture.thenApply(geocodeResponse -> {
+            if (geocodeResponse.statusCode() != 200) {
+                throw new RuntimeException("Failed to geocode city");
+            }
 
-        JSONObject weatherJson = new JSONObject(weatherResponse.body()).getJSONObject("current_weather");
+            JSONObject geocodeJson = new JSONObject(geocodeResponse.body());
+            if (!geocodeJson.has("results")) {
+                throw new RuntimeException("City not found");
+            }
+            JSONObject location = geocodeJson.getJSONArray("results").getJSONObject(0);
+            double latitude = location.getDouble("latitude");
+            double longitude = location.getDouble("longitude");
+            geocodeCache.put(city, latitude, longitude);
+            return new GeocodeCache.Coordinates(latitude, longitude, System.currentTimeMillis());
+        });
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(String url, Metrics.Timer latency, Metrics.Counter errors) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(timeout)
+                .build();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+        // Observe without wrapping, so cancelling the returned future still aborts the request
+        response.whenComplete((result, error) -> {
+            latency.recordSince(start);
+            if (error != null || result.statusCode() != 200) {
+                errors.increment();
+            }
+        });
+        return response;
+    }
+
+    private WeatherEntry parseWeather(JSONObject weatherJson, String city) {
         double temperature = weatherJson.getDouble("temperature");
         // The API doesn't provide humidity directly, so we'll use a placeholder
         int humidity = 50; // Placeholder
         String condition = getWeatherCondition(weatherJson.getInt("weathercode"));
-        
-        LocalDate localDate = LocalDate.now();
-        Date date = Date.from(localDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
 
-
-        return new WeatherEntry(date, temperature, humidity, condition);
+        return new WeatherEntry(LocalDate.now(), temperature, humidity, condition, FileManager.cleanLocation(city));
     }
 
     private String getWeatherCondition(int weatherCode) {
@@ -74,4 +387,54 @@ public class WeatherApiClient {
         if (weatherCode >= 96 && weatherCode <= 99) return "Thunderstorm with slight and heavy hail";
         return "Unknown";
     }
+
+    // HTTP requests started for one step or a whole fetch, so they can be
+    // aborted together. Requests added after abort() are cancelled at once.
+    private static final class Requests {
+        // Also told of every request added here; null for none
+        private final Requests parent;
+        private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+        private volatile boolean aborted;
+
+        Requests(Requests parent) {
+            this.parent = parent;
+        }
+
+        void add(CompletableFuture<?> request) {
+            if (parent != null) {
+                parent.add(request);
+            }
+            pending.add(request);
+            request.whenComplete((response, error) -> pending.remove(request));
+            if (aborted) {
+                request.cancel(true);
+            }
+        }
+
+        void abort() {
+            aborted = true;
+            for (CompletableFuture<?> request : pending) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    public static final class BatchResult {
+        private final Map<String, WeatherEntry> entries;
+        private final Map<String, Throwable> failures;
+
+        BatchResult(Map<String, WeatherEntry> entries, Map<String, Throwable> failures) {
+            this.entries = Collections.unmodifiableMap(entries);
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        // Successfully fetched cities, in the order they were requested
+        public Map<String, WeatherEntry> getEntries() {
+            return entries;
+        }
+
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+    }
 }
@@ -6,11 +6,22 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 public class WeatherApplication extends JFrame {
     private final FileManager fileManager;
@@ -20,17 +31,47 @@ public class WeatherApplication extends JFrame {
     private final StatisticsPanel statisticsPanel;
     private final WeatherApiClient weatherApiClient;
 
+    private static final int BATCH_FETCH_PARALLELISM = 4;
+    // Months loaded at startup; older ones are paged in by the date filter
+    private static final int RECENT_PARTITIONS = 3;
+    // Drop paged-in months when the heap is this full after a collection
+    private static final double MEMORY_PRESSURE_THRESHOLD = 0.8;
+    private static final String ALL_LOCATIONS = "All locations";
+    private static final Metrics.Timer DERIVED_VIEWS_TIME = Metrics.timer("ui.derived.compute");
+    private static final Metrics.Timer TABLE_PAINT_TIME = Metrics.timer("ui.table.paint");
+    // Chart resolutions, matching the granularity box; null plots the rows
+    private static final RollupIndex.Granularity[] GRANULARITIES = {null, RollupIndex.Granularity.DAY,
+            RollupIndex.Granularity.WEEK, RollupIndex.Granularity.MONTH};
+
     private final JTextField cityField = new JTextField(15);
+    private final JButton fetchButton = new JButton("Fetch Weather");
+    private final JButton cancelFetchButton = new JButton("Cancel");
     private final JTextField manualDateField = new JTextField(10);
     private final JTextField manualTempField = new JTextField(5);
     private final JTextField manualHumidityField = new JTextField(5);
     private final JTextField manualConditionField = new JTextField(10);
+    private final JTextField manualLocationField = new JTextField(10);
+    private final DefaultComboBoxModel<String> locationModel = new DefaultComboBoxModel<>(new String[]{ALL_LOCATIONS});
+    private final JComboBox<String> granularityComboBox = new JComboBox<>(new String[]{"Raw", "Daily", "Weekly", "Monthly"});
     
     private final JDateChooser startDateChooser = new JDateChooser();
     private final JDateChooser endDateChooser = new JDateChooser();
 
 
-    private List<WeatherEntry> allEntries;
+    private final WeatherHistory history;
+    private final WeatherStore store;
+    private final StatisticsAccumulator storeStatistics;
+    private final RollupIndex rollups;
+    private final ChangeBus changes = new ChangeBus();
+    private boolean refreshRunning;
+    private boolean refreshPending;
+    private CompletableFuture<?> pendingFetch;
+    // Filter the table is showing; unbounded dates are Integer.MIN_VALUE and
+    // MAX_VALUE and a null location means all of them
+    private boolean filtered;
+    private int filterStartDay;
+    private int filterEndDay;
+    private String filterLocation;
 
 
     public WeatherApplication() {
@@ -47,8 +88,11 @@ public class WeatherApplication extends JFrame {
 
         fileManager = new FileManager();
         weatherApiClient = new WeatherApiClient();
-        allEntries = fileManager.loadEntries();
-        tableModel = new WeatherTableModel(allEntries);
+        history = new WeatherHistory(fileManager, RECENT_PARTITIONS);
+        store = history.getStore();
+        storeStatistics = history.getStatistics();
+        rollups = fileManager.getRollups();
+        tableModel = new WeatherTableModel(store);
 
         // Main panel
         JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
@@ -59,11 +103,17 @@ public class WeatherApplication extends JFrame {
 
         // API Fetch Panel
         JPanel apiFetchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-        apiFetchPanel.add(new JLabel("City:"));
+        apiFetchPanel.add(new JLabel("City (several separated by " + WeatherApiClient.CITY_SEPARATOR + "):"));
         apiFetchPanel.add(cityField);
-        JButton fetchButton = new JButton("Fetch Weather");
         fetchButton.addActionListener(new FetchWeatherListener());
         apiFetchPanel.add(fetchButton);
+        cancelFetchButton.setEnabled(false);
+        cancelFetchButton.addActionListener(e -> {
+            if (pendingFetch != null) {
+                pendingFetch.cancel(true);
+            }
+        });
+        apiFetchPanel.add(cancelFetchButton);
 
         // Manual Entry Panel
         JPanel manualEntryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -75,6 +125,8 @@ public class WeatherApplication extends JFrame {
         manualEntryPanel.add(manualHumidityField);
         manualEntryPanel.add(new JLabel("Condition:"));
         manualEntryPanel.add(manualConditionField);
+        manualEntryPanel.add(new JLabel("Location:"));
+        manualEntryPanel.add(manualLocationField);
         JButton manualAddButton = new JButton("Add Manual Entry");
         manualAddButton.addActionListener(new ManualAddEntryListener());
         manualEntryPanel.add(manualAddButton);
@@ -90,21 +142,44 @@ public class WeatherApplication extends JFrame {
         JButton deleteButton = new JButton("Delete Selected");
         deleteButton.addActionListener(new DeleteEntryListener());
         southControlPanel.add(deleteButton);
+        JButton deleteMatchingButton = new JButton("Delete Matching...");
+        deleteMatchingButton.addActionListener(new DeleteMatchingListener());
+        southControlPanel.add(deleteMatchingButton);
+        JButton editButton = new JButton("Edit Selected...");
+        editButton.addActionListener(new BulkEditListener());
+        southControlPanel.add(editButton);
         
         // Date Filter
         southControlPanel.add(new JLabel("Start Date:"));
         southControlPanel.add(startDateChooser);
         southControlPanel.add(new JLabel("End Date:"));
         southControlPanel.add(endDateChooser);
+        southControlPanel.add(new JLabel("Location:"));
+        southControlPanel.add(new JComboBox<>(locationModel));
         JButton filterButton = new JButton("Filter");
         filterButton.addActionListener(new FilterListener());
         southControlPanel.add(filterButton);
+
+        JButton importButton = new JButton("Import CSV");
+        importButton.addActionListener(new ImportCsvListener());
+        southControlPanel.add(importButton);
+        JButton exportButton = new JButton("Export CSV");
+        exportButton.addActionListener(new ExportCsvListener());
+        southControlPanel.add(exportButton);
         
         controlPanel.add(southControlPanel, BorderLayout.SOUTH);
 
 
         // Center panel for table
-        table = new JTable(tableModel);
+        table = new JTable(tableModel) {
+            @Override
+            protected void paintComponent(Graphics g) {
+                long start = System.nanoTime();
+                super.paintComponent(g);
+                TABLE_PAINT_TIME.recordSince(start);
+            }
+        };
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         JScrollPane scrollPane = new JScrollPane(table);
         scrollPane.setBorder(BorderFactory.createTitledBorder("Weather Log"));
 
@@ -112,7 +187,7 @@ public class WeatherApplication extends JFrame {
         JPanel bottomPanel = new JPanel(new BorderLayout(10, 10));
         
         // Chart panel
-        chartPanel = new ChartPanel(tableModel.getEntries());
+        chartPanel = new ChartPanel();
         chartPanel.setBorder(BorderFactory.createTitledBorder("Temperature Chart"));
         
         // Chart selection
@@ -120,13 +195,19 @@ public class WeatherApplication extends JFrame {
         JComboBox<String> chartComboBox = new JComboBox<>(chartTypes);
         chartComboBox.addActionListener(e -> chartPanel.setChartType((String) chartComboBox.getSelectedItem()));
         
+        granularityComboBox.addActionListener(e -> requestRefresh());
+
+        JPanel chartOptionsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        chartOptionsPanel.add(chartComboBox);
+        chartOptionsPanel.add(granularityComboBox);
+
         JPanel chartContainerPanel = new JPanel(new BorderLayout());
         chartContainerPanel.add(chartPanel, BorderLayout.CENTER);
-        chartContainerPanel.add(chartComboBox, BorderLayout.NORTH);
+        chartContainerPanel.add(chartOptionsPanel, BorderLayout.NORTH);
 
         // Statistics panel
         statisticsPanel = new StatisticsPanel();
-        statisticsPanel.updateStatistics(tableModel.getEntries());
+        statisticsPanel.updateStatistics(storeStatistics);
 
         bottomPanel.add(chartContainerPanel, BorderLayout.CENTER);
         bottomPanel.add(statisticsPanel, BorderLayout.SOUTH);
@@ -136,109 +217,528 @@ public class WeatherApplication extends JFrame {
         mainPanel.add(bottomPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
+
+        changes.subscribeImmediately(this::updateTable);
+        changes.subscribe(this::refreshDerivedViews);
+        updateLocations();
+
+        WeatherHistory.onMemoryPressure(MEMORY_PRESSURE_THRESHOLD, () -> SwingUtilities.invokeLater(this::evictColdPartitions));
     }
     
-    private void updateUI(List<WeatherEntry> entries) {
-        tableModel.setEntries(entries);
-        chartPanel.setEntries(entries);
-        statisticsPanel.updateStatistics(entries);
+    // Keeps the table in step with the store as changes happen: a single row
+    // is reported as such while the table shows the whole store, anything
+    // else swaps in a freshly built view. Both are cheap; the statistics,
+    // chart and location list catch up once per frame.
+    private void updateTable(List<WeatherChange> changes) {
+        WeatherChange change = changes.get(0);
+        if (changes.size() == 1 && change.getKind() != WeatherChange.Kind.RESET && !filtered && tableModel.getView() == store) {
+            if (change.getKind() == WeatherChange.Kind.INSERTED) {
+                tableModel.rowInserted(change.getStoreRow());
+            } else {
+                tableModel.rowDeleted(change.getStoreRow());
+            }
+            return;
+        }
+        tableModel.setView(filtered ? store.range(filterStartDay, filterEndDay, filterLocation) : store);
+    }
+
+    private void refreshDerivedViews(List<WeatherChange> changes) {
+        boolean reset = false;
+        for (WeatherChange change : changes) {
+            if (change.getKind() == WeatherChange.Kind.RESET) {
+                reset = true;
+            } else if (change.getKind() == WeatherChange.Kind.INSERTED) {
+                addLocation(change.getEntry().getLocation());
+            }
+        }
+        if (reset) {
+            updateLocations();
+        }
+        requestRefresh();
+    }
+
+    // Works out the statistics and chart series for the current view on a
+    // background thread and hands them to the panels on the EDT. Requests
+    // made while one is running are folded into a single follow-up.
+    private void requestRefresh() {
+        if (refreshRunning) {
+            refreshPending = true;
+            return;
+        }
+        refreshRunning = true;
+        RollupIndex.Granularity granularity = GRANULARITIES[granularityComboBox.getSelectedIndex()];
+        boolean datesOnly = filtered && filterLocation == null;
+        int startDay = filterStartDay;
+        int endDay = filterEndDay;
+        // The store may only be read on the EDT, so one location's rows, and
+        // the rows the chart plots when it shows them raw, are copied out here
+        WeatherStore copiedRows = null;
+        if ((filtered && filterLocation != null) || granularity == null) {
+            WeatherView view = tableModel.getView();
+            copiedRows = new WeatherStore(Math.max(view.size(), 1));
+            copiedRows.addAll(view);
+        }
+        WeatherStore rows = filtered && filterLocation != null ? copiedRows : null;
+        WeatherStore chartRows = granularity == null ? copiedRows : null;
+        String chartType = chartPanel.getChartType();
+        int chartWidth = chartPanel.getWidth();
+        int chartHeight = chartPanel.getHeight();
+
+        new SwingWorker<DerivedViews, Void>() {
+            @Override
+            protected DerivedViews doInBackground() {
+                long start = System.nanoTime();
+                DerivedViews derived = new DerivedViews();
+                // Without a filter the store's running statistics are used as they are
+                if (rows != null) {
+                    derived.statistics = StatisticsAccumulator.of(rows);
+                } else if (datesOnly) {
+                    derived.statistics = rollups.summarize(startDay, endDay);
+                }
+                // Rollups of the whole log, of the date range, or of the location's rows
+                if (granularity != null) {
+                    if (rows != null) {
+                        derived.series = RollupIndex.of(rows).series(Integer.MIN_VALUE, Integer.MAX_VALUE, granularity);
+                    } else if (datesOnly) {
+                        derived.series = rollups.series(startDay, endDay, granularity);
+                    } else {
+                        derived.series = rollups.series(Integer.MIN_VALUE, Integer.MAX_VALUE, granularity);
+                    }
+                }
+                // Downsampled and projected here so the chart only draws on the EDT
+                derived.chart = ChartPanel.project(chartRows, derived.series, chartType, chartWidth, chartHeight);
+                DERIVED_VIEWS_TIME.recordSince(start);
+                return derived;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    DerivedViews derived = get();
+                    statisticsPanel.updateStatistics(derived.statistics != null ? derived.statistics : storeStatistics);
+                    chartPanel.setSeries(chartRows, derived.series, derived.chart);
+                } catch (InterruptedException | ExecutionException e) {
+                    e.printStackTrace();
+                }
+                refreshRunning = false;
+                if (refreshPending) {
+                    refreshPending = false;
+                    requestRefresh();
+                }
+            }
+        }.execute();
+    }
+
+    // Offers every location seen so far in the filter's location box
+    private void updateLocations() {
+        for (int code = 0; code < store.locationCount(); code++) {
+            addLocation(store.locationName(code));
+        }
+    }
+
+    private void addLocation(String location) {
+        if (!location.isEmpty() && locationModel.getIndexOf(location) < 0) {
+            locationModel.addElement(location);
+        }
+    }
+
+    // Pages in the month of the given day if needed, which moves rows around
+    private void pageIn(int epochDay) {
+        if (history.ensureLoaded(epochDay)) {
+            changes.publish(WeatherChange.reset());
+        }
+    }
+
+    // Journals and adds a row for a day that may lie in a month not loaded yet
+    private void addEntry(WeatherEntry entry) {
+        addEntries(Collections.singletonList(entry));
+    }
+
+    // Journals and adds rows, with a single change published for all of them.
+    // Their months are paged in before they are journaled, or the page-in
+    // would load them too. Journaled before the publish, so the rollups
+    // include them when the views refresh.
+    private void addEntries(List<WeatherEntry> entries) {
+        for (WeatherEntry entry : entries) {
+            pageIn((int) entry.getDate().toEpochDay());
+        }
+        int[] rows = history.add(entries);
+        List<WeatherChange> inserted = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            inserted.add(WeatherChange.inserted(rows[i], entries.get(i)));
+        }
+        changes.publishAll(inserted);
+    }
+
+    // Store rows behind the table selection, ascending
+    private int[] selectedStoreRows() {
+        int[] selected = table.getSelectedRows();
+        int[] rows = new int[selected.length];
+        for (int i = 0; i < selected.length; i++) {
+            rows[i] = tableModel.getSourceRow(selected[i]);
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    // Deletes store rows, ascending, with one journal write and one publish
+    private void removeRows(int[] rows) {
+        List<WeatherEntry> removed = store.removeRows(rows);
+        for (WeatherEntry entry : removed) {
+            storeStatistics.remove(entry);
+        }
+        fileManager.removeEntries(removed);
+        // Last row first, so each position is still right when its delete is applied
+        List<WeatherChange> deleted = new ArrayList<>(removed.size());
+        for (int i = removed.size() - 1; i >= 0; i--) {
+            deleted.add(WeatherChange.deleted(rows[i], removed.get(i)));
+        }
+        changes.publishAll(deleted);
+    }
+
+    // Replaces store rows, ascending, with edited copies. Dates do not change,
+    // so the edited rows merge back into months that are already loaded.
+    private void editRows(int[] rows, WeatherEdit edit) {
+        List<WeatherEntry> removed = store.removeRows(rows);
+        List<WeatherEntry> edited = new ArrayList<>(removed.size());
+        for (WeatherEntry entry : removed) {
+            WeatherEntry changed = edit.apply(entry);
+            storeStatistics.remove(entry);
+            storeStatistics.add(changed);
+            addLocation(changed.getLocation());
+            edited.add(changed);
+        }
+        fileManager.replaceEntries(removed, edited);
+        store.addAll(WeatherStore.of(edited));
+        changes.publish(WeatherChange.reset());
+    }
+
+    private void showStore() {
+        filtered = false;
+        changes.publish(WeatherChange.reset());
+    }
+
+    // Shows one location's rows, or all of them, dated startDay..endDay,
+    // paging in older months the range reaches. Statistics for all locations
+    // combine a few rollup buckets; for a single location only that
+    // location's rows are read.
+    private void applyFilter(int startDay, int endDay, String location) {
+        if (startDay != Integer.MIN_VALUE) {
+            history.ensureLoaded(startDay);
+        }
+        filtered = true;
+        filterStartDay = startDay;
+        filterEndDay = endDay;
+        filterLocation = location;
+        changes.publish(WeatherChange.reset());
+    }
+
+    // Gives back memory held by paged-in months the current view doesn't need
+    private void evictColdPartitions() {
+        boolean datesFiltered = filtered && filterStartDay != Integer.MIN_VALUE;
+        YearMonth keepFrom = datesFiltered ? YearMonth.from(LocalDate.ofEpochDay(filterStartDay)) : null;
+        if (history.evict(keepFrom) > 0) {
+            // Views of the store are stale once rows were removed from its front
+            changes.publish(WeatherChange.reset());
+        }
     }
 
     class FetchWeatherListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            String city = cityField.getText();
-            if (city.isEmpty()) {
+            List<String> cities = WeatherApiClient.parseCities(cityField.getText());
+            if (cities.isEmpty()) {
                 JOptionPane.showMessageDialog(WeatherApplication.this, "Please enter a city name.", "Input Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            try {
-                WeatherEntry entry = weatherApiClient.fetchWeather(city);
-                allEntries.add(entry);
-                fileManager.saveEntries(allEntries);
-                updateUI(allEntries);
+            if (pendingFetch != null) {
+                return;
+            }
+
+            if (cities.size() > 1) {
+                CompletableFuture<WeatherApiClient.BatchResult> batch = weatherApiClient.fetchWeatherBatchAsync(cities, BATCH_FETCH_PARALLELISM);
+                pendingFetch = batch;
+                setFetchInProgress(true);
+                batch.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> onBatchComplete(batch, result, error)));
+                return;
+            }
+
+            // The requests run on the HttpClient's threads; only the result is handed back to the EDT
+            CompletableFuture<WeatherEntry> fetch = weatherApiClient.fetchWeatherAsync(cities.get(0));
+            pendingFetch = fetch;
+            setFetchInProgress(true);
+            fetch.whenComplete((entry, error) -> SwingUtilities.invokeLater(() -> onFetchComplete(fetch, entry, error)));
+        }
+
+        private void onFetchComplete(CompletableFuture<?> fetch, WeatherEntry entry, Throwable error) {
+            if (!finishFetch(fetch, error)) {
+                return;
+            }
+
+            addEntry(entry);
+            cityField.setText("");
+        }
+
+        private void onBatchComplete(CompletableFuture<?> fetch, WeatherApiClient.BatchResult result, Throwable error) {
+            if (!finishFetch(fetch, error)) {
+                return;
+            }
+
+            List<WeatherEntry> entries = new ArrayList<>(result.getEntries().values());
+            addEntries(entries);
+
+            if (result.getFailures().isEmpty()) {
                 cityField.setText("");
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(WeatherApplication.this, "Failed to fetch weather data: " + ex.getMessage(), "API Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            StringBuilder message = new StringBuilder("Failed to fetch weather data for:");
+            for (Map.Entry<String, Throwable> failure : result.getFailures().entrySet()) {
+                message.append("\n").append(failure.getKey()).append(": ").append(failure.getValue().getMessage());
+            }
+            cityField.setText(String.join(WeatherApiClient.CITY_SEPARATOR + " ", result.getFailures().keySet()));
+            JOptionPane.showMessageDialog(WeatherApplication.this, message.toString(), "API Error", JOptionPane.ERROR_MESSAGE);
+        }
+
+        // Clears the in-progress state and reports errors; returns true if there is a result to apply
+        private boolean finishFetch(CompletableFuture<?> fetch, Throwable error) {
+            if (pendingFetch == fetch) {
+                pendingFetch = null;
+                setFetchInProgress(false);
             }
+            if (error instanceof CancellationException) {
+                return false;
+            }
+            if (error instanceof TimeoutException || error instanceof HttpTimeoutException) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Fetching weather data timed out after " + weatherApiClient.getTimeout().getSeconds() + " seconds.", "API Error", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+            if (error != null) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Failed to fetch weather data: " + error.getMessage(), "API Error", JOptionPane.ERROR_MESSAGE);
+                return false;
+            }
+            return true;
+        }
+
+        private void setFetchInProgress(boolean inProgress) {
+            fetchButton.setEnabled(!inProgress);
+            fetchButton.setText(inProgress ? "Fetching..." : "Fetch Weather");
+            cancelFetchButton.setEnabled(inProgress);
         }
     }
     
     class ManualAddEntryListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
+            WeatherEntry entry;
             try {
-                String dateStr = manualDateField.getText();
-                String tempStr = manualTempField.getText();
-                String humidityStr = manualHumidityField.getText();
-                String conditionStr = manualConditionField.getText();
-
-                if (dateStr.isEmpty() || tempStr.isEmpty() || humidityStr.isEmpty() || conditionStr.isEmpty()) {
-                    JOptionPane.showMessageDialog(WeatherApplication.this, "All fields are required.", "Input Error", JOptionPane.ERROR_MESSAGE);
-                    return;
-                }
-
-                SimpleDateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
-                Date date = dateFormat.parse(dateStr);
-                double temp = Double.parseDouble(tempStr);
-                int humidity = Integer.parseInt(humidityStr);
-
-                WeatherEntry entry = new WeatherEntry(date, temp, humidity, conditionStr);
-                allEntries.add(entry);
-                fileManager.saveEntries(allEntries);
-                updateUI(allEntries);
-
-                // Clear fields
-                manualDateField.setText("");
-                manualTempField.setText("");
-                manualHumidityField.setText("");
-                manualConditionField.setText("");
-
-            } catch (ParseException ex) {
-                JOptionPane.showMessageDialog(WeatherApplication.this, "Invalid date format. Please use dd-MM-yyyy.", "Input Error", JOptionPane.ERROR_MESSAGE);
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(WeatherApplication.this, "Temperature and Humidity must be numbers.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                entry = EntryValidator.validate(manualDateField.getText(), manualTempField.getText(),
+                        manualHumidityField.getText(), manualConditionField.getText(), manualLocationField.getText());
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, ex.getMessage(), "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
+            addEntry(entry);
+
+            // Clear fields
+            manualDateField.setText("");
+            manualTempField.setText("");
+            manualHumidityField.setText("");
+            manualConditionField.setText("");
+            manualLocationField.setText("");
         }
     }
     
     class DeleteEntryListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            int selectedRow = table.getSelectedRow();
-            if (selectedRow >= 0) {
-                WeatherEntry entryToRemove = tableModel.getEntry(selectedRow);
-                allEntries.remove(entryToRemove);
-                fileManager.saveEntries(allEntries);
-                updateUI(allEntries);
+            int[] rows = selectedStoreRows();
+            if (rows.length > 0) {
+                removeRows(rows);
             } else {
                 JOptionPane.showMessageDialog(WeatherApplication.this, "Please select a row to delete.", "Delete Error", JOptionPane.ERROR_MESSAGE);
             }
         }
     }
-    
+
+    // Deletes the rows on show that match a date range, a condition and/or a
+    // temperature outlier test
+    class DeleteMatchingListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JTextField fromField = new JTextField(10);
+            JTextField toField = new JTextField(10);
+            JTextField conditionField = new JTextField(10);
+            JTextField sigmasField = new JTextField(5);
+            JPanel panel = new JPanel(new GridLayout(0, 2));
+            panel.add(new JLabel("From (dd-MM-yyyy):"));
+            panel.add(fromField);
+            panel.add(new JLabel("To (dd-MM-yyyy):"));
+            panel.add(toField);
+            panel.add(new JLabel("Condition:"));
+            panel.add(conditionField);
+            panel.add(new JLabel("Temperature outliers beyond (σ):"));
+            panel.add(sigmasField);
+            if (JOptionPane.showConfirmDialog(WeatherApplication.this, panel, "Delete Matching Rows",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            WeatherCriteria criteria;
+            try {
+                int startDay = fromField.getText().trim().isEmpty() ? Integer.MIN_VALUE : WeatherDates.parseEpochDay(fromField.getText().trim());
+                int endDay = toField.getText().trim().isEmpty() ? Integer.MAX_VALUE : WeatherDates.parseEpochDay(toField.getText().trim());
+                double sigmas = sigmasField.getText().trim().isEmpty() ? 0 : Double.parseDouble(sigmasField.getText().trim());
+                criteria = new WeatherCriteria(startDay, endDay, conditionField.getText(), sigmas);
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Invalid date format. Please use dd-MM-yyyy.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "The outlier limit must be a number.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            int[] rows = criteria.matchingRows(tableModel.getView());
+            if (rows.length == 0) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "No rows match.", "Delete Matching Rows", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            if (JOptionPane.showConfirmDialog(WeatherApplication.this, "Delete " + rows.length + " rows?", "Delete Matching Rows",
+                    JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+                removeRows(rows);
+            }
+        }
+    }
+
+    // Applies the same change to every selected row
+    class BulkEditListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            int[] rows = selectedStoreRows();
+            if (rows.length == 0) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Please select the rows to edit.", "Edit Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            JTextField conditionField = new JTextField(10);
+            JTextField locationField = new JTextField(10);
+            JTextField humidityField = new JTextField(5);
+            JTextField offsetField = new JTextField(5);
+            JPanel panel = new JPanel(new GridLayout(0, 2));
+            panel.add(new JLabel("Condition:"));
+            panel.add(conditionField);
+            panel.add(new JLabel("Location:"));
+            panel.add(locationField);
+            panel.add(new JLabel("Humidity (%):"));
+            panel.add(humidityField);
+            panel.add(new JLabel("Adjust temp by (°C):"));
+            panel.add(offsetField);
+            if (JOptionPane.showConfirmDialog(WeatherApplication.this, panel, "Edit " + rows.length + " Rows",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            WeatherEdit edit;
+            try {
+                Integer humidity = humidityField.getText().trim().isEmpty() ? null : Integer.valueOf(humidityField.getText().trim());
+                double offset = offsetField.getText().trim().isEmpty() ? 0 : Double.parseDouble(offsetField.getText().trim());
+                edit = new WeatherEdit(conditionField.getText(), locationField.getText(), humidity, offset);
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Temperature and Humidity must be numbers.", "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, ex.getMessage(), "Input Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            if (!edit.isEmpty()) {
+                editRows(rows, edit);
+            }
+        }
+    }
+
     class FilterListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
             Date startDate = startDateChooser.getDate();
             Date endDate = endDateChooser.getDate();
+            String location = locationModel.getSelectedItem() == ALL_LOCATIONS ? null : (String) locationModel.getSelectedItem();
 
-            if (startDate == null || endDate == null) {
-                updateUI(allEntries);
+            boolean datesSet = startDate != null && endDate != null;
+            if (!datesSet && location == null) {
+                showStore();
                 return;
             }
 
-            List<WeatherEntry> filtered = allEntries.stream()
-                    .filter(entry -> !entry.getDate().before(startDate) && !entry.getDate().after(endDate))
-                    .collect(Collectors.toList());
-            updateUI(filtered);
+            applyFilter(datesSet ? WeatherDates.toEpochDay(startDate) : Integer.MIN_VALUE,
+                    datesSet ? WeatherDates.toEpochDay(endDate) : Integer.MAX_VALUE, location);
         }
     }
     
+    class ImportCsvListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(WeatherApplication.this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                // Checked line by line with the manual entry rules, like a bulk import from the command line
+                Path source = chooser.getSelectedFile().toPath();
+                List<WeatherEntry> entries = new ArrayList<>();
+                BulkImporter.Status imported = BulkImporter.readFile(source, BulkFormat.forPath(source), entries);
+                if (!entries.isEmpty()) {
+                    addEntries(entries);
+                }
+                if (imported.getRejected() > 0) {
+                    StringBuilder message = new StringBuilder("Imported " + entries.size() + " entries; skipped "
+                            + imported.getRejected() + " lines:");
+                    for (String error : imported.getErrors()) {
+                        message.append('\n').append(error);
+                    }
+                    if (imported.getRejected() > imported.getErrors().size()) {
+                        message.append("\n...");
+                    }
+                    JOptionPane.showMessageDialog(WeatherApplication.this, message.toString(), "Import", JOptionPane.WARNING_MESSAGE);
+                }
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Failed to import: " + ex.getMessage(), "Import Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    class ExportCsvListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showSaveDialog(WeatherApplication.this) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                // Exports what the table shows, so a filtered range exports just that range
+                fileManager.exportCsv(chooser.getSelectedFile().toPath(), tableModel.getView());
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(WeatherApplication.this, "Failed to export: " + ex.getMessage(), "Export Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
     public static void main(String[] args) {
+        launch();
+    }
+
+    // Opens the dashboard on the EDT, or says why it can't, such as the
+    // data directory being in use by another process
+    public static void launch() {
         SwingUtilities.invokeLater(() -> {
-            new WeatherApplication().setVisible(true);
+            try {
+                new WeatherApplication().setVisible(true);
+            } catch (IllegalStateException e) {
+                JOptionPane.showMessageDialog(null, e.getMessage(), "Weather Information Dashboard", JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
+            }
         });
     }
-}
\ No newline at end of file
+
+    // What a background refresh produced; null fields keep the default
+    private static final class DerivedViews {
+        WeatherSummary statistics;
+        List<Rollup> series;
+        ChartPanel.Geometry chart;
+    }
+}
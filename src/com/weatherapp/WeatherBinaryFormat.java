@@ -0,0 +1,230 @@
+package com.weatherapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+// Binary weather log. Layout, all big-endian:
+//
+//   header  magic "WTHR", version, journal seq, row count, rows per block,
+//           condition dictionary (count, then length-prefixed UTF-8 names),
+//           location dictionary (same layout), CRC32 of everything before it
+//   blocks  up to BLOCK_ROWS rows each, stored column by column as fixed-width
+//           values (int day, double temperature, byte humidity, short
+//           condition code, short location code), followed by the CRC32 of
+//           the block
+//
+// Version 1 files have no location dictionary or column; their rows read
+// back with the empty location.
+//
+// Rows are written in the store's day order, so a load is a bulk read of each
+// column straight into the store's arrays with nothing to parse or sort.
+public final class WeatherBinaryFormat {
+    static final int MAGIC = 0x57544852;
+    static final short VERSION = 2;
+    static final int BLOCK_ROWS = 1 << 16;
+    // int + double + byte + short + short
+    private static final int ROW_BYTES = 17;
+    private static final int V1_ROW_BYTES = 15;
+
+    private WeatherBinaryFormat() {
+    }
+
+    public static LoadResult read(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        } catch (NoSuchFileException e) {
+            return new LoadResult(new WeatherStore(), 0, 0);
+        }
+    }
+
+    public static LoadResult read(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source, 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] fixed = new byte[4 + 2 + 8 + 4 + 4 + 4];
+        readFully(in, fixed);
+        crc.update(fixed);
+        ByteBuffer header = ByteBuffer.wrap(fixed);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a weather data file");
+        }
+        short version = header.getShort();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported weather data version " + version);
+        }
+        long seq = header.getLong();
+        int rows = header.getInt();
+        int blockRows = header.getInt();
+        int conditionCount = header.getInt();
+        if (rows < 0 || blockRows <= 0 || conditionCount < 0 || conditionCount > Short.MAX_VALUE + 1) {
+            throw new IOException("Corrupt weather data header");
+        }
+
+        WeatherStore store = new WeatherStore(0);
+        for (int code = 0; code < conditionCount; code++) {
+            if (store.encodeCondition(readName(in, crc)) != code) {
+                throw new IOException("Duplicate condition in weather data dictionary");
+            }
+        }
+        int locationCount = 1;
+        if (version == 1) {
+            store.encodeLocation("");
+        } else {
+            byte[] count = new byte[4];
+            readFully(in, count);
+            crc.update(count);
+            locationCount = ByteBuffer.wrap(count).getInt();
+            if (locationCount < 0 || locationCount > Short.MAX_VALUE + 1) {
+                throw new IOException("Corrupt weather data header");
+            }
+            for (int code = 0; code < locationCount; code++) {
+                if (store.encodeLocation(readName(in, crc)) != code) {
+                    throw new IOException("Duplicate location in weather data dictionary");
+                }
+            }
+        }
+        if (in.readInt() != (int) crc.getValue()) {
+            throw new IOException("Weather data header checksum mismatch");
+        }
+
+        int rowBytes = version == 1 ? V1_ROW_BYTES : ROW_BYTES;
+        int[] days = new int[rows];
+        double[] temperatures = new double[rows];
+        byte[] humidities = new byte[rows];
+        short[] codes = new short[rows];
+        short[] places = new short[rows];
+        byte[] block = new byte[Math.min(rows, blockRows) * rowBytes];
+        for (int from = 0; from < rows; from += blockRows) {
+            int count = Math.min(blockRows, rows - from);
+            int length = count * rowBytes;
+            readFully(in, block, length);
+            crc.reset();
+            crc.update(block, 0, length);
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Weather data block checksum mismatch at row " + from);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(block, 0, length);
+            buffer.asIntBuffer().get(days, from, count);
+            buffer.position(count * 4);
+            buffer.asDoubleBuffer().get(temperatures, from, count);
+            buffer.position(count * 12);
+            buffer.get(humidities, from, count);
+            buffer.asShortBuffer().get(codes, from, count);
+            if (version != 1) {
+                buffer.position(count * 15);
+                buffer.asShortBuffer().get(places, from, count);
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            if (codes[row] < 0 || codes[row] >= conditionCount) {
+                throw new IOException("Unknown condition code at row " + row);
+            }
+            if (places[row] < 0 || places[row] >= locationCount) {
+                throw new IOException("Unknown location code at row " + row);
+            }
+        }
+
+        try {
+            store.adoptColumns(days, temperatures, humidities, codes, places, rows);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt weather data: " + e.getMessage(), e);
+        }
+        // Written in order, so this only checks; it guards against hand-edited files
+        store.sortByDay();
+        return new LoadResult(store, 0, seq);
+    }
+
+    public static void write(OutputStream target, WeatherView entries, long seq) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(target, 1 << 16));
+        int rows = entries.size();
+        int conditionCount = entries.conditionCount();
+
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(4 + 2 + 8 + 4 + 4 + 4);
+        header.putInt(MAGIC).putShort(VERSION).putLong(seq).putInt(rows).putInt(BLOCK_ROWS).putInt(conditionCount);
+        out.write(header.array());
+        crc.update(header.array());
+        for (int code = 0; code < conditionCount; code++) {
+            writeName(out, crc, entries.conditionName(code));
+        }
+        int locationCount = entries.locationCount();
+        byte[] locationHeader = ByteBuffer.allocate(4).putInt(locationCount).array();
+        out.write(locationHeader);
+        crc.update(locationHeader);
+        for (int code = 0; code < locationCount; code++) {
+            writeName(out, crc, entries.locationName(code));
+        }
+        out.writeInt((int) crc.getValue());
+
+        ByteBuffer block = ByteBuffer.allocate(Math.min(rows, BLOCK_ROWS) * ROW_BYTES);
+        for (int from = 0; from < rows; from += BLOCK_ROWS) {
+            int count = Math.min(BLOCK_ROWS, rows - from);
+            block.clear();
+            for (int row = from; row < from + count; row++) {
+                block.putInt(entries.getEpochDay(row));
+            }
+            for (int row = from; row < from + count; row++) {
+                block.putDouble(entries.getTemperature(row));
+            }
+            for (int row = from; row < from + count; row++) {
+                block.put((byte) entries.getHumidity(row));
+            }
+            for (int row = from; row < from + count; row++) {
+                block.putShort((short) entries.getConditionCode(row));
+            }
+            for (int row = from; row < from + count; row++) {
+                block.putShort((short) entries.getLocationCode(row));
+            }
+            crc.reset();
+            crc.update(block.array(), 0, block.position());
+            out.write(block.array(), 0, block.position());
+            out.writeInt((int) crc.getValue());
+        }
+        out.flush();
+    }
+
+    private static String readName(DataInputStream in, CRC32 crc) throws IOException {
+        byte[] length = new byte[2];
+        readFully(in, length);
+        byte[] name = new byte[((length[0] & 0xff) << 8) | (length[1] & 0xff)];
+        readFully(in, name);
+        crc.update(length);
+        crc.update(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    private static void writeName(DataOutputStream out, CRC32 crc, String text) throws IOException {
+        byte[] name = text.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xffff) {
+            throw new IOException("Name too long: " + text.substring(0, 32) + "...");
+        }
+        byte[] length = {(byte) (name.length >>> 8), (byte) name.length};
+        out.write(length);
+        out.write(name);
+        crc.update(length);
+        crc.update(name);
+    }
+
+    private static void readFully(DataInputStream in, byte[] bytes) throws IOException {
+        readFully(in, bytes, bytes.length);
+    }
+
+    private static void readFully(DataInputStream in, byte[] bytes, int length) throws IOException {
+        try {
+            in.readFully(bytes, 0, length);
+        } catch (EOFException e) {
+            throw new IOException("Weather data file is truncated", e);
+        }
+    }
+}
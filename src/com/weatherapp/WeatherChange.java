@@ -0,0 +1,48 @@
+package com.weatherapp;
+
+// One change to the rows in memory: a row inserted into or deleted from the
+// store at the given position, or a reset after which views should assume
+// anything may have changed (months paged in or evicted, a new filter).
+public final class WeatherChange {
+    public enum Kind {
+        INSERTED, DELETED, RESET
+    }
+
+    private static final WeatherChange RESET = new WeatherChange(Kind.RESET, -1, null);
+
+    private final Kind kind;
+    private final int storeRow;
+    private final WeatherEntry entry;
+
+    private WeatherChange(Kind kind, int storeRow, WeatherEntry entry) {
+        this.kind = kind;
+        this.storeRow = storeRow;
+        this.entry = entry;
+    }
+
+    public static WeatherChange inserted(int storeRow, WeatherEntry entry) {
+        return new WeatherChange(Kind.INSERTED, storeRow, entry);
+    }
+
+    public static WeatherChange deleted(int storeRow, WeatherEntry entry) {
+        return new WeatherChange(Kind.DELETED, storeRow, entry);
+    }
+
+    public static WeatherChange reset() {
+        return RESET;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Store position the row was inserted at or deleted from; -1 for a reset
+    public int getStoreRow() {
+        return storeRow;
+    }
+
+    // The row inserted or deleted; null for a reset
+    public WeatherEntry getEntry() {
+        return entry;
+    }
+}
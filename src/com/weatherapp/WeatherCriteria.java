@@ -0,0 +1,75 @@
+package com.weatherapp;
+
+import java.util.Arrays;
+
+// Which rows a bulk delete applies to: a date range, a condition and
+// temperature outliers, all optional and combined with AND. Outliers are rows
+// more than the given number of standard deviations from the mean temperature
+// of the other rows that pass the other tests, so a faulty sensor day stands
+// out against its own period rather than the whole log, and a single extreme
+// reading can't widen the deviation enough to hide itself.
+public class WeatherCriteria {
+    private final int startDay;
+    private final int endDay;
+    // Null matches any condition
+    private final String condition;
+    // Zero or less turns the outlier test off
+    private final double outlierSigmas;
+
+    public WeatherCriteria(int startDay, int endDay, String condition, double outlierSigmas) {
+        this.startDay = startDay;
+        this.endDay = endDay;
+        this.condition = condition == null || condition.trim().isEmpty() ? null : condition.trim();
+        this.outlierSigmas = outlierSigmas;
+    }
+
+    // Store rows of the matching rows of the view, ascending
+    public int[] matchingRows(WeatherView view) {
+        int[] rows = new int[view.size()];
+        int count = 0;
+        Distribution temperatures = Distribution.temperatures();
+        for (int row = 0; row < view.size(); row++) {
+            int day = view.getEpochDay(row);
+            if (day < startDay || day > endDay) {
+                continue;
+            }
+            if (condition != null && !condition.equalsIgnoreCase(view.getCondition(row))) {
+                continue;
+            }
+            rows[count++] = row;
+            temperatures.add(view.getTemperature(row));
+        }
+        if (outlierSigmas > 0) {
+            double mean = temperatures.getMean();
+            double squares = temperatures.getVariance() * (count - 1);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (isOutlier(view.getTemperature(rows[i]) - mean, count, squares)) {
+                    rows[kept++] = rows[i];
+                }
+            }
+            count = kept;
+        }
+        for (int i = 0; i < count; i++) {
+            rows[i] = view.sourceRow(rows[i]);
+        }
+        int[] matching = Arrays.copyOf(rows, count);
+        Arrays.sort(matching);
+        return matching;
+    }
+
+    // Whether a row deviation from the mean of all count rows is beyond the
+    // limit against the mean and deviation of the other rows, taken out of the
+    // sum of squared deviations rather than summed again for every row. With
+    // fewer than two other rows there is no deviation and nothing is an outlier.
+    private boolean isOutlier(double deviation, int count, double squares) {
+        int others = count - 1;
+        if (others < 2) {
+            return false;
+        }
+        double fromOthers = deviation * count / others;
+        double othersSquares = Math.max(0, squares - deviation * deviation * count / others);
+        double limit = outlierSigmas * Math.sqrt(othersSquares / (others - 1));
+        return Math.abs(fromOthers) > limit;
+    }
+}
@@ -0,0 +1,113 @@
+package com.weatherapp;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+// dd-MM-yyyy handling shared by persistence and the UI. Dates are carried as
+// epoch days; the parser works directly on the characters and allocates
+// nothing for valid input. Everything here is stateless and thread-safe.
+public final class WeatherDates {
+    public static final String PATTERN = "dd-MM-yyyy";
+    public static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern(PATTERN);
+
+    private static final int DAYS_0000_TO_1970 = 719528;
+
+    private WeatherDates() {
+    }
+
+    public static int parseEpochDay(CharSequence text) {
+        return parseEpochDay(text, 0, text.length());
+    }
+
+    // Parses text[start, end) as d-M-yyyy with one or two digit day and month
+    public static int parseEpochDay(CharSequence text, int start, int end) {
+        int pos = start;
+        int day = 0;
+        int digits = 0;
+        while (pos < end && digits < 2 && isDigit(text.charAt(pos))) {
+            day = day * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+        if (digits == 0 || pos >= end || text.charAt(pos++) != '-') {
+            throw invalid(text, start, end);
+        }
+        int month = 0;
+        digits = 0;
+        while (pos < end && digits < 2 && isDigit(text.charAt(pos))) {
+            month = month * 10 + (text.charAt(pos++) - '0');
+            digits++;
+        }
+        if (digits == 0 || pos >= end || text.charAt(pos++) != '-' || end - pos != 4) {
+            throw invalid(text, start, end);
+        }
+        int year = 0;
+        for (; pos < end; pos++) {
+            char c = text.charAt(pos);
+            if (!isDigit(c)) {
+                throw invalid(text, start, end);
+            }
+            year = year * 10 + (c - '0');
+        }
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw invalid(text, start, end);
+        }
+        return toEpochDay(year, month, day);
+    }
+
+    public static String format(int epochDay) {
+        return FORMAT.format(LocalDate.ofEpochDay(epochDay));
+    }
+
+    // Conversions for Swing components that still speak java.util.Date
+    public static int toEpochDay(Date date) {
+        return (int) date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+
+    public static Date toDate(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    // Same arithmetic as LocalDate.toEpochDay, for years 0-9999
+    static int toEpochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return (int) (total - DAYS_0000_TO_1970);
+    }
+
+    static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static DateTimeParseException invalid(CharSequence text, int start, int end) {
+        String value = text.subSequence(start, end).toString();
+        return new DateTimeParseException("Expected a date in " + PATTERN + " format: " + value, value, 0);
+    }
+}
@@ -0,0 +1,34 @@
+package com.weatherapp;
+
+// Changes applied to every row of a bulk edit. Each field is optional; a row
+// keeps whatever the edit leaves unset. Dates are never edited, so an edited
+// row stays in the month it was in.
+public class WeatherEdit {
+    // Null leaves the field as it is
+    private final String condition;
+    private final String location;
+    private final Integer humidity;
+    private final double temperatureOffset;
+
+    public WeatherEdit(String condition, String location, Integer humidity, double temperatureOffset) {
+        if (humidity != null && (humidity < 0 || humidity > 100)) {
+            throw new IllegalArgumentException("Humidity must be between 0 and 100.");
+        }
+        this.condition = condition == null || condition.trim().isEmpty() ? null : condition.trim();
+        this.location = location == null || location.trim().isEmpty() ? null : FileManager.cleanLocation(location);
+        this.humidity = humidity;
+        this.temperatureOffset = temperatureOffset;
+    }
+
+    public boolean isEmpty() {
+        return condition == null && location == null && humidity == null && temperatureOffset == 0;
+    }
+
+    public WeatherEntry apply(WeatherEntry entry) {
+        return new WeatherEntry(entry.getDate(),
+                entry.getTemperature() + temperatureOffset,
+                humidity != null ? humidity : entry.getHumidity(),
+                condition != null ? condition : entry.getCondition(),
+                location != null ? location : entry.getLocation());
+    }
+}
@@ -1,26 +1,33 @@
 package com.weatherapp;
 
-import java.util.Date;
+import java.time.LocalDate;
 
 public class WeatherEntry {
-    private Date date;
+    private LocalDate date;
     private double temperature;
     private int humidity;
     private String condition;
+    // City or site the reading belongs to; empty for readings recorded before locations were kept
+    private String location;
 
-    public WeatherEntry(Date date, double temperature, int humidity, String condition) {
+    public WeatherEntry(LocalDate date, double temperature, int humidity, String condition) {
+        this(date, temperature, humidity, condition, "");
+    }
+
+    public WeatherEntry(LocalDate date, double temperature, int humidity, String condition, String location) {
         this.date = date;
         this.temperature = temperature;
         this.humidity = humidity;
         this.condition = condition;
+        this.location = location;
     }
 
     // Getters and setters
-    public Date getDate() {
+    public LocalDate getDate() {
         return date;
     }
 
-    public void setDate(Date date) {
+    public void setDate(LocalDate date) {
         this.date = date;
     }
 
@@ -47,4 +54,12 @@ public class WeatherEntry {
     public void setCondition(String condition) {
         this.condition = condition;
     }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
 }
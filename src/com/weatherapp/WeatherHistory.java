@@ -0,0 +1,134 @@
+package com.weatherapp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import javax.management.NotificationEmitter;
+
+// The part of the weather log held in memory: the most recent months at
+// startup, extended back month by month when older dates are asked for and
+// cut back again when memory runs short. The loaded months are always one
+// contiguous run ending at the newest, so the store answers any range that
+// starts on or after getLoadedFrom() exactly as if everything were loaded.
+//
+// New rows go through add(). Rows for a month that is not loaded must not be
+// added to the store directly; call ensureLoaded() for their day first.
+public class WeatherHistory {
+    private final FileManager fileManager;
+    private final int recentPartitions;
+    private final WeatherStore store;
+    private final StatisticsAccumulator statistics;
+    // Oldest month in memory, or null once nothing older is left on disk
+    private YearMonth loadedFrom;
+
+    public WeatherHistory(FileManager fileManager, int recentPartitions) {
+        this.fileManager = fileManager;
+        this.recentPartitions = recentPartitions;
+        List<YearMonth> months = fileManager.getPartitions();
+        if (months.size() > recentPartitions) {
+            loadedFrom = months.get(months.size() - recentPartitions);
+        }
+        store = fileManager.loadMonths(loadedFrom, null);
+        statistics = StatisticsAccumulator.of(store);
+    }
+
+    public WeatherStore getStore() {
+        return store;
+    }
+
+    // Statistics over the loaded rows
+    public StatisticsAccumulator getStatistics() {
+        return statistics;
+    }
+
+    public YearMonth getLoadedFrom() {
+        return loadedFrom;
+    }
+
+    // Pages in every month from the one containing the given day up to the
+    // loaded ones. Returns true if rows were added, which moves existing rows.
+    public boolean ensureLoaded(int epochDay) {
+        if (loadedFrom == null) {
+            return false;
+        }
+        YearMonth month = YearMonth.from(LocalDate.ofEpochDay(epochDay));
+        if (!month.isBefore(loadedFrom)) {
+            return false;
+        }
+        List<YearMonth> months = fileManager.getPartitions();
+        // Reaching back to the oldest month on disk loads everything
+        YearMonth from = months.isEmpty() || !month.isAfter(months.get(0)) ? null : month;
+        WeatherStore older = fileManager.loadMonths(from, loadedFrom.minusMonths(1));
+        store.addAll(older);
+        statistics.merge(StatisticsAccumulator.of(older));
+        loadedFrom = from;
+        return !older.isEmpty();
+    }
+
+    // Journals new rows and adds them to the store and statistics, paging in
+    // their months first. Paging in replays the journal, so rows journaled
+    // before it would come back from disk and then be added a second time.
+    // Returns the store row each entry was inserted at, as of its insert.
+    public int[] add(List<WeatherEntry> entries) {
+        for (WeatherEntry entry : entries) {
+            ensureLoaded((int) entry.getDate().toEpochDay());
+        }
+        fileManager.appendEntries(entries);
+        int[] rows = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            rows[i] = store.add(entries.get(i));
+            statistics.add(entries.get(i));
+        }
+        return rows;
+    }
+
+    // Drops loaded months older than both the recent ones and keepFrom, which
+    // may be null. Returns the number of rows dropped; they stay on disk.
+    public int evict(YearMonth keepFrom) {
+        List<YearMonth> months = fileManager.getPartitions();
+        if (months.size() <= recentPartitions) {
+            return 0;
+        }
+        YearMonth cut = months.get(months.size() - recentPartitions);
+        if (keepFrom != null && keepFrom.isBefore(cut)) {
+            cut = keepFrom;
+        }
+        if (loadedFrom != null && !cut.isAfter(loadedFrom)) {
+            return 0;
+        }
+        int rows = store.lowerBound((int) cut.atDay(1).toEpochDay());
+        for (int row = 0; row < rows; row++) {
+            statistics.remove(store.getTemperature(row), store.getHumidity(row), store.getCondition(row));
+        }
+        store.removeRange(0, rows);
+        store.trimToSize();
+        loadedFrom = cut;
+        return rows;
+    }
+
+    // Runs the action, on a JMX notification thread, whenever a heap pool is
+    // still above the given fraction of its maximum right after a collection.
+    public static void onMemoryPressure(double fraction, Runnable action) {
+        boolean watching = false;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                pool.setCollectionUsageThreshold((long) (max * fraction));
+                watching = true;
+            }
+        }
+        if (!watching) {
+            return;
+        }
+        NotificationEmitter emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        emitter.addNotificationListener((notification, handback) -> {
+            if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+                action.run();
+            }
+        }, null, null);
+    }
+}
@@ -0,0 +1,374 @@
+package com.weatherapp;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
+
+// Read-only JSON API over the weather log, on the JDK's built-in HTTP server:
+//
+//   GET /api/range?from=&to=&city=                rows, oldest first
+//   GET /api/rollups?from=&to=&city=&granularity= day, week or month buckets
+//   GET /api/stats?from=&to=&city=                summary of the rows
+//
+// Dates are dd-MM-yyyy and every parameter is optional. Responses are
+// written as they are produced, gzipped when the client accepts it, and
+// carry a weak ETag derived from the query and the store's version, so a
+// client repeating a query gets 304 Not Modified until the store changes.
+//
+// Small responses wait out the client's delayed ACK unless the JDK server
+// runs with -Dsun.net.httpserver.nodelay=true, which Main serve sets.
+//
+// Requests read a snapshot of a ConcurrentWeatherStore, so they never wait
+// for writes and never see half of one. Writes made through the same store,
+// such as ingestion in the same process, show up in the next request.
+public class WeatherQueryServer {
+    private static final int BACKLOG = 1024;
+    // Worker threads when virtual threads are not available
+    private static final int FALLBACK_THREADS = 64;
+    private static final int WRITE_BUFFER = 16 * 1024;
+
+    private static final Metrics.Timer RANGE_TIME = Metrics.timer("http.range");
+    private static final Metrics.Timer ROLLUPS_TIME = Metrics.timer("http.rollups");
+    private static final Metrics.Timer STATS_TIME = Metrics.timer("http.stats");
+    private static final Metrics.Counter NOT_MODIFIED = Metrics.counter("http.notModified");
+    private static final Metrics.Counter CLIENT_ERRORS = Metrics.counter("http.clientErrors");
+    private static final Metrics.Counter SERVER_ERRORS = Metrics.counter("http.serverErrors");
+
+    private final ConcurrentWeatherStore store;
+    private final InetSocketAddress address;
+    // Store versions start again in every process, so tags also carry one
+    // picked per server and a restarted server never matches an old tag
+    private final long instance = ThreadLocalRandom.current().nextLong();
+    private HttpServer server;
+    private ExecutorService workers;
+
+    // Serves the whole log, loaded into a store of the server's own
+    public WeatherQueryServer(FileManager fileManager, InetSocketAddress address) {
+        this(new ConcurrentWeatherStore(fileManager), address);
+    }
+
+    public WeatherQueryServer(ConcurrentWeatherStore store, InetSocketAddress address) {
+        this.store = store;
+        this.address = address;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(address, BACKLOG);
+        server.createContext("/api/range", exchange -> handle(exchange, RANGE_TIME, this::range));
+        server.createContext("/api/rollups", exchange -> handle(exchange, ROLLUPS_TIME, this::rollups));
+        server.createContext("/api/stats", exchange -> handle(exchange, STATS_TIME, this::stats));
+        workers = newWorkerExecutor();
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        workers.shutdown();
+        server = null;
+    }
+
+    // The bound port, for servers started on port 0
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Loads the log again, for changes made to the FileManager directly
+    public void reload() {
+        store.reload();
+    }
+
+    // Virtual threads on Java 21 and later, looked up reflectively so the
+    // build can keep targeting 17; a fixed pool before that
+    private static ExecutorService newWorkerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, r -> {
+                Thread thread = new Thread(r, "weather-query-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange, Metrics.Timer timer, Endpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                sendError(exchange, 405, "Only GET is supported");
+                return;
+            }
+            Query query;
+            try {
+                query = new Query(exchange.getRequestURI().getRawQuery());
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, e.getMessage());
+                return;
+            }
+            ConcurrentWeatherStore.Snapshot current = store.snapshot();
+            String etag = etag(exchange.getRequestURI().getPath(), query, current);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Cache-Control", "no-cache");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                NOT_MODIFIED.increment();
+                // The JDK 17 server sometimes resets a kept-alive connection
+                // after a response without a body when handlers run on an
+                // executor; closing it makes the client reconnect cleanly
+                headers.set("Connection", "close");
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            headers.set("Content-Type", "application/json; charset=utf-8");
+            headers.set("Vary", "Accept-Encoding");
+            boolean gzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (gzip) {
+                headers.set("Content-Encoding", "gzip");
+            }
+            // Length 0: chunked, written as it is produced
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream body = exchange.getResponseBody();
+            if (gzip) {
+                body = new GZIPOutputStream(body, WRITE_BUFFER);
+            }
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), WRITE_BUFFER)) {
+                endpoint.write(current, query, out);
+            }
+        } catch (IOException e) {
+            // Usually the client went away mid-response
+            SERVER_ERRORS.increment();
+        } catch (RuntimeException e) {
+            SERVER_ERRORS.increment();
+            e.printStackTrace();
+            try {
+                sendError(exchange, 500, "Internal error");
+            } catch (IOException ignored) {
+                // Headers were already sent
+            }
+        } finally {
+            exchange.close();
+            timer.recordSince(start);
+        }
+    }
+
+    private void range(ConcurrentWeatherStore.Snapshot current, Query query, Writer out) throws IOException {
+        WeatherView rows = current.range(query.startDay, query.endDay, query.city);
+        out.write('[');
+        for (int row = 0; row < rows.size(); row++) {
+            if (row > 0) {
+                out.write(',');
+            }
+            out.write("{\"date\":\"");
+            out.write(WeatherDates.FORMAT.format(LocalDate.ofEpochDay(rows.getEpochDay(row))));
+            out.write("\",\"city\":");
+            out.write(JSONObject.quote(rows.getLocation(row)));
+            out.write(",\"temperature\":");
+            out.write(Double.toString(rows.getTemperature(row)));
+            out.write(",\"humidity\":");
+            out.write(Integer.toString(rows.getHumidity(row)));
+            out.write(",\"condition\":");
+            out.write(JSONObject.quote(rows.getCondition(row)));
+            out.write('}');
+        }
+        out.write(']');
+    }
+
+    private void rollups(ConcurrentWeatherStore.Snapshot current, Query query, Writer out) throws IOException {
+        // The snapshot's rollups cover every location; one city's are built from its rows
+        List<Rollup> series = query.city == null
+                ? current.getRollups().series(query.startDay, query.endDay, query.granularity)
+                : RollupIndex.of(current.range(query.startDay, query.endDay, query.city))
+                        .series(Integer.MIN_VALUE, Integer.MAX_VALUE, query.granularity);
+        out.write('[');
+        for (int i = 0; i < series.size(); i++) {
+            Rollup bucket = series.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write("{\"start\":\"");
+            out.write(WeatherDates.FORMAT.format(LocalDate.ofEpochDay(bucket.getStartDay())));
+            out.write("\",");
+            writeSummary(bucket, out);
+            out.write('}');
+        }
+        out.write(']');
+    }
+
+    private void stats(ConcurrentWeatherStore.Snapshot current, Query query, Writer out) throws IOException {
+        WeatherSummary summary = query.city == null
+                ? current.getRollups().summarize(query.startDay, query.endDay)
+                : StatisticsAccumulator.of(current.range(query.startDay, query.endDay, query.city));
+        out.write('{');
+        writeSummary(summary, out);
+        out.write(",\"temperature\":");
+        writeDistribution(summary.getTemperatures(), out);
+        out.write(",\"humidity\":");
+        writeDistribution(summary.getHumidities(), out);
+        out.write('}');
+    }
+
+    private static void writeSummary(WeatherSummary summary, Writer out) throws IOException {
+        boolean empty = summary.isEmpty();
+        out.write("\"count\":");
+        out.write(Long.toString(summary.getCount()));
+        out.write(",\"average\":");
+        out.write(number(empty ? Double.NaN : summary.getAverage()));
+        out.write(",\"min\":");
+        out.write(number(empty ? Double.NaN : summary.getMin()));
+        out.write(",\"max\":");
+        out.write(number(empty ? Double.NaN : summary.getMax()));
+        out.write(",\"mostCommonCondition\":");
+        String condition = summary.getMostCommonCondition();
+        out.write(condition == null ? "null" : JSONObject.quote(condition));
+    }
+
+    private static void writeDistribution(Distribution distribution, Writer out) throws IOException {
+        boolean empty = distribution.getCount() == 0;
+        out.write("{\"p5\":");
+        out.write(number(empty ? Double.NaN : distribution.getPercentile(5)));
+        out.write(",\"p50\":");
+        out.write(number(empty ? Double.NaN : distribution.getPercentile(50)));
+        out.write(",\"p95\":");
+        out.write(number(empty ? Double.NaN : distribution.getPercentile(95)));
+        out.write(",\"standardDeviation\":");
+        out.write(number(distribution.getStandardDeviation()));
+        out.write('}');
+    }
+
+    // JSON has no NaN or infinities
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+    // Hash of the endpoint, its parameters and the snapshot's version, so a
+    // tag costs the same whatever the query reads. Any write, or a reload,
+    // gives every query a new tag, even where its rows didn't change. Weak,
+    // since gzipped and plain bodies differ byte for byte.
+    private String etag(String path, Query query, ConcurrentWeatherStore.Snapshot snapshot) {
+        long hash = mix(path.hashCode(), query.granularity.ordinal());
+        hash = mix(hash, query.startDay);
+        hash = mix(hash, query.endDay);
+        hash = mix(hash, query.city == null ? 0 : query.city.hashCode());
+        hash = mix(hash, instance);
+        hash = mix(hash, snapshot.getVersion());
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // Weak comparison: W/"x" and "x" match
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(opaque)
+                    || (candidate.startsWith("W/") && candidate.substring(2).equals(opaque))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (status < 500) {
+            CLIENT_ERRORS.increment();
+        }
+        byte[] body = ("{\"error\":" + JSONObject.quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private interface Endpoint {
+        void write(ConcurrentWeatherStore.Snapshot snapshot, Query query, Writer out) throws IOException;
+    }
+
+    // Parsed query string; throws IllegalArgumentException with a message fit for the client
+    private static final class Query {
+        final int startDay;
+        final int endDay;
+        // Null for all cities
+        final String city;
+        final RollupIndex.Granularity granularity;
+
+        Query(String rawQuery) {
+            Map<String, String> parameters = new HashMap<>();
+            if (rawQuery != null && !rawQuery.isEmpty()) {
+                for (String pair : rawQuery.split("&")) {
+                    int equals = pair.indexOf('=');
+                    String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+                    String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+                    parameters.put(name, value.trim());
+                }
+            }
+            startDay = day(parameters.get("from"), Integer.MIN_VALUE);
+            endDay = day(parameters.get("to"), Integer.MAX_VALUE);
+            String cityName = parameters.get("city");
+            city = cityName == null || cityName.isEmpty() ? null : FileManager.cleanLocation(cityName);
+            String granularityName = parameters.getOrDefault("granularity", "day");
+            try {
+                granularity = RollupIndex.Granularity.valueOf(granularityName.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("granularity must be day, week or month");
+            }
+        }
+
+        private static int day(String text, int unbounded) {
+            if (text == null || text.isEmpty()) {
+                return unbounded;
+            }
+            try {
+                return WeatherDates.parseEpochDay(text);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Dates must be dd-MM-yyyy: " + text);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.weatherapp;
+
+// A contiguous run of rows [from, to) of a WeatherStore. No data is copied;
+// the slice reads the store's arrays and goes stale once the store is mutated.
+public class WeatherSlice implements WeatherView {
+    private final WeatherStore store;
+    private final int from;
+    private final int to;
+
+    public WeatherSlice(WeatherStore store, int from, int to) {
+        if (from < 0 || to > store.size() || from > to) {
+            throw new IndexOutOfBoundsException("Slice [" + from + ", " + to + ") out of bounds for size " + store.size());
+        }
+        this.store = store;
+        this.from = from;
+        this.to = to;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public int getTo() {
+        return to;
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public int getEpochDay(int row) {
+        return store.getEpochDay(toStoreRow(row));
+    }
+
+    @Override
+    public double getTemperature(int row) {
+        return store.getTemperature(toStoreRow(row));
+    }
+
+    @Override
+    public int getHumidity(int row) {
+        return store.getHumidity(toStoreRow(row));
+    }
+
+    @Override
+    public int getConditionCode(int row) {
+        return store.getConditionCode(toStoreRow(row));
+    }
+
+    @Override
+    public String getCondition(int row) {
+        return store.getCondition(toStoreRow(row));
+    }
+
+    @Override
+    public int conditionCount() {
+        return store.conditionCount();
+    }
+
+    @Override
+    public String conditionName(int code) {
+        return store.conditionName(code);
+    }
+
+    @Override
+    public int getLocationCode(int row) {
+        return store.getLocationCode(toStoreRow(row));
+    }
+
+    @Override
+    public String getLocation(int row) {
+        return store.getLocation(toStoreRow(row));
+    }
+
+    @Override
+    public int locationCount() {
+        return store.locationCount();
+    }
+
+    @Override
+    public String locationName(int code) {
+        return store.locationName(code);
+    }
+
+    @Override
+    public int sourceRow(int row) {
+        return toStoreRow(row);
+    }
+
+    private int toStoreRow(int row) {
+        if (row < 0 || row >= to - from) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + (to - from));
+        }
+        return from + row;
+    }
+}
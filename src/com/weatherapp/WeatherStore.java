@@ -0,0 +1,594 @@
+package com.weatherapp;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Columnar store for weather readings: one primitive array per field and
+// dictionaries for the condition and location strings. Rows take 17 bytes
+// instead of a WeatherEntry, a LocalDate and two String references each.
+//
+// Rows are kept ordered by date (entries on the same day stay in insertion
+// order), so date ranges resolve to contiguous slices by binary search. Each
+// location also gets an index of its row positions, built on first use after
+// a change, so one city's rows can be read without scanning the others.
+public class WeatherStore implements WeatherView {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int[] NO_ROWS = new int[0];
+
+    private int[] epochDays;
+    private double[] temperatures;
+    private byte[] humidities;
+    private short[] conditionCodes;
+    private short[] locationCodes;
+    private int size;
+
+    private final Dictionary conditions = new Dictionary("weather conditions");
+    private final Dictionary locations = new Dictionary("locations");
+
+    // Bumped by every change; the location index is rebuilt when it falls behind
+    private int modCount;
+    private int indexedModCount = -1;
+    private int[][] locationRows;
+
+    public WeatherStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public WeatherStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        epochDays = new int[capacity];
+        temperatures = new double[capacity];
+        humidities = new byte[capacity];
+        conditionCodes = new short[capacity];
+        locationCodes = new short[capacity];
+    }
+
+    public static WeatherStore of(List<WeatherEntry> entries) {
+        WeatherStore store = new WeatherStore(entries.size());
+        for (WeatherEntry entry : entries) {
+            store.append((int) entry.getDate().toEpochDay(), entry.getTemperature(), entry.getHumidity(),
+                    entry.getCondition(), entry.getLocation());
+        }
+        store.sortByDay();
+        return store;
+    }
+
+    // Inserts the reading after any existing rows for the same day and
+    // returns the row it ended up at.
+    public int add(WeatherEntry entry) {
+        return add((int) entry.getDate().toEpochDay(), entry.getTemperature(), entry.getHumidity(),
+                entry.getCondition(), entry.getLocation());
+    }
+
+    public int add(int epochDay, double temperature, int humidity, String condition) {
+        return add(epochDay, temperature, humidity, condition, "");
+    }
+
+    public int add(int epochDay, double temperature, int humidity, String condition, String location) {
+        int row = upperBound(epochDay);
+        if (row == size) {
+            append(epochDay, temperature, humidity, condition, location);
+            return row;
+        }
+        validateHumidity(humidity);
+        short code = encodeCondition(condition);
+        short locationCode = encodeLocation(location);
+        ensureCapacity(size + 1);
+        int tail = size - row;
+        System.arraycopy(epochDays, row, epochDays, row + 1, tail);
+        System.arraycopy(temperatures, row, temperatures, row + 1, tail);
+        System.arraycopy(humidities, row, humidities, row + 1, tail);
+        System.arraycopy(conditionCodes, row, conditionCodes, row + 1, tail);
+        System.arraycopy(locationCodes, row, locationCodes, row + 1, tail);
+        set(row, epochDay, temperature, humidity, code, locationCode);
+        size++;
+        modCount++;
+        return row;
+    }
+
+    // Rows dated startDay..endDay inclusive, as a view sharing this store's arrays
+    public WeatherSlice range(int startDay, int endDay) {
+        if (endDay < startDay) {
+            return new WeatherSlice(this, 0, 0);
+        }
+        return new WeatherSlice(this, lowerBound(startDay), upperBound(endDay));
+    }
+
+    // Rows of one location dated startDay..endDay inclusive; a null location
+    // means all of them. Only that location's rows are visited.
+    public WeatherView range(int startDay, int endDay, String location) {
+        if (location == null) {
+            return range(startDay, endDay);
+        }
+        Integer code = locations.find(location);
+        if (code == null || endDay < startDay) {
+            return new LocationSlice(this, NO_ROWS, 0, 0);
+        }
+        int[] rows = locationRows(code);
+        return new LocationSlice(this, rows, firstAtOrAfter(rows, lowerBound(startDay)), firstAtOrAfter(rows, upperBound(endDay)));
+    }
+
+    public WeatherView forLocation(String location) {
+        return range(Integer.MIN_VALUE, Integer.MAX_VALUE, location);
+    }
+
+    public WeatherSlice onDay(int epochDay) {
+        return range(epochDay, epochDay);
+    }
+
+    // Rows from the last given number of days, today included
+    public WeatherSlice lastDays(int days) {
+        int today = (int) LocalDate.now().toEpochDay();
+        return range(today - days + 1, today);
+    }
+
+    // First row dated on or after the given day
+    public int lowerBound(int epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] < epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First row dated after the given day
+    public int upperBound(int epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (epochDays[mid] <= epochDay) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public WeatherEntry remove(int row) {
+        checkRow(row);
+        WeatherEntry removed = getEntry(row);
+        int tail = size - row - 1;
+        System.arraycopy(epochDays, row + 1, epochDays, row, tail);
+        System.arraycopy(temperatures, row + 1, temperatures, row, tail);
+        System.arraycopy(humidities, row + 1, humidities, row, tail);
+        System.arraycopy(conditionCodes, row + 1, conditionCodes, row, tail);
+        System.arraycopy(locationCodes, row + 1, locationCodes, row, tail);
+        size--;
+        modCount++;
+        return removed;
+    }
+
+    // Removes rows from..to-1 in one shift
+    public void removeRange(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Range " + from + ".." + to + " out of bounds for size " + size);
+        }
+        int tail = size - to;
+        System.arraycopy(epochDays, to, epochDays, from, tail);
+        System.arraycopy(temperatures, to, temperatures, from, tail);
+        System.arraycopy(humidities, to, humidities, from, tail);
+        System.arraycopy(conditionCodes, to, conditionCodes, from, tail);
+        System.arraycopy(locationCodes, to, locationCodes, from, tail);
+        size -= to - from;
+        modCount++;
+    }
+
+    // Removes the given rows, in ascending order without repeats, closing the
+    // gaps in one pass over the columns. Returns the removed rows in order.
+    public List<WeatherEntry> removeRows(int[] rows) {
+        List<WeatherEntry> removed = new ArrayList<>(rows.length);
+        if (rows.length == 0) {
+            return removed;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            checkRow(rows[i]);
+            if (i > 0 && rows[i] <= rows[i - 1]) {
+                throw new IllegalArgumentException("Rows to remove are not ascending");
+            }
+            removed.add(getEntry(rows[i]));
+        }
+        int write = rows[0];
+        for (int i = 0; i < rows.length; i++) {
+            int from = rows[i] + 1;
+            int to = i + 1 < rows.length ? rows[i + 1] : size;
+            int length = to - from;
+            System.arraycopy(epochDays, from, epochDays, write, length);
+            System.arraycopy(temperatures, from, temperatures, write, length);
+            System.arraycopy(humidities, from, humidities, write, length);
+            System.arraycopy(conditionCodes, from, conditionCodes, write, length);
+            System.arraycopy(locationCodes, from, locationCodes, write, length);
+            write += length;
+        }
+        size = write;
+        modCount++;
+        return removed;
+    }
+
+    // Merges rows that are already in day order, such as another store or a
+    // slice of one, in a single pass. Existing rows stay first among equal days.
+    public void addAll(WeatherView rows) {
+        int count = rows.size();
+        if (count == 0) {
+            return;
+        }
+        short[] codes = new short[rows.conditionCount()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = encodeCondition(rows.conditionName(code));
+        }
+        short[] places = new short[rows.locationCount()];
+        for (int code = 0; code < places.length; code++) {
+            places[code] = encodeLocation(rows.locationName(code));
+        }
+        int total = size + count;
+        int capacity = Math.max(total, epochDays.length);
+        int[] mergedDays = new int[capacity];
+        double[] mergedTemperatures = new double[capacity];
+        byte[] mergedHumidities = new byte[capacity];
+        short[] mergedCodes = new short[capacity];
+        short[] mergedLocations = new short[capacity];
+        int i = 0;
+        int j = 0;
+        int previousDay = Integer.MIN_VALUE;
+        for (int k = 0; k < total; k++) {
+            if (j == count || (i < size && epochDays[i] <= rows.getEpochDay(j))) {
+                mergedDays[k] = epochDays[i];
+                mergedTemperatures[k] = temperatures[i];
+                mergedHumidities[k] = humidities[i];
+                mergedCodes[k] = conditionCodes[i];
+                mergedLocations[k] = locationCodes[i];
+                i++;
+            } else {
+                int day = rows.getEpochDay(j);
+                if (day < previousDay) {
+                    throw new IllegalArgumentException("Rows to merge are not in day order");
+                }
+                previousDay = day;
+                validateHumidity(rows.getHumidity(j));
+                mergedDays[k] = day;
+                mergedTemperatures[k] = rows.getTemperature(j);
+                mergedHumidities[k] = (byte) rows.getHumidity(j);
+                mergedCodes[k] = codes[rows.getConditionCode(j)];
+                mergedLocations[k] = places[rows.getLocationCode(j)];
+                j++;
+            }
+        }
+        epochDays = mergedDays;
+        temperatures = mergedTemperatures;
+        humidities = mergedHumidities;
+        conditionCodes = mergedCodes;
+        locationCodes = mergedLocations;
+        size = total;
+        modCount++;
+    }
+
+    // Appends rows in day order that start no earlier than this store's last
+    // day, such as the next month's, without re-merging the rows already here
+    void appendAll(WeatherView rows) {
+        int count = rows.size();
+        if (count == 0) {
+            return;
+        }
+        short[] codes = new short[rows.conditionCount()];
+        for (int code = 0; code < codes.length; code++) {
+            codes[code] = encodeCondition(rows.conditionName(code));
+        }
+        short[] places = new short[rows.locationCount()];
+        for (int code = 0; code < places.length; code++) {
+            places[code] = encodeLocation(rows.locationName(code));
+        }
+        ensureCapacity(size + count);
+        int previousDay = size == 0 ? Integer.MIN_VALUE : epochDays[size - 1];
+        for (int row = 0; row < count; row++) {
+            int day = rows.getEpochDay(row);
+            if (day < previousDay) {
+                throw new IllegalArgumentException("Rows to append are not in day order");
+            }
+            previousDay = day;
+            validateHumidity(rows.getHumidity(row));
+            set(size + row, day, rows.getTemperature(row), rows.getHumidity(row), codes[rows.getConditionCode(row)],
+                    places[rows.getLocationCode(row)]);
+        }
+        size += count;
+        modCount++;
+    }
+
+    // Releases spare capacity, e.g. after older rows were dropped to save memory
+    public void trimToSize() {
+        int capacity = Math.max(size, 1);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        temperatures = Arrays.copyOf(temperatures, capacity);
+        humidities = Arrays.copyOf(humidities, capacity);
+        conditionCodes = Arrays.copyOf(conditionCodes, capacity);
+        locationCodes = Arrays.copyOf(locationCodes, capacity);
+    }
+
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    public List<WeatherEntry> toEntries() {
+        List<WeatherEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(getEntry(i));
+        }
+        return entries;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getEpochDay(int row) {
+        checkRow(row);
+        return epochDays[row];
+    }
+
+    @Override
+    public double getTemperature(int row) {
+        checkRow(row);
+        return temperatures[row];
+    }
+
+    @Override
+    public int getHumidity(int row) {
+        checkRow(row);
+        return humidities[row];
+    }
+
+    @Override
+    public int getConditionCode(int row) {
+        checkRow(row);
+        return conditionCodes[row];
+    }
+
+    @Override
+    public String getCondition(int row) {
+        return conditions.name(getConditionCode(row));
+    }
+
+    @Override
+    public int conditionCount() {
+        return conditions.size();
+    }
+
+    @Override
+    public String conditionName(int code) {
+        return conditions.name(code);
+    }
+
+    @Override
+    public int getLocationCode(int row) {
+        checkRow(row);
+        return locationCodes[row];
+    }
+
+    @Override
+    public String getLocation(int row) {
+        return locations.name(getLocationCode(row));
+    }
+
+    @Override
+    public int locationCount() {
+        return locations.size();
+    }
+
+    @Override
+    public String locationName(int code) {
+        return locations.name(code);
+    }
+
+    @Override
+    public int sourceRow(int row) {
+        checkRow(row);
+        return row;
+    }
+
+    private void append(int epochDay, double temperature, int humidity, String condition, String location) {
+        validateHumidity(humidity);
+        short code = encodeCondition(condition);
+        short locationCode = encodeLocation(location);
+        ensureCapacity(size + 1);
+        set(size, epochDay, temperature, humidity, code, locationCode);
+        size++;
+        modCount++;
+    }
+
+    private void set(int row, int epochDay, double temperature, int humidity, short code, short locationCode) {
+        epochDays[row] = epochDay;
+        temperatures[row] = temperature;
+        humidities[row] = (byte) humidity;
+        conditionCodes[row] = code;
+        locationCodes[row] = locationCode;
+    }
+
+    // Bulk append of already-encoded columns; the caller sorts afterwards
+    void appendColumns(int[] days, double[] temps, byte[] hums, short[] codes, short[] places, int count) {
+        for (int i = 0; i < count; i++) {
+            validateHumidity(hums[i]);
+        }
+        ensureCapacity(size + count);
+        System.arraycopy(days, 0, epochDays, size, count);
+        System.arraycopy(temps, 0, temperatures, size, count);
+        System.arraycopy(hums, 0, humidities, size, count);
+        System.arraycopy(codes, 0, conditionCodes, size, count);
+        System.arraycopy(places, 0, locationCodes, size, count);
+        size += count;
+        modCount++;
+    }
+
+    // Takes over columns read in bulk into an empty store, without copying them
+    void adoptColumns(int[] days, double[] temps, byte[] hums, short[] codes, short[] places, int count) {
+        if (size != 0) {
+            throw new IllegalStateException("Store already holds rows");
+        }
+        for (int i = 0; i < count; i++) {
+            validateHumidity(hums[i]);
+        }
+        epochDays = days;
+        temperatures = temps;
+        humidities = hums;
+        conditionCodes = codes;
+        locationCodes = places;
+        size = count;
+        modCount++;
+    }
+
+    // Stable sort of all columns by day: the original row is packed into the
+    // low bits of each key, so equal days keep their insertion order.
+    void sortByDay() {
+        long[] keys = new long[size];
+        boolean sorted = true;
+        for (int row = 0; row < size; row++) {
+            keys[row] = ((long) epochDays[row] << 32) | row;
+            sorted &= row == 0 || epochDays[row - 1] <= epochDays[row];
+        }
+        if (sorted) {
+            return;
+        }
+        Arrays.sort(keys);
+        int[] sortedDays = new int[epochDays.length];
+        double[] sortedTemperatures = new double[temperatures.length];
+        byte[] sortedHumidities = new byte[humidities.length];
+        short[] sortedCodes = new short[conditionCodes.length];
+        short[] sortedLocations = new short[locationCodes.length];
+        for (int row = 0; row < size; row++) {
+            int from = (int) keys[row];
+            sortedDays[row] = epochDays[from];
+            sortedTemperatures[row] = temperatures[from];
+            sortedHumidities[row] = humidities[from];
+            sortedCodes[row] = conditionCodes[from];
+            sortedLocations[row] = locationCodes[from];
+        }
+        epochDays = sortedDays;
+        temperatures = sortedTemperatures;
+        humidities = sortedHumidities;
+        conditionCodes = sortedCodes;
+        locationCodes = sortedLocations;
+        modCount++;
+    }
+
+    // Brings the location index up to date now rather than on the next
+    // query, for a store about to be read from several threads
+    void buildLocationIndex() {
+        if (indexedModCount != modCount) {
+            int[] counts = new int[locations.size()];
+            for (int row = 0; row < size; row++) {
+                counts[locationCodes[row]]++;
+            }
+            locationRows = new int[counts.length][];
+            for (int i = 0; i < counts.length; i++) {
+                locationRows[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+            for (int row = 0; row < size; row++) {
+                int location = locationCodes[row];
+                locationRows[location][counts[location]++] = row;
+            }
+            indexedModCount = modCount;
+        }
+    }
+
+    // Store rows of one location in ascending order
+    private int[] locationRows(int code) {
+        buildLocationIndex();
+        return code < locationRows.length ? locationRows[code] : NO_ROWS;
+    }
+
+    // First position in rows holding a store row at or after the given one
+    private static int firstAtOrAfter(int[] rows, int storeRow) {
+        int low = 0;
+        int high = rows.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rows[mid] < storeRow) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void validateHumidity(int humidity) {
+        if (humidity < 0 || humidity > 100) {
+            throw new IllegalArgumentException("Humidity must be between 0 and 100: " + humidity);
+        }
+    }
+
+    short encodeCondition(String condition) {
+        return conditions.encode(condition);
+    }
+
+    short encodeLocation(String location) {
+        return locations.encode(location == null ? "" : location);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= epochDays.length) {
+            return;
+        }
+        int capacity = Math.max(required, epochDays.length + (epochDays.length >> 1));
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        temperatures = Arrays.copyOf(temperatures, capacity);
+        humidities = Arrays.copyOf(humidities, capacity);
+        conditionCodes = Arrays.copyOf(conditionCodes, capacity);
+        locationCodes = Arrays.copyOf(locationCodes, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+
+    // Interned strings for a short-coded column
+    private static final class Dictionary {
+        private final String kind;
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        Dictionary(String kind) {
+            this.kind = kind;
+        }
+
+        short encode(String name) {
+            Integer code = codes.get(name);
+            if (code == null) {
+                if (names.size() > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Too many distinct " + kind);
+                }
+                code = names.size();
+                names.add(name);
+                codes.put(name, code);
+            }
+            return code.shortValue();
+        }
+
+        Integer find(String name) {
+            return codes.get(name);
+        }
+
+        String name(int code) {
+            return names.get(code);
+        }
+
+        int size() {
+            return names.size();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.weatherapp;
+
+// Temperature and condition statistics over some set of readings, whether
+// accumulated row by row or combined from pre-aggregated buckets.
+public interface WeatherSummary {
+    long getCount();
+
+    // NaN when empty
+    double getAverage();
+
+    double getMin();
+
+    double getMax();
+
+    // Null when empty
+    String getMostCommonCondition();
+
+    // Spread and percentiles of the readings; callers must not modify them
+    Distribution getTemperatures();
+
+    Distribution getHumidities();
+
+    default boolean isEmpty() {
+        return getCount() == 0;
+    }
+}
@@ -1,26 +1,37 @@
 package com.weatherapp;
 
 import javax.swing.table.AbstractTableModel;
-import java.text.SimpleDateFormat;
-import java.util.List;
-import java.util.ArrayList;
 
+// Serves cells straight from a WeatherView. Nothing is copied: the model only
+// keeps a reference to the view, plus small caches so painting a cell after
+// warm-up neither formats a date nor boxes a temperature.
 public class WeatherTableModel extends AbstractTableModel {
-    private List<WeatherEntry> entries;
-    private final String[] columnNames = {"Date", "Temperature (°C)", "Humidity (%)", "Condition"};
-    private final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd-MM-yyyy");
+    // Direct-mapped cache of formatted dates, indexed by epoch day
+    private static final int DATE_CACHE_SIZE = 4096;
+    // Boxed temperatures for every tenth of a degree in this range
+    private static final int MIN_CACHED_TENTHS = -1000;
+    private static final int MAX_CACHED_TENTHS = 1000;
+
+    private WeatherView view;
+    // Row count JTable was last told about; the view may have grown or shrunk since
+    private int reportedRows;
+    private final String[] columnNames = {"Date", "Location", "Temperature (°C)", "Humidity (%)", "Condition"};
+    private final int[] cachedDays = new int[DATE_CACHE_SIZE];
+    private final String[] cachedDates = new String[DATE_CACHE_SIZE];
+    private final Double[] cachedTemperatures = new Double[MAX_CACHED_TENTHS - MIN_CACHED_TENTHS + 1];
 
     public WeatherTableModel() {
-        this.entries = new ArrayList<>();
+        this(new WeatherStore());
     }
 
-    public WeatherTableModel(List<WeatherEntry> entries) {
-        this.entries = new ArrayList<>(entries);
+    public WeatherTableModel(WeatherView view) {
+        this.view = view;
+        this.reportedRows = view.size();
     }
 
     @Override
     public int getRowCount() {
-        return entries.size();
+        return view.size();
     }
 
     @Override
@@ -35,41 +46,89 @@ public class WeatherTableModel extends AbstractTableModel {
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        WeatherEntry entry = entries.get(rowIndex);
         switch (columnIndex) {
             case 0:
-                return DATE_FORMAT.format(entry.getDate());
+                return formatDate(view.getEpochDay(rowIndex));
             case 1:
-                return entry.getTemperature();
+                return view.getLocation(rowIndex);
             case 2:
-                return entry.getHumidity();
+                return boxTemperature(view.getTemperature(rowIndex));
             case 3:
-                return entry.getCondition();
+                // Humidity is 0-100, which Integer.valueOf serves from its own cache
+                return view.getHumidity(rowIndex);
+            case 4:
+                return view.getCondition(rowIndex);
             default:
                 return null;
         }
     }
 
-    public void addEntry(WeatherEntry entry) {
-        entries.add(entry);
-        fireTableRowsInserted(entries.size() - 1, entries.size() - 1);
+    public WeatherView getView() {
+        return view;
     }
 
-    public void removeEntry(int rowIndex) {
-        entries.remove(rowIndex);
-        fireTableRowsDeleted(rowIndex, rowIndex);
+    public WeatherEntry getEntry(int rowIndex) {
+        return view.getEntry(rowIndex);
     }
 
-    public List<WeatherEntry> getEntries() {
-        return entries;
+    // Row of the backing store shown at the given table row
+    public int getSourceRow(int rowIndex) {
+        return view.sourceRow(rowIndex);
     }
-    
-    public WeatherEntry getEntry(int rowIndex) {
-        return entries.get(rowIndex);
+
+    // Switches to another view. Rows present in both are reported as updated and
+    // only the difference in length as inserted or deleted, so JTable keeps its
+    // layout instead of rebuilding everything as after fireTableDataChanged.
+    public void setView(WeatherView newView) {
+        int oldSize = reportedRows;
+        int newSize = newView.size();
+        this.view = newView;
+        this.reportedRows = newSize;
+        if (newSize < oldSize) {
+            fireTableRowsDeleted(newSize, oldSize - 1);
+        } else if (newSize > oldSize) {
+            fireTableRowsInserted(oldSize, newSize - 1);
+        }
+        int common = Math.min(oldSize, newSize);
+        if (common > 0) {
+            fireTableRowsUpdated(0, common - 1);
+        }
+    }
+
+    // Called after a row was inserted into the view currently shown
+    public void rowInserted(int rowIndex) {
+        reportedRows++;
+        fireTableRowsInserted(rowIndex, rowIndex);
     }
 
-    public void setEntries(List<WeatherEntry> newEntries) {
-        this.entries = new ArrayList<>(newEntries);
-        fireTableDataChanged();
+    // Called after a row was removed from the view currently shown
+    public void rowDeleted(int rowIndex) {
+        reportedRows--;
+        fireTableRowsDeleted(rowIndex, rowIndex);
+    }
+
+    private String formatDate(int epochDay) {
+        int slot = epochDay & (DATE_CACHE_SIZE - 1);
+        String text = cachedDates[slot];
+        if (text == null || cachedDays[slot] != epochDay) {
+            text = WeatherDates.format(epochDay);
+            cachedDates[slot] = text;
+            cachedDays[slot] = epochDay;
+        }
+        return text;
+    }
+
+    private Double boxTemperature(double temperature) {
+        long tenths = Math.round(temperature * 10);
+        if (tenths < MIN_CACHED_TENTHS || tenths > MAX_CACHED_TENTHS || tenths / 10.0 != temperature) {
+            return temperature;
+        }
+        int slot = (int) tenths - MIN_CACHED_TENTHS;
+        Double boxed = cachedTemperatures[slot];
+        if (boxed == null) {
+            boxed = temperature;
+            cachedTemperatures[slot] = boxed;
+        }
+        return boxed;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package com.weatherapp;
+
+import java.time.LocalDate;
+
+// Read-only, row-indexed access to weather readings. Implementations serve
+// the columns directly so views never have to materialize WeatherEntry objects.
+public interface WeatherView {
+    int size();
+
+    int getEpochDay(int row);
+
+    double getTemperature(int row);
+
+    int getHumidity(int row);
+
+    int getConditionCode(int row);
+
+    String getCondition(int row);
+
+    // Number of distinct condition codes; codes run from 0 to conditionCount() - 1
+    int conditionCount();
+
+    String conditionName(int code);
+
+    int getLocationCode(int row);
+
+    String getLocation(int row);
+
+    // Number of distinct location codes; codes run from 0 to locationCount() - 1
+    int locationCount();
+
+    String locationName(int code);
+
+    // Position of the row in the backing WeatherStore
+    int sourceRow(int row);
+
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    default WeatherEntry getEntry(int row) {
+        return new WeatherEntry(LocalDate.ofEpochDay(getEpochDay(row)), getTemperature(row),
+                getHumidity(row), getCondition(row), getLocation(row));
+    }
+}